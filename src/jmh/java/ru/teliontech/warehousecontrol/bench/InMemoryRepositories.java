@@ -0,0 +1,129 @@
+package ru.teliontech.warehousecontrol.bench;
+
+import ru.teliontech.warehousecontrol.entity.IdempotencyKey;
+import ru.teliontech.warehousecontrol.entity.OperationType;
+import ru.teliontech.warehousecontrol.entity.Sock;
+import ru.teliontech.warehousecontrol.entity.TradingAction;
+import ru.teliontech.warehousecontrol.repository.ColorRepository;
+import ru.teliontech.warehousecontrol.repository.IdempotencyKeyRepository;
+import ru.teliontech.warehousecontrol.repository.SockRepository;
+import ru.teliontech.warehousecontrol.repository.TradingActionRepository;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stand-ins for the Spring Data repositories, backed by maps. Only the methods the service hot paths call
+ * are implemented; anything else fails loudly, so a benchmark can never silently measure a no-op.
+ */
+final class InMemoryRepositories {
+
+    private InMemoryRepositories() {
+    }
+
+    static SockRepository sockRepository(Collection<Sock> socks) {
+        Map<Long, Sock> byId = new ConcurrentHashMap<>();
+        socks.forEach(sock -> byId.put(sock.getId(), sock));
+        return (SockRepository) Proxy.newProxyInstance(SockRepository.class.getClassLoader(),
+                new Class<?>[]{SockRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "findById" -> Optional.ofNullable(byId.get((Long) args[0]));
+                    case "existsById" -> byId.containsKey((Long) args[0]);
+                    case "findAll" -> new ArrayList<>(byId.values());
+                    case "findByColorAndCottonPart" -> byId.values().stream()
+                            .filter(sock -> sock.getColor().equals(args[0]) && sock.getCottonPart() == (int) args[1])
+                            .toList();
+                    case "incrementStock" -> {
+                        byId.computeIfPresent((Long) args[0], (id, sock) -> withStock(sock, sock.getStock() + (int) args[1]));
+                        yield 1;
+                    }
+                    case "decrementStock" -> {
+                        int quantity = (int) args[1];
+                        boolean[] updated = new boolean[1];
+                        byId.computeIfPresent((Long) args[0], (id, sock) -> {
+                            updated[0] = sock.getStock() >= quantity;
+                            return updated[0] ? withStock(sock, sock.getStock() - quantity) : sock;
+                        });
+                        yield updated[0] ? 1 : 0;
+                    }
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "InMemorySockRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    static TradingActionRepository tradingActionRepository() {
+        AtomicLong sequence = new AtomicLong();
+        return (TradingActionRepository) Proxy.newProxyInstance(TradingActionRepository.class.getClassLoader(),
+                new Class<?>[]{TradingActionRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "save" -> {
+                        ((TradingAction) args[0]).setId(sequence.incrementAndGet());
+                        yield args[0];
+                    }
+                    case "saveAll" -> {
+                        List<TradingAction> saved = new ArrayList<>();
+                        for (Object tradingAction : (Iterable<?>) args[0]) {
+                            ((TradingAction) tradingAction).setId(sequence.incrementAndGet());
+                            saved.add((TradingAction) tradingAction);
+                        }
+                        yield saved;
+                    }
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "InMemoryTradingActionRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    static IdempotencyKeyRepository idempotencyKeyRepository() {
+        Map<String, IdempotencyKey> byKey = new ConcurrentHashMap<>();
+        return (IdempotencyKeyRepository) Proxy.newProxyInstance(IdempotencyKeyRepository.class.getClassLoader(),
+                new Class<?>[]{IdempotencyKeyRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "claim" -> byKey.putIfAbsent((String) args[0], new IdempotencyKey((String) args[0],
+                            (LocalDateTime) args[1], OperationType.values()[(int) args[2]], (String) args[3],
+                            (int) args[4], (int) args[5], null, null)) == null ? 1 : 0;
+                    case "complete" -> {
+                        IdempotencyKey row = byKey.get((String) args[0]);
+                        row.setSockId((Long) args[1]);
+                        row.setStock((int) args[2]);
+                        yield 1;
+                    }
+                    case "findById" -> Optional.ofNullable(byKey.get((String) args[0]));
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "InMemoryIdempotencyKeyRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    static ColorRepository colorRepository() {
+        Map<String, ColorRepository.Color> byName = new ConcurrentHashMap<>();
+        return new ColorRepository(null) {
+            @Override
+            public List<Color> findAll() {
+                return new ArrayList<>(byName.values());
+            }
+
+            @Override
+            public Optional<Color> findByName(String name) {
+                return Optional.ofNullable(byName.get(name));
+            }
+
+            @Override
+            public Color insertIfAbsent(String name) {
+                return byName.computeIfAbsent(name, key -> new Color((short) byName.size(), key));
+            }
+        };
+    }
+
+    private static Sock withStock(Sock sock, int stock) {
+        return new Sock(sock.getId(), sock.getColor(), sock.getCottonPart(), stock);
+    }
+}
@@ -0,0 +1,45 @@
+package ru.teliontech.warehousecontrol.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import ru.teliontech.warehousecontrol.dto.SockDto;
+import ru.teliontech.warehousecontrol.dto.SockQntDto;
+import ru.teliontech.warehousecontrol.entity.Sock;
+import ru.teliontech.warehousecontrol.utils.MappingUtils;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MappingBenchmark {
+
+    private final MappingUtils mappingUtils = new MappingUtils();
+    private final Sock sock = new Sock(1L, "white", 50, 100);
+    private final SockDto sockDto = new SockDto(1L, "white", 50, 100);
+    private final SockQntDto sockQntDto = new SockQntDto(1L, "white", 50, 10, 100);
+
+    @Benchmark
+    public SockDto mapToSockDto() {
+        return mappingUtils.mapToSockDto(sock);
+    }
+
+    @Benchmark
+    public SockQntDto mapToSockQntDto() {
+        return mappingUtils.mapToSockQntDto(sock, 10);
+    }
+
+    @Benchmark
+    public Sock mapSockDtoToSock() {
+        return mappingUtils.mapToSock(sockDto);
+    }
+
+    @Benchmark
+    public Sock mapSockQntDtoToSock() {
+        return mappingUtils.mapToSock(sockQntDto);
+    }
+}
@@ -0,0 +1,51 @@
+package ru.teliontech.warehousecontrol.bench;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.teliontech.warehousecontrol.dto.SockDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int size;
+
+    private List<SockDto> socks;
+    private ObjectMapper objectMapper;
+    private ObjectWriter listWriter;
+
+    @Setup
+    public void setUp() {
+        socks = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            socks.add(new SockDto((long) i + 1, ServiceFixture.COLORS.get(i % ServiceFixture.COLORS.size()), i % 101, i * 7));
+        }
+        objectMapper = new ObjectMapper();
+        listWriter = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, SockDto.class));
+    }
+
+    @Benchmark
+    public byte[] writeValueAsBytes() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(socks);
+    }
+
+    @Benchmark
+    public byte[] typedWriter() throws JsonProcessingException {
+        return listWriter.writeValueAsBytes(socks);
+    }
+}
@@ -0,0 +1,60 @@
+package ru.teliontech.warehousecontrol.bench;
+
+import ru.teliontech.warehousecontrol.entity.Sock;
+import ru.teliontech.warehousecontrol.event.SockChangedEvent;
+import ru.teliontech.warehousecontrol.metrics.HotKeyTracker;
+import ru.teliontech.warehousecontrol.repository.SockRepository;
+import ru.teliontech.warehousecontrol.repository.TradingActionDeadLetterRepository;
+import ru.teliontech.warehousecontrol.service.ColorDictionary;
+import ru.teliontech.warehousecontrol.service.IdempotencyStore;
+import ru.teliontech.warehousecontrol.service.SockCache;
+import ru.teliontech.warehousecontrol.service.SockService;
+import ru.teliontech.warehousecontrol.service.StockIndex;
+import ru.teliontech.warehousecontrol.service.StockLedger;
+import ru.teliontech.warehousecontrol.service.TradingActionJournal;
+import ru.teliontech.warehousecontrol.utils.MappingUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A SockService wired by hand the way Spring wires it, over in-memory repositories.
+ */
+final class ServiceFixture {
+    static final List<String> COLORS = List.of("white", "black", "red", "green", "blue", "yellow", "grey", "brown");
+    static final int COTTON_PARTS = 101;
+    static final int INITIAL_STOCK = 1_000_000;
+
+    private ServiceFixture() {
+    }
+
+    static List<Sock> catalogue() {
+        List<Sock> socks = new ArrayList<>(COLORS.size() * COTTON_PARTS);
+        long id = 1;
+        for (String color : COLORS) {
+            for (int cottonPart = 0; cottonPart < COTTON_PARTS; cottonPart++) {
+                socks.add(new Sock(id++, color, cottonPart, INITIAL_STOCK));
+            }
+        }
+        return socks;
+    }
+
+    static SockService sockService() {
+        SockRepository sockRepository = InMemoryRepositories.sockRepository(catalogue());
+        SockCache sockCache = new SockCache(sockRepository, 10_000, Duration.ofMinutes(10));
+        StockLedger stockLedger = new StockLedger(sockRepository, sockCache, 64);
+        StockIndex stockIndex = new StockIndex(sockRepository, stockLedger);
+        TradingActionJournal journal = new TradingActionJournal(InMemoryRepositories.tradingActionRepository(),
+                new TradingActionDeadLetterRepository(null), false, 1, 1, Duration.ZERO, Duration.ZERO);
+        return new SockService(sockRepository, journal, new MappingUtils(), stockLedger,
+                stockIndex, sockCache, new HotKeyTracker(256, 16),
+                new IdempotencyStore(InMemoryRepositories.idempotencyKeyRepository(), Duration.ofHours(24), 100_000),
+                new ColorDictionary(InMemoryRepositories.colorRepository()),
+                event -> {
+                    if (event instanceof SockChangedEvent sockChangedEvent) {
+                        stockIndex.onSockChanged(sockChangedEvent);
+                    }
+                });
+    }
+}
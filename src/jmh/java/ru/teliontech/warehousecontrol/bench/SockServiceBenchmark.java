@@ -0,0 +1,71 @@
+package ru.teliontech.warehousecontrol.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import ru.teliontech.warehousecontrol.dto.SockQntDto;
+import ru.teliontech.warehousecontrol.service.SockService;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static ru.teliontech.warehousecontrol.bench.ServiceFixture.COLORS;
+import static ru.teliontech.warehousecontrol.bench.ServiceFixture.COTTON_PARTS;
+
+/**
+ * Service hot paths without a database: what is left is validation, the ledger, the index,
+ * events, mapping and the journal. The catalogue is warmed up, so every key is already in the ledger.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SockServiceBenchmark {
+
+    private SockService sockService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sockService = ServiceFixture.sockService();
+        for (String color : COLORS) {
+            for (int cottonPart = 0; cottonPart < COTTON_PARTS; cottonPart++) {
+                sockService.income(new SockQntDto(null, color, cottonPart, 0, 0));
+            }
+        }
+    }
+
+    @Benchmark
+    public Optional<SockQntDto> income() {
+        return sockService.income(randomMovement());
+    }
+
+    @Benchmark
+    public Optional<SockQntDto> outcome() {
+        return sockService.outcome(randomMovement());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<SockQntDto> incomeContended() {
+        return sockService.income(randomMovement());
+    }
+
+    @Benchmark
+    public Optional<Integer> countBetween() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(COTTON_PARTS);
+        return sockService.getCountSocksWithParams(COLORS.get(random.nextInt(COLORS.size())), SockService.BETWEEN,
+                from, random.nextInt(from, COTTON_PARTS));
+    }
+
+    private SockQntDto randomMovement() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return new SockQntDto(null, COLORS.get(random.nextInt(COLORS.size())), random.nextInt(COTTON_PARTS), 1, 0);
+    }
+}
@@ -0,0 +1,64 @@
+package ru.teliontech.warehousecontrol.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.teliontech.warehousecontrol.dto.SockQntDto;
+import ru.teliontech.warehousecontrol.exception.InvalidArgumentException;
+import ru.teliontech.warehousecontrol.service.SockService;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accepted and rejected inputs. A rejection costs an exception with its stack trace, a log call and a counter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ValidationBenchmark {
+
+    private final SockQntDto negativeQuantity = new SockQntDto(null, "white", 50, -1, 0);
+    private final SockQntDto cottonPartOutOfRange = new SockQntDto(null, "white", 101, 1, 0);
+    private SockService sockService;
+
+    @Setup
+    public void setUp() {
+        sockService = ServiceFixture.sockService();
+    }
+
+    @Benchmark
+    public SockService.CottonPartRange rangeAccepted() {
+        return SockService.cottonPartRange(SockService.BETWEEN, 20, 80);
+    }
+
+    @Benchmark
+    public Object rangeRejected() {
+        try {
+            return SockService.cottonPartRange(SockService.BETWEEN, 80, 20);
+        } catch (InvalidArgumentException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object incomeRejectedQuantity() {
+        try {
+            return sockService.income(negativeQuantity);
+        } catch (InvalidArgumentException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object incomeRejectedCottonPart() {
+        try {
+            return sockService.income(cottonPartOutOfRange);
+        } catch (InvalidArgumentException e) {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package ru.teliontech.warehousecontrol.load;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks key indexes either uniformly ({@code uniform}) or from a Zipf distribution ({@code zipf:<exponent>}),
+ * where key 0 is the hottest. With an exponent around 1.2 and 100 keys, the top three keys take about half the traffic.
+ */
+final class KeySampler {
+    private static final String UNIFORM = "uniform";
+    private static final String ZIPF = "zipf:";
+
+    private final double[] cumulative;
+
+    private KeySampler(double[] cumulative) {
+        this.cumulative = cumulative;
+    }
+
+    static KeySampler of(String skew, int keys) {
+        double exponent;
+        if (skew.equals(UNIFORM)) {
+            exponent = 0;
+        } else if (skew.startsWith(ZIPF)) {
+            exponent = Double.parseDouble(skew.substring(ZIPF.length()));
+        } else {
+            throw new IllegalArgumentException("Unknown skew " + skew + ", expected uniform or zipf:<exponent>");
+        }
+        double[] cumulative = new double[keys];
+        double sum = 0;
+        for (int i = 0; i < keys; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < keys; i++) {
+            cumulative[i] /= sum;
+        }
+        return new KeySampler(cumulative);
+    }
+
+    int next() {
+        int index = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+    }
+
+    double share(int topKeys) {
+        return cumulative[Math.min(topKeys, cumulative.length) - 1];
+    }
+}
@@ -0,0 +1,198 @@
+package ru.teliontech.warehousecontrol.load;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.teliontech.warehousecontrol.WarehouseControlApplication;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Load and correctness harness. Starts an embedded PostgreSQL, boots the application against it
+ * (Liquibase builds the schema as usual), creates {@code keys} sock variants and fires {@code requests}
+ * income/outcome movements at them with at most {@code concurrency} in flight.
+ * <p>
+ * After the run the application is shut down, which also drains a write-behind journal, and two invariants
+ * are checked for every variant: the stock equals the net sum of its trading actions, and it equals the
+ * initial stock plus the net of the movements the clients saw accepted. Any mismatch fails the run.
+ * <pre>
+ * mvn -B -Pload verify -DskipTests -Dload.args="--load.skew=zipf:1.2 --load.concurrency=512"
+ * </pre>
+ */
+public class LoadHarness {
+    private static final String COLOR_PREFIX = "load-";
+    private static final int COTTON_PARTS = 101;
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+        KeySampler sampler = KeySampler.of(options.skew(), options.keys());
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.builder().start()) {
+            int port = postgres.getPort();
+            List<String> applicationArgs = new ArrayList<>(List.of(
+                    "--server.port=0",
+                    "--spring.datasource.url=jdbc:postgresql://localhost:" + port + "/postgres?reWriteBatchedInserts=true",
+                    "--spring.datasource.username=postgres",
+                    "--warehouse.reactive.url=r2dbc:postgresql://localhost:" + port + "/postgres",
+                    "--logging.level.ru.teliontech.warehousecontrol.exception=ERROR"));
+            applicationArgs.addAll(options.applicationArgs());
+
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(WarehouseControlApplication.class)
+                    .run(applicationArgs.toArray(String[]::new));
+            Result result;
+            try {
+                int serverPort = ((WebServerApplicationContext) context).getWebServer().getPort();
+                result = new LoadHarness(options, sampler, "http://localhost:" + serverPort).run();
+            } finally {
+                context.close();
+            }
+
+            result.print(options, sampler);
+            int mismatches = verify(postgres, options, result);
+            if (mismatches > 0) {
+                System.out.printf("FAILED: %d of %d variants do not add up%n", mismatches, options.keys());
+                System.exit(1);
+            }
+            System.out.printf("OK: stock of all %d variants equals the trading actions and the accepted movements%n", options.keys());
+        }
+    }
+
+    private final LoadOptions options;
+    private final KeySampler sampler;
+    private final String baseUrl;
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+
+    private LoadHarness(LoadOptions options, KeySampler sampler, String baseUrl) {
+        this.options = options;
+        this.sampler = sampler;
+        this.baseUrl = baseUrl;
+    }
+
+    private Result run() throws InterruptedException {
+        for (int key = 0; key < options.keys(); key++) {
+            String body = String.format("{\"id\":0,\"color\":\"%s\",\"cottonPart\":%d,\"stock\":%d}",
+                    color(key), cottonPart(key), options.initialStock());
+            HttpResponse<Void> response = client.sendAsync(HttpRequest.newBuilder(URI.create(baseUrl + "/api/socks"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build(), HttpResponse.BodyHandlers.discarding()).join();
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Could not create variant " + key + ": HTTP " + response.statusCode());
+            }
+        }
+
+        long[] latencies = new long[options.requests()];
+        AtomicLongArray acceptedNet = new AtomicLongArray(options.keys());
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        Semaphore inFlight = new Semaphore(options.concurrency());
+        List<CompletableFuture<?>> futures = new ArrayList<>(options.requests());
+
+        long started = System.nanoTime();
+        for (int i = 0; i < options.requests(); i++) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int key = sampler.next();
+            int quantity = random.nextInt(1, options.maxQuantity() + 1);
+            boolean outcome = random.nextDouble() < options.outcomeRatio();
+            String body = String.format("{\"color\":\"%s\",\"cottonPart\":%d,\"quantity\":%d}", color(key), cottonPart(key), quantity);
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + (outcome ? "/api/socks/outcome" : "/api/socks/income")))
+                    .header("Content-Type", "application/json")
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            int slot = i;
+            inFlight.acquire();
+            long sent = System.nanoTime();
+            futures.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        latencies[slot] = System.nanoTime() - sent;
+                        if (error == null && response.statusCode() == 200) {
+                            accepted.incrementAndGet();
+                            acceptedNet.addAndGet(key, outcome ? -quantity : quantity);
+                        } else if (error == null && outcome && response.statusCode() == 400) {
+                            rejected.incrementAndGet();
+                        } else {
+                            errors.incrementAndGet();
+                        }
+                        inFlight.release();
+                    }));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).exceptionally(error -> null).join();
+        long elapsed = System.nanoTime() - started;
+        Arrays.sort(latencies);
+        return new Result(latencies, elapsed, accepted.get(), rejected.get(), errors.get(), acceptedNet);
+    }
+
+    private static int verify(EmbeddedPostgres postgres, LoadOptions options, Result result) throws Exception {
+        int mismatches = 0;
+        try (Connection connection = postgres.getPostgresDatabase().getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery(
+                     "SELECT c.name AS color, s.cotton_part, s.stock, " +
+                             "COALESCE(SUM(CASE t.operation_type WHEN 0 THEN t.quantity ELSE -t.quantity END), 0) AS journal " +
+                             "FROM socks s JOIN colors c ON c.id = s.color_id LEFT JOIN trading_actions t ON t.sock_id = s.id " +
+                             "WHERE c.name LIKE '" + COLOR_PREFIX + "%' " +
+                             "GROUP BY s.id, c.name, s.cotton_part, s.stock ORDER BY s.id")) {
+            int seen = 0;
+            while (rows.next()) {
+                seen++;
+                int key = key(rows.getString("color"), rows.getInt("cotton_part"));
+                long stock = rows.getLong("stock");
+                long journal = rows.getLong("journal");
+                long expected = options.initialStock() + result.acceptedNet().get(key);
+                if (stock != journal || stock != expected) {
+                    mismatches++;
+                    System.out.printf("MISMATCH %s/%d: stock %d, trading actions %d, accepted by clients %d%n",
+                            rows.getString("color"), rows.getInt("cotton_part"), stock, journal, expected);
+                }
+            }
+            mismatches += options.keys() - seen;
+        }
+        return mismatches;
+    }
+
+    private static String color(int key) {
+        return COLOR_PREFIX + key / COTTON_PARTS;
+    }
+
+    private static int cottonPart(int key) {
+        return key % COTTON_PARTS;
+    }
+
+    private static int key(String color, int cottonPart) {
+        return Integer.parseInt(color.substring(COLOR_PREFIX.length())) * COTTON_PARTS + cottonPart;
+    }
+
+    private record Result(long[] sortedLatencies, long elapsedNanos, int accepted, int rejected, int errors,
+                          AtomicLongArray acceptedNet) {
+
+        double percentileMillis(double p) {
+            int index = (int) Math.ceil(p * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(0, Math.min(index, sortedLatencies.length - 1))] / 1e6;
+        }
+
+        void print(LoadOptions options, KeySampler sampler) {
+            System.out.printf("requests %d, concurrency %d, keys %d, skew %s (top 3 keys get %.0f%%)%n",
+                    options.requests(), options.concurrency(), options.keys(), options.skew(), sampler.share(3) * 100);
+            System.out.printf("throughput %.0f req/s, accepted %d, rejected for stock %d, errors %d%n",
+                    sortedLatencies.length / (elapsedNanos / 1e9), accepted, rejected, errors);
+            System.out.printf("latency ms: p50 %.2f, p99 %.2f, p999 %.2f, max %.2f%n",
+                    percentileMillis(0.50), percentileMillis(0.99), percentileMillis(0.999), percentileMillis(1.0));
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package ru.teliontech.warehousecontrol.load;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Harness options, given as {@code --load.<name>=<value>}. Every other argument is passed on to the application,
+ * so the same run can be repeated with, for example, {@code --warehouse.journal.write-behind.enabled=true}.
+ */
+record LoadOptions(int requests, int concurrency, int keys, String skew, double outcomeRatio, int maxQuantity,
+                   int initialStock, List<String> applicationArgs) {
+    private static final String PREFIX = "--load.";
+
+    static LoadOptions parse(String[] args) {
+        int requests = 50_000;
+        int concurrency = 256;
+        int keys = 100;
+        String skew = "uniform";
+        double outcomeRatio = 0.45;
+        int maxQuantity = 10;
+        int initialStock = 100;
+        List<String> applicationArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith(PREFIX)) {
+                applicationArgs.add(arg);
+                continue;
+            }
+            String[] option = arg.substring(PREFIX.length()).split("=", 2);
+            String value = option.length > 1 ? option[1] : "";
+            switch (option[0]) {
+                case "requests" -> requests = Integer.parseInt(value);
+                case "concurrency" -> concurrency = Integer.parseInt(value);
+                case "keys" -> keys = Integer.parseInt(value);
+                case "skew" -> skew = value;
+                case "outcome-ratio" -> outcomeRatio = Double.parseDouble(value);
+                case "max-quantity" -> maxQuantity = Integer.parseInt(value);
+                case "initial-stock" -> initialStock = Integer.parseInt(value);
+                default -> throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        return new LoadOptions(requests, concurrency, keys, skew, outcomeRatio, maxQuantity, initialStock, applicationArgs);
+    }
+}
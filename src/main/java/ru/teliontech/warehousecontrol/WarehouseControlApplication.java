@@ -3,9 +3,11 @@ package ru.teliontech.warehousecontrol;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @ComponentScan(basePackages = "ru.teliontech")
+@EnableScheduling
 public class WarehouseControlApplication {
 
     public static void main(String[] args) {
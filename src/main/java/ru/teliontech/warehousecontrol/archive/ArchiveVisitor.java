@@ -0,0 +1,10 @@
+package ru.teliontech.warehousecontrol.archive;
+
+@FunctionalInterface
+public interface ArchiveVisitor {
+
+    /**
+     * @return false to stop the scan
+     */
+    boolean visit(ArchivedAction action);
+}
@@ -0,0 +1,11 @@
+package ru.teliontech.warehousecontrol.archive;
+
+import ru.teliontech.warehousecontrol.entity.OperationType;
+
+import java.time.LocalDateTime;
+
+/**
+ * One trading action as stored in an archive segment.
+ */
+public record ArchivedAction(long id, LocalDateTime operationTime, OperationType operationType, long sockId, int quantity) {
+}
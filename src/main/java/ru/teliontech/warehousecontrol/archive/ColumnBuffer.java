@@ -0,0 +1,64 @@
+package ru.teliontech.warehousecontrol.archive;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer with the varint and zigzag encodings used by segment columns.
+ */
+final class ColumnBuffer {
+    private byte[] bytes;
+    private int length;
+
+    ColumnBuffer(int capacity) {
+        bytes = new byte[capacity];
+    }
+
+    void writeVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        writeByte((int) value);
+    }
+
+    void writeZigZag(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    void writeByte(int value) {
+        if (length == bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(16, bytes.length * 2));
+        }
+        bytes[length++] = (byte) value;
+    }
+
+    void clear() {
+        length = 0;
+    }
+
+    byte[] array() {
+        return bytes;
+    }
+
+    int length() {
+        return length;
+    }
+
+    static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    static long readZigZag(ByteBuffer buffer) {
+        long value = readVarLong(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
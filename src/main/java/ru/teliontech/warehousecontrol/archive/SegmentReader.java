@@ -0,0 +1,203 @@
+package ru.teliontech.warehousecontrol.archive;
+
+import ru.teliontech.warehousecontrol.entity.OperationType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static ru.teliontech.warehousecontrol.archive.Segments.*;
+
+/**
+ * Scans a segment written by {@link SegmentWriter} straight from a memory-mapped file.
+ * Filters are pushed down: a sock that is not in the dictionary skips the whole segment,
+ * a row group outside the time range is never inflated, and the id, type and quantity columns
+ * of a group are only inflated if some row matched on time and sock.
+ */
+public class SegmentReader implements Closeable {
+    private static final OperationType[] OPERATION_TYPES = OperationType.values();
+    private static final int TYPE_BITS = 32 - Integer.numberOfLeadingZeros(OPERATION_TYPES.length - 1);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final long[] sockIds;
+    private final Map<Long, Integer> dictionary;
+    private final List<GroupMeta> groups;
+    private final Inflater inflater = new Inflater();
+
+    private SegmentReader(FileChannel channel, MappedByteBuffer buffer, long[] sockIds, List<GroupMeta> groups) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.sockIds = sockIds;
+        this.groups = groups;
+        this.dictionary = new HashMap<>(sockIds.length * 2);
+        for (int code = 0; code < sockIds.length; code++) {
+            dictionary.put(sockIds[code], code);
+        }
+    }
+
+    public static SegmentReader open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long fileSize = channel.size();
+            if (fileSize > Integer.MAX_VALUE || fileSize < HEADER_LENGTH + TRAILER_LENGTH) {
+                throw new IOException("Unsupported segment size " + fileSize + ": " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt((int) fileSize - 4) != MAGIC) {
+                throw new IOException("Not an archive segment: " + path);
+            }
+            if (buffer.getInt(4) != VERSION) {
+                throw new IOException("Unsupported segment version " + buffer.getInt(4) + ": " + path);
+            }
+            ByteBuffer footer = buffer.duplicate().position((int) buffer.getLong((int) fileSize - TRAILER_LENGTH));
+            long[] sockIds = new long[(int) ColumnBuffer.readVarLong(footer)];
+            long previous = 0;
+            for (int i = 0; i < sockIds.length; i++) {
+                previous += ColumnBuffer.readZigZag(footer);
+                sockIds[i] = previous;
+            }
+            int groupCount = (int) ColumnBuffer.readVarLong(footer);
+            List<GroupMeta> groups = new ArrayList<>(groupCount);
+            for (int i = 0; i < groupCount; i++) {
+                int rows = (int) ColumnBuffer.readVarLong(footer);
+                long minTime = ColumnBuffer.readZigZag(footer);
+                long maxTime = ColumnBuffer.readZigZag(footer);
+                long offset = ColumnBuffer.readVarLong(footer);
+                int[] columns = new int[COLUMNS * 2];
+                for (int c = 0; c < columns.length; c++) {
+                    columns[c] = (int) ColumnBuffer.readVarLong(footer);
+                }
+                groups.add(new GroupMeta(rows, minTime, maxTime, offset, columns));
+            }
+            return new SegmentReader(channel, buffer, sockIds, groups);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long rowCount() {
+        return groups.stream().mapToLong(GroupMeta::rows).sum();
+    }
+
+    /**
+     * Visits, in file order, every action with {@code from <= operationTime < to} and the given sock.
+     * Any of the filters may be null.
+     *
+     * @return false if the visitor stopped the scan
+     */
+    public boolean scan(LocalDateTime from, LocalDateTime to, Long sockId, ArchiveVisitor visitor) throws IOException {
+        int sockCode = -1;
+        if (sockId != null) {
+            Integer code = dictionary.get(sockId);
+            if (code == null) {
+                return true;
+            }
+            sockCode = code;
+        }
+        long fromMicros = from == null ? Long.MIN_VALUE : toMicros(from);
+        long toMicros = to == null ? Long.MAX_VALUE : toMicros(to);
+        for (GroupMeta group : groups) {
+            if (group.maxTime() < fromMicros || group.minTime() >= toMicros) {
+                continue;
+            }
+            if (!scanGroup(group, fromMicros, toMicros, sockCode, visitor)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+
+    private boolean scanGroup(GroupMeta group, long fromMicros, long toMicros, int sockCode, ArchiveVisitor visitor) throws IOException {
+        int rows = group.rows();
+        long[] times = decodeDeltas(inflate(group, TIME_COLUMN), rows);
+        int[] codes = new int[rows];
+        ByteBuffer sockColumn = inflate(group, SOCK_COLUMN);
+        boolean[] matches = new boolean[rows];
+        boolean any = false;
+        for (int i = 0; i < rows; i++) {
+            codes[i] = (int) ColumnBuffer.readVarLong(sockColumn);
+            matches[i] = times[i] >= fromMicros && times[i] < toMicros && (sockCode < 0 || codes[i] == sockCode);
+            any |= matches[i];
+        }
+        if (!any) {
+            return true;
+        }
+        long[] ids = decodeDeltas(inflate(group, ID_COLUMN), rows);
+        ByteBuffer typeColumn = inflate(group, TYPE_COLUMN);
+        ByteBuffer quantityColumn = inflate(group, QUANTITY_COLUMN);
+        int mask = (1 << TYPE_BITS) - 1;
+        for (int i = 0; i < rows; i++) {
+            int type = readBits(typeColumn, i * TYPE_BITS) & mask;
+            int quantity = (int) ColumnBuffer.readVarLong(quantityColumn);
+            if (matches[i] && !visitor.visit(new ArchivedAction(ids[i], fromMicros(times[i]), OPERATION_TYPES[type], sockIds[codes[i]], quantity))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int readBits(ByteBuffer column, int bit) {
+        int index = bit >>> 3;
+        int window = column.get(index) & 0xFF;
+        if (index + 1 < column.limit()) {
+            window |= (column.get(index + 1) & 0xFF) << 8;
+        }
+        return window >>> (bit & 7);
+    }
+
+    private long[] decodeDeltas(ByteBuffer column, int rows) {
+        long[] values = new long[rows];
+        long previous = 0;
+        for (int i = 0; i < rows; i++) {
+            previous += ColumnBuffer.readZigZag(column);
+            values[i] = previous;
+        }
+        return values;
+    }
+
+    private ByteBuffer inflate(GroupMeta group, int index) throws IOException {
+        long offset = group.offset();
+        for (int c = 0; c < index; c++) {
+            offset += group.columns()[c * 2];
+        }
+        int compressedLength = group.columns()[index * 2];
+        byte[] raw = new byte[group.columns()[index * 2 + 1]];
+        inflater.reset();
+        inflater.setInput(buffer.slice((int) offset, compressedLength));
+        try {
+            int length = 0;
+            while (length < raw.length) {
+                int inflated = inflater.inflate(raw, length, raw.length - length);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != raw.length) {
+                throw new IOException("Truncated column " + index + " in group at offset " + group.offset());
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt column " + index + " in group at offset " + group.offset(), e);
+        }
+        return ByteBuffer.wrap(raw);
+    }
+}
@@ -0,0 +1,175 @@
+package ru.teliontech.warehousecontrol.archive;
+
+import ru.teliontech.warehousecontrol.entity.OperationType;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import static ru.teliontech.warehousecontrol.archive.Segments.*;
+
+/**
+ * Writes trading actions into a column-oriented segment file.
+ * <p>
+ * Rows are cut into groups of {@link Segments#ROWS_PER_GROUP}. Inside a group every column is encoded
+ * on its own and deflated: ids and timestamps as zigzag varint deltas, sock ids as varint codes
+ * of a segment-wide dictionary, operation types bit-packed and quantities as varints.
+ * The footer holds the dictionary and, per group, the time range and the column offsets,
+ * which lets {@link SegmentReader} skip groups without inflating them.
+ */
+public class SegmentWriter implements Closeable {
+    private static final int TYPE_BITS = 32 - Integer.numberOfLeadingZeros(OperationType.values().length - 1);
+
+    private final DataOutputStream out;
+    private final Deflater deflater = new Deflater();
+    private final Map<Long, Integer> dictionary = new HashMap<>();
+    private final List<Long> sockIds = new ArrayList<>();
+    private final List<GroupMeta> groups = new ArrayList<>();
+
+    private final long[] ids = new long[ROWS_PER_GROUP];
+    private final long[] times = new long[ROWS_PER_GROUP];
+    private final int[] codes = new int[ROWS_PER_GROUP];
+    private final int[] types = new int[ROWS_PER_GROUP];
+    private final int[] quantities = new int[ROWS_PER_GROUP];
+    private final ColumnBuffer column = new ColumnBuffer(ROWS_PER_GROUP * 4);
+    private byte[] compressed = new byte[ROWS_PER_GROUP * 4];
+    private int size;
+    private long position;
+
+    public SegmentWriter(Path path) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        position = HEADER_LENGTH;
+    }
+
+    public void append(ArchivedAction action) throws IOException {
+        ids[size] = action.id();
+        times[size] = toMicros(action.operationTime());
+        codes[size] = dictionary.computeIfAbsent(action.sockId(), sockId -> {
+            sockIds.add(sockId);
+            return sockIds.size() - 1;
+        });
+        types[size] = action.operationType().ordinal();
+        quantities[size] = action.quantity();
+        if (++size == ROWS_PER_GROUP) {
+            flushGroup();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (size > 0) {
+                flushGroup();
+            }
+            writeFooter();
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    private void flushGroup() throws IOException {
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            minTime = Math.min(minTime, times[i]);
+            maxTime = Math.max(maxTime, times[i]);
+        }
+        GroupMeta group = new GroupMeta(size, minTime, maxTime, position, new int[COLUMNS * 2]);
+
+        writeDeltas(ids);
+        writeColumn(group, ID_COLUMN);
+        writeDeltas(times);
+        writeColumn(group, TIME_COLUMN);
+        for (int i = 0; i < size; i++) {
+            column.writeVarLong(codes[i]);
+        }
+        writeColumn(group, SOCK_COLUMN);
+        writeBitPacked(types);
+        writeColumn(group, TYPE_COLUMN);
+        for (int i = 0; i < size; i++) {
+            column.writeVarLong(quantities[i]);
+        }
+        writeColumn(group, QUANTITY_COLUMN);
+
+        groups.add(group);
+        size = 0;
+    }
+
+    private void writeDeltas(long[] values) {
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            column.writeZigZag(values[i] - previous);
+            previous = values[i];
+        }
+    }
+
+    private void writeBitPacked(int[] values) {
+        int current = 0;
+        int filled = 0;
+        for (int i = 0; i < size; i++) {
+            current |= values[i] << filled;
+            filled += TYPE_BITS;
+            if (filled >= 8) {
+                column.writeByte(current);
+                current >>>= 8;
+                filled -= 8;
+            }
+        }
+        if (filled > 0) {
+            column.writeByte(current);
+        }
+    }
+
+    private void writeColumn(GroupMeta group, int index) throws IOException {
+        deflater.reset();
+        deflater.setInput(column.array(), 0, column.length());
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+        out.write(compressed, 0, length);
+        position += length;
+        group.columns()[index * 2] = length;
+        group.columns()[index * 2 + 1] = column.length();
+        column.clear();
+    }
+
+    private void writeFooter() throws IOException {
+        ColumnBuffer footer = new ColumnBuffer(64 + sockIds.size() * 3 + groups.size() * 48);
+        footer.writeVarLong(sockIds.size());
+        long previous = 0;
+        for (long sockId : sockIds) {
+            footer.writeZigZag(sockId - previous);
+            previous = sockId;
+        }
+        footer.writeVarLong(groups.size());
+        for (GroupMeta group : groups) {
+            footer.writeVarLong(group.rows());
+            footer.writeZigZag(group.minTime());
+            footer.writeZigZag(group.maxTime());
+            footer.writeVarLong(group.offset());
+            for (int value : group.columns()) {
+                footer.writeVarLong(value);
+            }
+        }
+        out.write(footer.array(), 0, footer.length());
+        out.writeLong(position);
+        out.writeInt(MAGIC);
+    }
+}
@@ -0,0 +1,45 @@
+package ru.teliontech.warehousecontrol.archive;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Constants of the segment file layout shared by {@link SegmentWriter} and {@link SegmentReader}:
+ * <pre>
+ * header:  int magic, int version
+ * groups:  deflated id, time, sock, type and quantity columns of every row group
+ * footer:  sock dictionary, per group rows, min/max time, offset and column lengths (all varints)
+ * trailer: long footer offset, int magic
+ * </pre>
+ */
+final class Segments {
+    static final int MAGIC = 0x57435347;
+    static final int VERSION = 1;
+    static final int HEADER_LENGTH = 8;
+    static final int TRAILER_LENGTH = 12;
+    static final int ROWS_PER_GROUP = 65_536;
+
+    static final int COLUMNS = 5;
+    static final int ID_COLUMN = 0;
+    static final int TIME_COLUMN = 1;
+    static final int SOCK_COLUMN = 2;
+    static final int TYPE_COLUMN = 3;
+    static final int QUANTITY_COLUMN = 4;
+
+    private Segments() {
+    }
+
+    static long toMicros(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1_000;
+    }
+
+    static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000), Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+
+    /**
+     * {@code columns} holds the compressed and the raw length of every column, in column order.
+     */
+    record GroupMeta(int rows, long minTime, long maxTime, long offset, int[] columns) {
+    }
+}
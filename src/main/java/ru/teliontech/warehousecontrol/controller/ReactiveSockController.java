@@ -0,0 +1,76 @@
+package ru.teliontech.warehousecontrol.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.teliontech.warehousecontrol.dto.SockDto;
+import ru.teliontech.warehousecontrol.service.ReactiveSockService;
+
+@RestController
+@RequestMapping("/api/reactive/socks")
+@ConditionalOnProperty(name = "warehouse.reactive.enabled", havingValue = "true")
+public class ReactiveSockController {
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+
+    private final ReactiveSockService reactiveSockService;
+
+    public ReactiveSockController(ReactiveSockService reactiveSockService) {
+        this.reactiveSockService = reactiveSockService;
+    }
+
+    @Operation(
+            tags = "Учет носков на складе",
+            summary = "Неблокирующая выгрузка списка товаров",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "OK",
+                            content = @Content(
+                                    mediaType = NDJSON_VALUE,
+                                    schema = @Schema(implementation = SockDto.class)
+                            )
+                    )
+            }
+    )
+    @GetMapping(value = "/all", produces = {NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public Flux<SockDto> getAllSocks() {
+        return reactiveSockService.getAllSocks();
+    }
+
+    @Operation(
+            tags = "Учет носков на складе",
+            summary = "Неблокирующий подсчет количества носков на складе по критериям запроса.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "OK",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = Integer.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad request",
+                            content = @Content()
+                    )
+            }
+    )
+    @GetMapping()
+    public Mono<Integer> getCountSocksWithParams(
+            @RequestParam String color,
+            @RequestParam String operation,
+            @RequestParam int cottonPart,
+            @RequestParam(required = false) Integer cottonPartTo) {
+        return reactiveSockService.getCountSocksWithParams(color, operation, cottonPart, cottonPartTo);
+    }
+}
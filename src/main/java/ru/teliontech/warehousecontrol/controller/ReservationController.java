@@ -0,0 +1,125 @@
+package ru.teliontech.warehousecontrol.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import ru.teliontech.warehousecontrol.dto.ReservationDto;
+import ru.teliontech.warehousecontrol.dto.ReservationRequestDto;
+import ru.teliontech.warehousecontrol.dto.SockQntDto;
+import ru.teliontech.warehousecontrol.service.DatabaseExecutor;
+import ru.teliontech.warehousecontrol.service.ReservationService;
+
+import java.util.concurrent.CompletableFuture;
+
+@RestController
+@RequestMapping("/api/reservations")
+public class ReservationController {
+
+    private final ReservationService reservationService;
+    private final DatabaseExecutor databaseExecutor;
+
+    public ReservationController(ReservationService reservationService, DatabaseExecutor databaseExecutor) {
+        this.reservationService = reservationService;
+        this.databaseExecutor = databaseExecutor;
+    }
+
+    @Operation(
+            tags = "Резервирование носков",
+            summary = "Зарезервировать носки до отгрузки. Резерв снимается автоматически по истечении ttlSeconds.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "OK",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = ReservationDto.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad request",
+                            content = @Content()
+                    )
+            }
+    )
+    @PostMapping()
+    public CompletableFuture<ResponseEntity<ReservationDto>> reserve(@RequestBody ReservationRequestDto reservationRequestDto) {
+        return databaseExecutor.submit(() -> ResponseEntity.ok(reservationService.reserve(reservationRequestDto)));
+    }
+
+    @Operation(
+            tags = "Резервирование носков",
+            summary = "Подтвердить резерв: зарезервированные носки отпускаются со склада.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "OK",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = SockQntDto.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad request",
+                            content = @Content()
+                    )
+            }
+    )
+    @PostMapping("/{id}/confirm")
+    public CompletableFuture<ResponseEntity<SockQntDto>> confirm(@PathVariable long id) {
+        return databaseExecutor.submit(() -> ResponseEntity.ok(reservationService.confirm(id)));
+    }
+
+    @Operation(
+            tags = "Резервирование носков",
+            summary = "Снять резерв",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "OK",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = ReservationDto.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad request",
+                            content = @Content()
+                    )
+            }
+    )
+    @DeleteMapping("/{id}")
+    public CompletableFuture<ResponseEntity<ReservationDto>> release(@PathVariable long id) {
+        return databaseExecutor.submit(() -> ResponseEntity.ok(reservationService.release(id)));
+    }
+
+    @Operation(
+            tags = "Резервирование носков",
+            summary = "Количество носков, доступное для резерва и отпуска: остаток за вычетом открытых резервов.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "OK",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = Integer.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad request",
+                            content = @Content()
+                    )
+            }
+    )
+    @GetMapping("/available")
+    public CompletableFuture<ResponseEntity<Integer>> available(@RequestParam String color, @RequestParam int cottonPart) {
+        return databaseExecutor.submit(() -> ResponseEntity.ok(reservationService.available(color, cottonPart)));
+    }
+}
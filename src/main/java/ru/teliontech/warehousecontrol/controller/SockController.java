@@ -1,28 +1,75 @@
 package ru.teliontech.warehousecontrol.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.teliontech.warehousecontrol.dto.ImportReportDto;
+import ru.teliontech.warehousecontrol.dto.MovementDto;
+import ru.teliontech.warehousecontrol.dto.PageDto;
 import ru.teliontech.warehousecontrol.dto.SockDto;
 import ru.teliontech.warehousecontrol.dto.SockQntDto;
+import ru.teliontech.warehousecontrol.dto.TransferDto;
+import ru.teliontech.warehousecontrol.entity.OperationType;
 import ru.teliontech.warehousecontrol.exception.InvalidResultException;
+import ru.teliontech.warehousecontrol.service.CatalogueBuffer;
+import ru.teliontech.warehousecontrol.service.DatabaseExecutor;
+import ru.teliontech.warehousecontrol.service.IdempotencyStore;
+import ru.teliontech.warehousecontrol.service.MovementRollupService;
+import ru.teliontech.warehousecontrol.service.SockImportService;
 import ru.teliontech.warehousecontrol.service.SockService;
+import ru.teliontech.warehousecontrol.service.StockVersion;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/socks")
 public class SockController {
     private static final String EXCMSG_UNEXPECTED_VALUE = "Unexpected value";
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+    private static final String CSV_VALUE = "text/csv";
+    private static final String GZIP = "gzip";
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
 
     private final SockService sockService;
+    private final MovementRollupService movementRollupService;
+    private final DatabaseExecutor databaseExecutor;
+    private final StockVersion stockVersion;
+    private final CatalogueBuffer catalogueBuffer;
+    private final IdempotencyStore idempotencyStore;
+    private final SockImportService sockImportService;
+    private final ObjectMapper objectMapper;
 
-    public SockController(SockService sockService) {
+    public SockController(SockService sockService, MovementRollupService movementRollupService,
+                          DatabaseExecutor databaseExecutor, StockVersion stockVersion,
+                          CatalogueBuffer catalogueBuffer, IdempotencyStore idempotencyStore,
+                          SockImportService sockImportService, ObjectMapper objectMapper) {
         this.sockService = sockService;
+        this.movementRollupService = movementRollupService;
+        this.databaseExecutor = databaseExecutor;
+        this.stockVersion = stockVersion;
+        this.catalogueBuffer = catalogueBuffer;
+        this.idempotencyStore = idempotencyStore;
+        this.sockImportService = sockImportService;
+        this.objectMapper = objectMapper;
     }
 
     @Operation(
@@ -36,12 +83,91 @@ public class SockController {
                                     mediaType = MediaType.APPLICATION_JSON_VALUE,
                                     schema = @Schema(implementation = List.class)
                             )
+                    ),
+                    @ApiResponse(
+                            responseCode = "304",
+                            description = "Not modified",
+                            content = @Content()
                     )
             }
     )
     @GetMapping("/all")
-    public ResponseEntity<List<SockDto>> getAllSocks() {
-        return ResponseEntity.ok(sockService.getAllSocks());
+    public CompletableFuture<ResponseEntity<byte[]>> getAllSocks(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        String etag = stockVersion.etag();
+        String gzipEtag = CatalogueBuffer.gzipEtag(etag);
+        if (StockVersion.matches(ifNoneMatch, etag)) {
+            return CompletableFuture.completedFuture(notModified(etag));
+        } else if (StockVersion.matches(ifNoneMatch, gzipEtag)) {
+            return CompletableFuture.completedFuture(notModified(gzipEtag));
+        }
+        return databaseExecutor.submit(() -> {
+            CatalogueBuffer.Encoded encoded = catalogueBuffer.current();
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING);
+            if (encoded.gzipped() != null && acceptsGzip(acceptEncoding)) {
+                return response.eTag(CatalogueBuffer.gzipEtag(encoded.etag()))
+                        .header(HttpHeaders.CONTENT_ENCODING, GZIP)
+                        .body(encoded.gzipped());
+            }
+            return response.eTag(encoded.etag()).body(encoded.json());
+        });
+    }
+
+    @Operation(
+            tags = "Учет носков на складе",
+            summary = "Получить страницу списка товаров",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "OK",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = PageDto.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad request",
+                            content = @Content()
+                    )
+            }
+    )
+    @GetMapping(value = "/all", params = "size")
+    public CompletableFuture<ResponseEntity<PageDto<SockDto>>> getSocksPage(
+            @RequestParam int size,
+            @RequestParam(required = false) String cursor) {
+        return databaseExecutor.submit(() -> ResponseEntity.ok(sockService.getSocksPage(cursor, size)));
+    }
+
+    @Operation(
+            tags = "Учет носков на складе",
+            summary = "Потоковая выгрузка списка товаров в формате NDJSON",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "OK",
+                            content = @Content(
+                                    mediaType = NDJSON_VALUE,
+                                    schema = @Schema(implementation = SockDto.class)
+                            )
+                    )
+            }
+    )
+    @GetMapping(value = "/all", params = "format=ndjson")
+    public ResponseEntity<StreamingResponseBody> streamAllSocks() {
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.setRootValueSeparator(new SerializedString("\n"));
+                sockService.forEachSock(sockDto -> writeValue(generator, sockDto));
+                generator.writeRaw('\n');
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON_VALUE))
+                .body(databaseExecutor.stream(body));
     }
 
     @Operation(
@@ -56,6 +182,11 @@ public class SockController {
                                     schema = @Schema(implementation = Integer.class)
                             )
                     ),
+                    @ApiResponse(
+                            responseCode = "304",
+                            description = "Not modified",
+                            content = @Content()
+                    ),
                     @ApiResponse(
                             responseCode = "400",
                             description = "Bad request",
@@ -64,11 +195,45 @@ public class SockController {
             }
     )
     @GetMapping()
-    public ResponseEntity<Integer> getCountSocksWithParams(
+    public CompletableFuture<ResponseEntity<Integer>> getCountSocksWithParams(
             @RequestParam String color,
             @RequestParam String operation,
-            @RequestParam int cottonPart) {
-        return ResponseEntity.ok(sockService.getCountSocksWithParams(color, operation, cottonPart).orElseThrow(() -> new InvalidResultException(EXCMSG_UNEXPECTED_VALUE)));
+            @RequestParam int cottonPart,
+            @RequestParam(required = false) Integer cottonPartTo,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String etag = stockVersion.etag();
+        if (StockVersion.matches(ifNoneMatch, etag)) {
+            return CompletableFuture.completedFuture(notModified(etag));
+        }
+        return databaseExecutor.submit(() -> ResponseEntity.ok().eTag(etag).body(sockService.getCountSocksWithParams(color, operation, cottonPart, cottonPartTo).orElseThrow(() -> new InvalidResultException(EXCMSG_UNEXPECTED_VALUE))));
+    }
+
+    @Operation(
+            tags = "Учет носков на складе",
+            summary = "Возвращает объемы прихода и отпуска товара по часам или по дням за период.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "OK",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = List.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad request",
+                            content = @Content()
+                    )
+            }
+    )
+    @GetMapping("/{id}/movements")
+    public CompletableFuture<ResponseEntity<List<MovementDto>>> getMovements(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = MovementRollupService.DAY) String granularity,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return databaseExecutor.submit(() -> ResponseEntity.ok(movementRollupService.getMovements(id, granularity, from, to)));
     }
 
     @Operation(
@@ -91,8 +256,16 @@ public class SockController {
             }
     )
     @PatchMapping("/income")
-    public ResponseEntity<SockQntDto> incomeSock(@RequestBody SockQntDto sockQntDto) {
-        return ResponseEntity.ok(sockService.income(sockQntDto).orElseThrow(() -> new InvalidResultException(EXCMSG_UNEXPECTED_VALUE)));
+    public CompletableFuture<ResponseEntity<SockQntDto>> incomeSock(
+            @RequestBody SockQntDto sockQntDto,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        if (idempotencyKey != null) {
+            Optional<SockQntDto> replayed = idempotencyStore.replay(idempotencyKey, sockQntDto, OperationType.INCOME);
+            if (replayed.isPresent()) {
+                return CompletableFuture.completedFuture(ResponseEntity.ok(replayed.get()));
+            }
+        }
+        return databaseExecutor.submit(() -> ResponseEntity.ok(sockService.income(sockQntDto, idempotencyKey).orElseThrow(() -> new InvalidResultException(EXCMSG_UNEXPECTED_VALUE))));
     }
 
     @Operation(
@@ -115,8 +288,88 @@ public class SockController {
             }
     )
     @PatchMapping("/outcome")
-    public ResponseEntity<SockQntDto> outcomeSock(@RequestBody SockQntDto sockQntDto) {
-        return ResponseEntity.ok(sockService.outcome(sockQntDto).orElseThrow(() -> new InvalidResultException(EXCMSG_UNEXPECTED_VALUE)));
+    public CompletableFuture<ResponseEntity<SockQntDto>> outcomeSock(
+            @RequestBody SockQntDto sockQntDto,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        if (idempotencyKey != null) {
+            Optional<SockQntDto> replayed = idempotencyStore.replay(idempotencyKey, sockQntDto, OperationType.OUTCOME);
+            if (replayed.isPresent()) {
+                return CompletableFuture.completedFuture(ResponseEntity.ok(replayed.get()));
+            }
+        }
+        return databaseExecutor.submit(() -> ResponseEntity.ok(sockService.outcome(sockQntDto, idempotencyKey).orElseThrow(() -> new InvalidResultException(EXCMSG_UNEXPECTED_VALUE))));
+    }
+
+    @Operation(
+            tags = "Учет носков на складе",
+            summary = "Регистрирует приход нескольких позиций носков одной транзакцией.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "OK",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = List.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad request",
+                            content = @Content()
+                    )
+            }
+    )
+    @PatchMapping("/income/batch")
+    public CompletableFuture<ResponseEntity<List<SockQntDto>>> incomeSocks(@RequestBody List<SockQntDto> sockQntDtos) {
+        return databaseExecutor.submit(() -> ResponseEntity.ok(sockService.incomeAll(sockQntDtos)));
+    }
+
+    @Operation(
+            tags = "Учет носков на складе",
+            summary = "Регистрирует отпуск нескольких позиций носков одной транзакцией.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "OK",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = List.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad request",
+                            content = @Content()
+                    )
+            }
+    )
+    @PatchMapping("/outcome/batch")
+    public CompletableFuture<ResponseEntity<List<SockQntDto>>> outcomeSocks(@RequestBody List<SockQntDto> sockQntDtos) {
+        return databaseExecutor.submit(() -> ResponseEntity.ok(sockService.outcomeAll(sockQntDtos)));
+    }
+
+    @Operation(
+            tags = "Учет носков на складе",
+            summary = "Перемещает носки из одной позиции в другую одной транзакцией: отпуск источника и приход получателя.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "OK",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = List.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad request",
+                            content = @Content()
+                    )
+            }
+    )
+    @PatchMapping("/transfer")
+    public CompletableFuture<ResponseEntity<List<SockQntDto>>> transferSocks(@RequestBody TransferDto transferDto) {
+        return databaseExecutor.submit(() -> ResponseEntity.ok(sockService.transfer(transferDto)));
     }
 
     @Operation(
@@ -139,8 +392,46 @@ public class SockController {
             }
     )
     @PostMapping()
-    public ResponseEntity<SockDto> createSock(@RequestBody SockDto sockDto) {
-        return ResponseEntity.ok(sockService.createSock(sockDto).orElseThrow(() -> new InvalidResultException(EXCMSG_UNEXPECTED_VALUE)));
+    public CompletableFuture<ResponseEntity<SockDto>> createSock(@RequestBody SockDto sockDto) {
+        return databaseExecutor.submit(() -> ResponseEntity.ok(sockService.createSock(sockDto).orElseThrow(() -> new InvalidResultException(EXCMSG_UNEXPECTED_VALUE))));
+    }
+
+    @Operation(
+            tags = "Учет носков на складе",
+            summary = "Массовая загрузка товаров и начальных остатков из CSV (color,cottonPart,quantity). Количество добавляется к остатку, недостающие товары создаются. Ошибочные строки пропускаются и перечисляются в отчете.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "OK",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = ImportReportDto.class)
+                            )
+                    )
+            }
+    )
+    @PostMapping(value = "/import", consumes = CSV_VALUE)
+    public CompletableFuture<ResponseEntity<ImportReportDto>> importCsv(InputStream body) {
+        return databaseExecutor.submit(() -> ResponseEntity.ok(sockImportService.importCsv(new InputStreamReader(body, StandardCharsets.UTF_8))));
+    }
+
+    @Operation(
+            tags = "Учет носков на складе",
+            summary = "Массовая загрузка товаров и начальных остатков из NDJSON: по одному объекту {color, cottonPart, quantity} в строке",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "OK",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = ImportReportDto.class)
+                            )
+                    )
+            }
+    )
+    @PostMapping(value = "/import", consumes = NDJSON_VALUE)
+    public CompletableFuture<ResponseEntity<ImportReportDto>> importNdjson(InputStream body) {
+        return databaseExecutor.submit(() -> ResponseEntity.ok(sockImportService.importNdjson(new InputStreamReader(body, StandardCharsets.UTF_8))));
     }
 
     @Operation(
@@ -163,8 +454,8 @@ public class SockController {
             }
     )
     @PatchMapping()
-    public ResponseEntity<SockDto> updateSock(@RequestBody SockDto sockDto) {
-        return ResponseEntity.ok(sockService.updateSock(sockDto).orElseThrow(() -> new InvalidResultException(EXCMSG_UNEXPECTED_VALUE)));
+    public CompletableFuture<ResponseEntity<SockDto>> updateSock(@RequestBody SockDto sockDto) {
+        return databaseExecutor.submit(() -> ResponseEntity.ok(sockService.updateSock(sockDto).orElseThrow(() -> new InvalidResultException(EXCMSG_UNEXPECTED_VALUE))));
     }
 
     @Operation(
@@ -187,8 +478,23 @@ public class SockController {
             }
     )
     @DeleteMapping("/{id}")
-    public ResponseEntity<SockDto> deleteSock(@PathVariable Long id) {
-        return ResponseEntity.ok(sockService.deleteSock(id).orElseThrow(() -> new InvalidResultException(EXCMSG_UNEXPECTED_VALUE)));
+    public CompletableFuture<ResponseEntity<SockDto>> deleteSock(@PathVariable Long id) {
+        return databaseExecutor.submit(() -> ResponseEntity.ok(sockService.deleteSock(id).orElseThrow(() -> new InvalidResultException(EXCMSG_UNEXPECTED_VALUE))));
+    }
+
+    private boolean acceptsGzip(String acceptEncoding) {
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains(GZIP);
     }
-}
 
+    private <T> ResponseEntity<T> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+    }
+
+    private void writeValue(JsonGenerator generator, Object value) {
+        try {
+            generator.writeObject(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
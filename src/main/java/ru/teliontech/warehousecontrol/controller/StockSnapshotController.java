@@ -0,0 +1,73 @@
+package ru.teliontech.warehousecontrol.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.teliontech.warehousecontrol.dto.StockRebuildDto;
+import ru.teliontech.warehousecontrol.dto.StockSnapshotDto;
+import ru.teliontech.warehousecontrol.service.DatabaseExecutor;
+import ru.teliontech.warehousecontrol.service.StockSnapshotService;
+
+import java.util.concurrent.CompletableFuture;
+
+@RestController
+@RequestMapping("/api/snapshots")
+public class StockSnapshotController {
+
+    private final StockSnapshotService stockSnapshotService;
+    private final DatabaseExecutor databaseExecutor;
+
+    public StockSnapshotController(StockSnapshotService stockSnapshotService, DatabaseExecutor databaseExecutor) {
+        this.stockSnapshotService = stockSnapshotService;
+        this.databaseExecutor = databaseExecutor;
+    }
+
+    @Operation(
+            tags = "Снимки остатков",
+            summary = "Сделать снимок остатков по журналу операций",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "OK",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = StockSnapshotDto.class)
+                            )
+                    )
+            }
+    )
+    @PostMapping()
+    public CompletableFuture<ResponseEntity<StockSnapshotDto>> takeSnapshot() {
+        return databaseExecutor.submit(() -> ResponseEntity.ok(stockSnapshotService.takeSnapshot()));
+    }
+
+    @Operation(
+            tags = "Снимки остатков",
+            summary = "Восстановить остатки по последнему снимку и журналу операций",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "OK",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = StockRebuildDto.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad request",
+                            content = @Content()
+                    )
+            }
+    )
+    @PostMapping("/rebuild")
+    public CompletableFuture<ResponseEntity<StockRebuildDto>> rebuild() {
+        return databaseExecutor.submit(() -> ResponseEntity.ok(stockSnapshotService.rebuild()));
+    }
+}
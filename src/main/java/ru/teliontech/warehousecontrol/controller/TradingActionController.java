@@ -0,0 +1,143 @@
+package ru.teliontech.warehousecontrol.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.teliontech.warehousecontrol.dto.PageDto;
+import ru.teliontech.warehousecontrol.dto.TradingActionDto;
+import ru.teliontech.warehousecontrol.service.DatabaseExecutor;
+import ru.teliontech.warehousecontrol.service.TradingActionArchiveService;
+import ru.teliontech.warehousecontrol.service.TradingActionService;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPOutputStream;
+
+@RestController
+@RequestMapping("/api/trading-actions")
+public class TradingActionController {
+    private static final String CSV_VALUE = "text/csv";
+    private static final String GZIP = "gzip";
+    private static final String EXPORT_FILENAME = "trading-actions.csv";
+
+    private final TradingActionService tradingActionService;
+    private final TradingActionArchiveService tradingActionArchiveService;
+    private final DatabaseExecutor databaseExecutor;
+
+    public TradingActionController(TradingActionService tradingActionService, TradingActionArchiveService tradingActionArchiveService,
+                                   DatabaseExecutor databaseExecutor) {
+        this.tradingActionService = tradingActionService;
+        this.tradingActionArchiveService = tradingActionArchiveService;
+        this.databaseExecutor = databaseExecutor;
+    }
+
+    @Operation(
+            tags = "Журнал движения носков",
+            summary = "Получить страницу журнала операций прихода и отпуска",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "OK",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = PageDto.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad request",
+                            content = @Content()
+                    )
+            }
+    )
+    @GetMapping()
+    public CompletableFuture<ResponseEntity<PageDto<TradingActionDto>>> getTradingActionsPage(
+            @RequestParam(defaultValue = "100") int size,
+            @RequestParam(required = false) String cursor) {
+        return databaseExecutor.submit(() -> ResponseEntity.ok(tradingActionService.getTradingActionsPage(cursor, size)));
+    }
+
+    @Operation(
+            tags = "Журнал движения носков",
+            summary = "Найти операции в архиве журнала по периоду и товару",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "OK",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = List.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad request",
+                            content = @Content()
+                    )
+            }
+    )
+    @GetMapping("/archive")
+    public CompletableFuture<ResponseEntity<List<TradingActionDto>>> getArchivedTradingActions(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long sockId,
+            @RequestParam(defaultValue = "1000") int limit) {
+        return databaseExecutor.submit(() -> ResponseEntity.ok(tradingActionArchiveService.query(from, to, sockId, limit)));
+    }
+
+    @Operation(
+            tags = "Журнал движения носков",
+            summary = "Потоковая выгрузка журнала операций в CSV за период и по товару. При Accept-Encoding: gzip ответ сжимается на лету.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "OK",
+                            content = @Content(mediaType = CSV_VALUE)
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad request",
+                            content = @Content()
+                    )
+            }
+    )
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportTradingActions(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long sockId,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        tradingActionService.validateExport(from, to);
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains(GZIP);
+        StreamingResponseBody body = outputStream -> {
+            if (!gzip) {
+                tradingActionService.export(from, to, sockId, outputStream);
+                return;
+            }
+            try (GZIPOutputStream gzipped = new GZIPOutputStream(outputStream, 64 * 1024)) {
+                tradingActionService.export(from, to, sockId, gzipped);
+            }
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(CSV_VALUE))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(EXPORT_FILENAME).build().toString())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, GZIP);
+        }
+        return response.body(databaseExecutor.stream(body));
+    }
+}
@@ -0,0 +1,13 @@
+package ru.teliontech.warehousecontrol.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImportErrorDto {
+    private long line;
+    private String message;
+}
@@ -0,0 +1,19 @@
+package ru.teliontech.warehousecontrol.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImportReportDto {
+    private long rows;
+    private long imported;
+    private long rejected;
+    private int createdSocks;
+    private int updatedSocks;
+    private List<ImportErrorDto> errors;
+}
@@ -0,0 +1,18 @@
+package ru.teliontech.warehousecontrol.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.teliontech.warehousecontrol.entity.OperationType;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MovementDto {
+    private LocalDateTime bucket;
+    private OperationType operationType;
+    private long quantity;
+    private long actions;
+}
@@ -0,0 +1,15 @@
+package ru.teliontech.warehousecontrol.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PageDto<T> {
+    private List<T> items;
+    private String nextCursor;
+}
@@ -0,0 +1,19 @@
+package ru.teliontech.warehousecontrol.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReservationDto {
+    private long id;
+    private String color;
+    private int cottonPart;
+    private int quantity;
+    private LocalDateTime expiresAt;
+    private int available;
+}
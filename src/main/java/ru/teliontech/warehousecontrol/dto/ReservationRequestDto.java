@@ -0,0 +1,15 @@
+package ru.teliontech.warehousecontrol.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReservationRequestDto {
+    private String color;
+    private int cottonPart;
+    private int quantity;
+    private Long ttlSeconds;
+}
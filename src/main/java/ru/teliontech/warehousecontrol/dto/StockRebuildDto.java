@@ -0,0 +1,16 @@
+package ru.teliontech.warehousecontrol.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockRebuildDto {
+    private Long snapshotId;
+    private LocalDateTime lastOperationTime;
+    private int repairedSocks;
+}
@@ -0,0 +1,19 @@
+package ru.teliontech.warehousecontrol.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.teliontech.warehousecontrol.entity.OperationType;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TradingActionDto {
+    private Long id;
+    private LocalDateTime operationTime;
+    private OperationType operationType;
+    private Long sockId;
+    private int quantity;
+}
@@ -0,0 +1,16 @@
+package ru.teliontech.warehousecontrol.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransferDto {
+    private String fromColor;
+    private int fromCottonPart;
+    private String toColor;
+    private int toCottonPart;
+    private int quantity;
+}
@@ -0,0 +1,30 @@
+package ru.teliontech.warehousecontrol.entity;
+
+import ru.teliontech.warehousecontrol.service.ColorDictionary;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Stores {@link Sock#getColor()} as the smallint id of the colors dictionary. Query parameters go through
+ * it as well, so a lookup by an unknown color binds an id that matches nothing.
+ */
+@Converter
+public class ColorConverter implements AttributeConverter<String, Short> {
+
+    private final ColorDictionary colorDictionary;
+
+    public ColorConverter(ColorDictionary colorDictionary) {
+        this.colorDictionary = colorDictionary;
+    }
+
+    @Override
+    public Short convertToDatabaseColumn(String color) {
+        return color == null ? null : colorDictionary.id(color);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Short colorId) {
+        return colorId == null ? null : colorDictionary.name(colorId);
+    }
+}
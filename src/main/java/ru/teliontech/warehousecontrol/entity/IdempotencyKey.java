@@ -0,0 +1,34 @@
+package ru.teliontech.warehousecontrol.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * A movement request that was applied under an idempotency key, with the stock it resulted in.
+ */
+@Entity
+@Table(name = "idempotency_keys")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyKey {
+
+    @Id
+    @Column(name = "idempotency_key")
+    String key;
+    LocalDateTime createdAt;
+    OperationType operationType;
+    String color;
+    int cottonPart;
+    int quantity;
+    Long sockId;
+    Integer stock;
+
+}
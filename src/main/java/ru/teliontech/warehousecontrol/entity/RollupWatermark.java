@@ -0,0 +1,23 @@
+package ru.teliontech.warehousecontrol.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "rollup_watermarks")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RollupWatermark {
+
+    @Id
+    String name;
+    LocalDateTime lastOperationTime;
+
+}
@@ -14,8 +14,11 @@ import javax.persistence.*;
 public class Sock {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "socks_generator")
+    @SequenceGenerator(name = "socks_generator", sequenceName = "socks_seq", allocationSize = 50)
     private Long id;
+    @Convert(converter = ColorConverter.class)
+    @Column(name = "color_id")
     private String color;
     private int cottonPart;
     private int stock;
@@ -0,0 +1,23 @@
+package ru.teliontech.warehousecontrol.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "stock_snapshots")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+    LocalDateTime createdAt;
+    LocalDateTime lastOperationTime;
+
+}
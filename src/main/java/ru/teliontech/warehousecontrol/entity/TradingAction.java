@@ -15,7 +15,8 @@ import java.time.LocalDateTime;
 public class TradingAction {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "trading_actions_generator")
+    @SequenceGenerator(name = "trading_actions_generator", sequenceName = "trading_actions_seq", allocationSize = 50)
     Long id;
     LocalDateTime operationTime;
     OperationType operationType;
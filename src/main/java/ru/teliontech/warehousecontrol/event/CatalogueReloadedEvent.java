@@ -0,0 +1,8 @@
+package ru.teliontech.warehousecontrol.event;
+
+/**
+ * Published when stock has been rewritten in bulk behind the service's back,
+ * so that every in-memory view of the catalogue has to be dropped and reloaded.
+ */
+public record CatalogueReloadedEvent() {
+}
@@ -0,0 +1,10 @@
+package ru.teliontech.warehousecontrol.event;
+
+import ru.teliontech.warehousecontrol.entity.Sock;
+
+/**
+ * Published by SockService for every change of a sock variant.
+ * {@code before} is null for a created variant, {@code after} is null for a deleted one.
+ */
+public record SockChangedEvent(Sock before, Sock after) {
+}
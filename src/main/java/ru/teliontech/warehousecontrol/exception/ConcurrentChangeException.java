@@ -0,0 +1,20 @@
+package ru.teliontech.warehousecontrol.exception;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class ConcurrentChangeException extends RuntimeException {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrentChangeException.class);
+    private static final Counter COUNTER = Metrics.counter("warehouse.exceptions", "type", "ConcurrentChangeException");
+
+    public ConcurrentChangeException(String message) {
+        super(message);
+        LOGGER.warn(message);
+        COUNTER.increment();
+    }
+}
\ No newline at end of file
@@ -1,5 +1,7 @@
 package ru.teliontech.warehousecontrol.exception;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -8,10 +10,12 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 @ResponseStatus(HttpStatus.BAD_REQUEST)
 public class NegativeStockException extends RuntimeException {
     private static final Logger LOGGER = LoggerFactory.getLogger(DuplicateSocksException.class);
+    private static final Counter COUNTER = Metrics.counter("warehouse.exceptions", "type", "NegativeStockException");
 
     public NegativeStockException(String message) {
         super(message);
         LOGGER.warn(message);
+        COUNTER.increment();
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,128 @@
+package ru.teliontech.warehousecontrol.metrics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Approximate top of the most frequently moved keys, kept with the Space-Saving algorithm in a fixed number of slots.
+ * When all slots are taken, a new key replaces the least counted one and inherits its count as the error,
+ * so a key's true count lies between {@code count - error} and {@code count}.
+ * <p>
+ * Keys are spread over {@code stripes} independent summaries by hash, each with {@code capacity} slots and its own
+ * lock, so movements of different keys rarely wait for each other here; every key always lands in the same
+ * summary, and the top is merged from all of them on read. Any key moved more often than
+ * {@code total / capacity} times is guaranteed to be tracked. The least counted slot of a summary is kept
+ * at the head of an ordered set, so a record takes {@code O(log capacity)} even when a slot is replaced.
+ */
+@Component
+public class HotKeyTracker {
+
+    private final Summary[] summaries;
+    private final LongAdder total = new LongAdder();
+
+    public HotKeyTracker(@Value("${warehouse.hot-keys.capacity:256}") int capacity,
+                         @Value("${warehouse.hot-keys.stripes:16}") int stripes) {
+        this.summaries = new Summary[stripes];
+        for (int i = 0; i < stripes; i++) {
+            summaries[i] = new Summary(capacity);
+        }
+    }
+
+    public void record(Object key) {
+        total.increment();
+        summaries[Math.floorMod(key.hashCode(), summaries.length)].record(key);
+    }
+
+    public List<HotKey> top(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("The limit must not be negative: " + limit);
+        }
+        List<HotKey> result = new ArrayList<>();
+        for (Summary summary : summaries) {
+            summary.copyTo(result);
+        }
+        result.sort(Comparator.comparingLong(HotKey::count).reversed());
+        return result.subList(0, Math.min(limit, result.size()));
+    }
+
+    public long total() {
+        return total.sum();
+    }
+
+    public void reset() {
+        for (Summary summary : summaries) {
+            summary.clear();
+        }
+        total.reset();
+    }
+
+    public record HotKey(String key, long count, long error) {
+    }
+
+    private static final class Summary {
+        private static final Comparator<Slot> LEAST_COUNTED = Comparator.<Slot>comparingLong(slot -> slot.count)
+                .thenComparingLong(slot -> slot.sequence);
+
+        private final int capacity;
+        private final Map<Object, Slot> slots;
+        private final TreeSet<Slot> byCount = new TreeSet<>(LEAST_COUNTED);
+        private long sequence;
+
+        private Summary(int capacity) {
+            this.capacity = capacity;
+            this.slots = new HashMap<>(capacity * 2);
+        }
+
+        synchronized void record(Object key) {
+            Slot slot = slots.get(key);
+            if (slot != null) {
+                byCount.remove(slot);
+                slot.count++;
+                byCount.add(slot);
+                return;
+            }
+            long count = 1;
+            long error = 0;
+            if (slots.size() == capacity) {
+                Slot victim = byCount.pollFirst();
+                slots.remove(victim.key);
+                count = victim.count + 1;
+                error = victim.count;
+            }
+            Slot added = new Slot(key, count, error, sequence++);
+            slots.put(key, added);
+            byCount.add(added);
+        }
+
+        synchronized void copyTo(List<HotKey> result) {
+            slots.values().forEach(slot -> result.add(new HotKey(slot.key.toString(), slot.count, slot.error)));
+        }
+
+        synchronized void clear() {
+            slots.clear();
+            byCount.clear();
+        }
+    }
+
+    private static final class Slot {
+        private final Object key;
+        private long count;
+        private final long error;
+        private final long sequence;
+
+        private Slot(Object key, long count, long error, long sequence) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package ru.teliontech.warehousecontrol.metrics;
+
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code /actuator/hotkeys}: the (color, cottonPart) keys moved most often since start or the last reset.
+ */
+@Component
+@Endpoint(id = "hotkeys")
+public class HotKeysEndpoint {
+    private static final int DEFAULT_LIMIT = 20;
+    public static final String EXCMSG_LIMIT_NEGATIVE = "The limit must not be negative";
+
+    private final HotKeyTracker hotKeyTracker;
+
+    public HotKeysEndpoint(HotKeyTracker hotKeyTracker) {
+        this.hotKeyTracker = hotKeyTracker;
+    }
+
+    @ReadOperation
+    public Map<String, Object> hotKeys(@Nullable Integer limit) {
+        if (limit != null && limit < 0) {
+            throw new InvalidEndpointRequestException(EXCMSG_LIMIT_NEGATIVE, EXCMSG_LIMIT_NEGATIVE);
+        }
+        List<HotKeyTracker.HotKey> top = hotKeyTracker.top(limit == null ? DEFAULT_LIMIT : limit);
+        return Map.of("total", hotKeyTracker.total(), "keys", top);
+    }
+
+    @DeleteOperation
+    public void reset() {
+        hotKeyTracker.reset();
+    }
+}
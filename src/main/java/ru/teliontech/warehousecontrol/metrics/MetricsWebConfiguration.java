@@ -0,0 +1,14 @@
+package ru.teliontech.warehousecontrol.metrics;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class MetricsWebConfiguration implements WebMvcConfigurer {
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new SqlStatementInterceptor()).addPathPatterns("/api/**");
+    }
+}
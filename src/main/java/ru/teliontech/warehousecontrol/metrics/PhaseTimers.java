@@ -0,0 +1,24 @@
+package ru.teliontech.warehousecontrol.metrics;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Timers for the phases of a stock movement, all under one name so they can be compared side by side:
+ * {@code validate}, {@code lookup} (first load of a key), {@code save} (the stock UPDATE)
+ * and {@code journal} (the trading action insert).
+ */
+public final class PhaseTimers {
+    public static final String NAME = "warehouse.movement.phase";
+
+    private PhaseTimers() {
+    }
+
+    public static Timer timer(String phase) {
+        return Timer.builder(NAME)
+                .description("Time spent in one phase of a stock movement")
+                .tag("phase", phase)
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry);
+    }
+}
@@ -0,0 +1,56 @@
+package ru.teliontech.warehousecontrol.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Counts the SQL statements Hibernate prepares, in total and per request.
+ * Registered through {@code hibernate.session_factory.statement_inspector}, so Hibernate creates it itself;
+ * the per-request scope is a thread-local that {@link SqlStatementInterceptor} binds to the request thread
+ * and {@link #propagate(Supplier)} carries over to the threads the request hands work to.
+ * Statements sent through JdbcTemplate or R2DBC are not seen.
+ */
+public class SqlStatementCounter implements StatementInspector {
+    private static final ThreadLocal<AtomicInteger> CURRENT = new ThreadLocal<>();
+    private static final Counter TOTAL = Counter.builder("warehouse.sql.statements")
+            .description("SQL statements prepared by Hibernate")
+            .register(Metrics.globalRegistry);
+
+    @Override
+    public String inspect(String sql) {
+        TOTAL.increment();
+        AtomicInteger current = CURRENT.get();
+        if (current != null) {
+            current.incrementAndGet();
+        }
+        return sql;
+    }
+
+    public static void bind(AtomicInteger scope) {
+        CURRENT.set(scope);
+    }
+
+    public static void unbind() {
+        CURRENT.remove();
+    }
+
+    public static <T> Supplier<T> propagate(Supplier<T> call) {
+        AtomicInteger scope = CURRENT.get();
+        if (scope == null) {
+            return call;
+        }
+        return () -> {
+            AtomicInteger previous = CURRENT.get();
+            CURRENT.set(scope);
+            try {
+                return call.get();
+            } finally {
+                CURRENT.set(previous);
+            }
+        };
+    }
+}
@@ -0,0 +1,50 @@
+package ru.teliontech.warehousecontrol.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records how many SQL statements each request ran, tagged like {@code http.server.requests}.
+ * The count lives in a request attribute, so an async request keeps counting across its dispatches
+ * and is recorded once, when it completes.
+ */
+public class SqlStatementInterceptor implements AsyncHandlerInterceptor {
+    private static final String ATTRIBUTE = SqlStatementInterceptor.class.getName() + ".count";
+    private static final String UNKNOWN = "UNKNOWN";
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        AtomicInteger count = (AtomicInteger) request.getAttribute(ATTRIBUTE);
+        if (count == null) {
+            count = new AtomicInteger();
+            request.setAttribute(ATTRIBUTE, count);
+        }
+        SqlStatementCounter.bind(count);
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        SqlStatementCounter.unbind();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        SqlStatementCounter.unbind();
+        AtomicInteger count = (AtomicInteger) request.getAttribute(ATTRIBUTE);
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        DistributionSummary.builder("warehouse.http.sql.statements")
+                .description("SQL statements run by one request")
+                .tag("method", request.getMethod())
+                .tag("uri", pattern == null ? UNKNOWN : pattern.toString())
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry)
+                .record(count == null ? 0 : count.get());
+    }
+}
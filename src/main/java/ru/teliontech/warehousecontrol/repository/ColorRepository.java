@@ -0,0 +1,49 @@
+package ru.teliontech.warehousecontrol.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The colors dictionary. Plain JDBC, so that lookups can run while Hibernate is binding or reading
+ * a {@code color_id} without re-entering the persistence context.
+ */
+@Repository
+public class ColorRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ColorRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public List<Color> findAll() {
+        return jdbcTemplate.query("SELECT id, name FROM colors ORDER BY id",
+                (rs, rowNum) -> new Color(rs.getShort("id"), rs.getString("name")));
+    }
+
+    public Optional<Color> findByName(String name) {
+        return jdbcTemplate.query("SELECT id, name FROM colors WHERE name = ?",
+                (rs, rowNum) -> new Color(rs.getShort("id"), rs.getString("name")), name).stream().findFirst();
+    }
+
+    /**
+     * Adds the color unless it exists and returns it either way. Runs in the caller's transaction, so it never
+     * needs a second connection, and the new color rolls back together with the change that introduced it.
+     * A concurrent insert of the same name blocks until the other transaction ends; the existing row is read
+     * afterwards, without locking it.
+     */
+    public Color insertIfAbsent(String name) {
+        List<Short> inserted = jdbcTemplate.queryForList("INSERT INTO colors (name) VALUES (?) " +
+                "ON CONFLICT (name) DO NOTHING RETURNING id", Short.class, name);
+        if (!inserted.isEmpty()) {
+            return new Color(inserted.get(0), name);
+        }
+        return findByName(name).orElseThrow(() -> new IllegalStateException("Color " + name + " vanished while being added"));
+    }
+
+    public record Color(short id, String name) {
+    }
+}
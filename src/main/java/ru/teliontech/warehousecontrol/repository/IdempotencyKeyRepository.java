@@ -0,0 +1,30 @@
+package ru.teliontech.warehousecontrol.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+import ru.teliontech.warehousecontrol.entity.IdempotencyKey;
+
+import java.time.LocalDateTime;
+
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+
+    /**
+     * Inserts the key unless it exists. A concurrent insert of the same key blocks until the other
+     * transaction ends, so exactly one request gets 1 back and goes on with the movement.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_keys (idempotency_key, created_at, operation_type, color, cotton_part, quantity) " +
+            "VALUES (?1, ?2, ?3, ?4, ?5, ?6) ON CONFLICT DO NOTHING", nativeQuery = true)
+    int claim(String key, LocalDateTime createdAt, int operationType, String color, int cottonPart, int quantity);
+
+    @Modifying
+    @Query("UPDATE IdempotencyKey k SET k.sockId = ?2, k.stock = ?3 WHERE k.key = ?1")
+    int complete(String key, Long sockId, int stock);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyKey k WHERE k.createdAt < ?1")
+    int deleteCreatedBefore(LocalDateTime before);
+}
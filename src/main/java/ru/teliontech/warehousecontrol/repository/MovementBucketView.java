@@ -0,0 +1,14 @@
+package ru.teliontech.warehousecontrol.repository;
+
+import java.time.LocalDateTime;
+
+public interface MovementBucketView {
+
+    LocalDateTime getBucket();
+
+    int getOperationType();
+
+    long getQuantity();
+
+    long getActions();
+}
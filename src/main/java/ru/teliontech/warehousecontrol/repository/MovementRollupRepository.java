@@ -0,0 +1,47 @@
+package ru.teliontech.warehousecontrol.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import ru.teliontech.warehousecontrol.entity.RollupWatermark;
+
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface MovementRollupRepository extends JpaRepository<RollupWatermark, String> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT w FROM RollupWatermark w WHERE w.name = ?1")
+    Optional<RollupWatermark> findForUpdate(String name);
+
+    @Modifying
+    @Query(value = "INSERT INTO movement_rollups_hourly (sock_id, bucket, operation_type, quantity, actions) " +
+            "SELECT sock_id, date_trunc('hour', operation_time), operation_type, SUM(quantity), COUNT(*) " +
+            "FROM trading_actions WHERE operation_time > ?1 AND operation_time <= ?2 GROUP BY 1, 2, 3 " +
+            "ON CONFLICT (sock_id, bucket, operation_type) DO UPDATE SET " +
+            "quantity = movement_rollups_hourly.quantity + EXCLUDED.quantity, " +
+            "actions = movement_rollups_hourly.actions + EXCLUDED.actions", nativeQuery = true)
+    int rollUpHourly(LocalDateTime after, LocalDateTime upTo);
+
+    @Modifying
+    @Query(value = "INSERT INTO movement_rollups_daily (sock_id, bucket, operation_type, quantity, actions) " +
+            "SELECT sock_id, date_trunc('day', operation_time), operation_type, SUM(quantity), COUNT(*) " +
+            "FROM trading_actions WHERE operation_time > ?1 AND operation_time <= ?2 GROUP BY 1, 2, 3 " +
+            "ON CONFLICT (sock_id, bucket, operation_type) DO UPDATE SET " +
+            "quantity = movement_rollups_daily.quantity + EXCLUDED.quantity, " +
+            "actions = movement_rollups_daily.actions + EXCLUDED.actions", nativeQuery = true)
+    int rollUpDaily(LocalDateTime after, LocalDateTime upTo);
+
+    @Query(value = "SELECT bucket AS bucket, operation_type AS operationType, quantity AS quantity, actions AS actions " +
+            "FROM movement_rollups_hourly WHERE sock_id = ?1 AND bucket >= ?2 AND bucket < ?3 " +
+            "ORDER BY bucket, operation_type", nativeQuery = true)
+    List<MovementBucketView> findHourly(long sockId, LocalDateTime from, LocalDateTime to);
+
+    @Query(value = "SELECT bucket AS bucket, operation_type AS operationType, quantity AS quantity, actions AS actions " +
+            "FROM movement_rollups_daily WHERE sock_id = ?1 AND bucket >= ?2 AND bucket < ?3 " +
+            "ORDER BY bucket, operation_type", nativeQuery = true)
+    List<MovementBucketView> findDaily(long sockId, LocalDateTime from, LocalDateTime to);
+}
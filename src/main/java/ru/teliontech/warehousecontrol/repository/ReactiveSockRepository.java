@@ -0,0 +1,69 @@
+package ru.teliontech.warehousecontrol.repository;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.teliontech.warehousecontrol.dto.SockDto;
+import ru.teliontech.warehousecontrol.service.ColorDictionary;
+import ru.teliontech.warehousecontrol.service.StockIndex;
+
+import javax.annotation.PreDestroy;
+
+/**
+ * Read-only access to socks over R2DBC, with its own small connection pool next to the JDBC one.
+ * Rows are mapped straight into DTOs, without entities or a persistence context.
+ * <p>
+ * Boot's R2DBC auto-configuration is switched off: a ConnectionFactory bean would make Boot
+ * back off from configuring the JDBC DataSource that the JPA write path relies on.
+ */
+@Repository
+@ConditionalOnProperty(name = "warehouse.reactive.enabled", havingValue = "true")
+public class ReactiveSockRepository {
+
+    private final ConnectionPool connectionPool;
+    private final DatabaseClient databaseClient;
+
+    public ReactiveSockRepository(@Value("${warehouse.reactive.url}") String url,
+                                  @Value("${spring.datasource.username}") String username,
+                                  @Value("${spring.datasource.password:}") String password,
+                                  @Value("${warehouse.reactive.pool-size:10}") int poolSize) {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build();
+        this.connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .maxSize(poolSize)
+                .build());
+        this.databaseClient = DatabaseClient.create(connectionPool);
+    }
+
+    public Flux<SockDto> findAll() {
+        return databaseClient.sql("SELECT s.id, c.name AS color, s.cotton_part, s.stock FROM socks s " +
+                        "JOIN colors c ON c.id = s.color_id ORDER BY s.id")
+                .map(row -> new SockDto(row.get("id", Long.class), row.get("color", String.class),
+                        row.get("cotton_part", Integer.class), row.get("stock", Integer.class)))
+                .all();
+    }
+
+    public Mono<StockIndex.Totals> sum(String color, int fromCottonPart, int toCottonPart) {
+        return databaseClient.sql("SELECT COALESCE(SUM(s.stock), 0) AS stock, COUNT(*) AS variants FROM socks s " +
+                        "WHERE s.color_id = (SELECT id FROM colors WHERE name = :color) AND s.cotton_part BETWEEN :from AND :to")
+                .bind("color", ColorDictionary.normalize(color))
+                .bind("from", fromCottonPart)
+                .bind("to", toCottonPart)
+                .map(row -> new StockIndex.Totals(row.get("stock", Long.class), Math.toIntExact(row.get("variants", Long.class))))
+                .one();
+    }
+
+    @PreDestroy
+    public void close() {
+        connectionPool.dispose();
+    }
+}
@@ -0,0 +1,104 @@
+package ru.teliontech.warehousecontrol.repository;
+
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.teliontech.warehousecontrol.entity.OperationType;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Bulk import of socks through a per-transaction staging table. Rows are streamed into
+ * {@code socks_import} with {@code COPY ... FROM STDIN}, then merged into socks and journaled
+ * with one statement each. Every method must run inside the caller's transaction:
+ * the staging table is dropped when it ends.
+ * <p>
+ * New socks and trading actions take their ids from the same sequences as Hibernate, whose pooled
+ * optimizer treats every {@code nextval} as the top of a block of {@link #ALLOCATION_SIZE} ids,
+ * so the merge claims whole blocks the same way and never collides with ids Hibernate hands out.
+ */
+@Repository
+public class SockImportRepository {
+    public static final int ALLOCATION_SIZE = 50;
+
+    private static final String CREATE_STAGING = "CREATE TEMPORARY TABLE socks_import " +
+            "(line bigint, color_id smallint, cotton_part int, quantity int) ON COMMIT DROP";
+    private static final String COPY_STAGING = "COPY socks_import (line, color_id, cotton_part, quantity) FROM STDIN (FORMAT csv)";
+    private static final String LOCK_SOCKS = "LOCK TABLE socks IN SHARE ROW EXCLUSIVE MODE";
+    private static final String UPDATE_EXISTING = "UPDATE socks s SET stock = s.stock + i.quantity " +
+            "FROM (SELECT color_id, cotton_part, sum(quantity) AS quantity FROM socks_import GROUP BY color_id, cotton_part) i " +
+            "WHERE s.color_id = i.color_id AND s.cotton_part = i.cotton_part";
+    private static final String INSERT_NEW = "WITH fresh AS (" +
+            "SELECT i.color_id, i.cotton_part, sum(i.quantity) AS stock, row_number() OVER (ORDER BY min(i.line)) - 1 AS n " +
+            "FROM socks_import i " +
+            "WHERE NOT EXISTS (SELECT 1 FROM socks s WHERE s.color_id = i.color_id AND s.cotton_part = i.cotton_part) " +
+            "GROUP BY i.color_id, i.cotton_part), " +
+            idBlocks("socks_seq", "fresh") +
+            "INSERT INTO socks (id, color_id, cotton_part, stock) " +
+            "SELECT blocks.hi - " + (ALLOCATION_SIZE - 1) + " + fresh.n % " + ALLOCATION_SIZE + ", fresh.color_id, fresh.cotton_part, fresh.stock " +
+            "FROM fresh JOIN blocks ON blocks.b = fresh.n / " + ALLOCATION_SIZE;
+    private static final String INSERT_ACTIONS = "WITH actions AS (" +
+            "SELECT s.id AS sock_id, i.quantity, row_number() OVER (ORDER BY i.line) - 1 AS n " +
+            "FROM socks_import i JOIN socks s ON s.color_id = i.color_id AND s.cotton_part = i.cotton_part " +
+            "WHERE i.quantity > 0), " +
+            idBlocks("trading_actions_seq", "actions") +
+            "INSERT INTO trading_actions (id, operation_time, operation_type, sock_id, quantity) " +
+            "SELECT blocks.hi - " + (ALLOCATION_SIZE - 1) + " + actions.n % " + ALLOCATION_SIZE + ", ?, ?, actions.sock_id, actions.quantity " +
+            "FROM actions JOIN blocks ON blocks.b = actions.n / " + ALLOCATION_SIZE;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SockImportRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void createStaging() {
+        jdbcTemplate.execute(CREATE_STAGING);
+    }
+
+    /**
+     * Copies one chunk of CSV rows {@code line,color_id,cotton_part,quantity} into the staging table.
+     *
+     * @return the number of rows copied
+     */
+    public long copy(Reader rows) {
+        return jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try {
+                return connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_STAGING, rows);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Adds the staged quantities to the stock of existing socks and creates the missing ones.
+     * Socks are locked against movements and other imports until the transaction ends.
+     */
+    public Merged merge() {
+        jdbcTemplate.execute(LOCK_SOCKS);
+        int updated = jdbcTemplate.update(UPDATE_EXISTING);
+        int created = jdbcTemplate.update(INSERT_NEW);
+        return new Merged(created, updated);
+    }
+
+    /**
+     * Journals every staged row with a positive quantity as an INCOME of its sock.
+     */
+    public int journal(LocalDateTime operationTime) {
+        return jdbcTemplate.update(INSERT_ACTIONS, Timestamp.valueOf(operationTime), OperationType.INCOME.ordinal());
+    }
+
+    private static String idBlocks(String sequence, String rows) {
+        return "blocks AS (SELECT b, nextval('" + sequence + "') AS hi FROM generate_series(0, " +
+                "((SELECT count(*) FROM " + rows + ") + " + (ALLOCATION_SIZE - 1) + ") / " + ALLOCATION_SIZE + " - 1) AS b) ";
+    }
+
+    public record Merged(int created, int updated) {
+    }
+}
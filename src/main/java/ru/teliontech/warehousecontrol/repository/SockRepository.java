@@ -1,30 +1,46 @@
 package ru.teliontech.warehousecontrol.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
+import ru.teliontech.warehousecontrol.dto.SockDto;
 import ru.teliontech.warehousecontrol.entity.Sock;
 
+import javax.persistence.QueryHint;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface SockRepository extends JpaRepository<Sock, Long> {
-
-    @Query(
-            "SELECT SUM(s.stock) as sum " +
-            "FROM Sock s " +
-            "WHERE s.color = ?1 AND s.cottonPart > ?2 " +
-            "GROUP BY s.color")
-    Integer getStockSumByColorAndCottonPartGreaterThan(String color, int cottonPart);
-
-    @Query(
-            "SELECT SUM(s.stock) as sum " +
-            "FROM Sock s " +
-            "WHERE s.color = ?1 AND s.cottonPart < ?2 " +
-            "GROUP BY s.color")
-    Integer getStockSumByColorAndCottonPartLessThan(String color, int cottonPart);
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
-    List<Sock> findAllByColorAndCottonPartGreaterThan(String color, int cottonPart);
-
-    List<Sock> findAllByColorAndCottonPartLessThan(String color, int cottonPart);
+public interface SockRepository extends JpaRepository<Sock, Long> {
 
     List<Sock> findByColorAndCottonPart(String color, int cottonPart);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new ru.teliontech.warehousecontrol.dto.SockDto(s.id, s.color, s.cottonPart, s.stock) FROM Sock s ORDER BY s.id")
+    Stream<SockDto> streamAll();
+
+    /**
+     * Reads a sock straight from the database as a projection, never from the persistence context,
+     * so a catalogue change sees the row as it is now and not an entity loaded earlier in the transaction.
+     */
+    @Query("SELECT new ru.teliontech.warehousecontrol.dto.SockDto(s.id, s.color, s.cottonPart, s.stock) FROM Sock s WHERE s.id = ?1")
+    Optional<SockDto> findCurrentById(Long id);
+
+    @Query("SELECT new ru.teliontech.warehousecontrol.dto.SockDto(s.id, s.color, s.cottonPart, s.stock) FROM Sock s WHERE s.id > ?1 ORDER BY s.id")
+    List<SockDto> findPageAfter(long id, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Sock s SET s.stock = s.stock + ?2 WHERE s.id = ?1")
+    int incrementStock(Long id, int quantity);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Sock s SET s.stock = s.stock - ?2 WHERE s.id = ?1 AND s.stock >= ?2")
+    int decrementStock(Long id, int quantity);
 }
\ No newline at end of file
@@ -0,0 +1,51 @@
+package ru.teliontech.warehousecontrol.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import ru.teliontech.warehousecontrol.entity.StockSnapshot;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface StockSnapshotRepository extends JpaRepository<StockSnapshot, Long> {
+
+    String SIGNED_QUANTITY = "CASE operation_type WHEN 0 THEN quantity ELSE -quantity END";
+
+    Optional<StockSnapshot> findTopByOrderByIdDesc();
+
+    @Modifying
+    @Query(value = "INSERT INTO stock_snapshot_items (snapshot_id, sock_id, stock) " +
+            "SELECT ?1, s.id, s.stock - COALESCE(t.delta, 0) FROM socks s " +
+            "LEFT JOIN (SELECT sock_id, SUM(" + SIGNED_QUANTITY + ") AS delta FROM trading_actions " +
+            "WHERE operation_time > ?2 GROUP BY sock_id) t ON t.sock_id = s.id", nativeQuery = true)
+    int insertBaselineItems(long snapshotId, LocalDateTime lastOperationTime);
+
+    @Modifying
+    @Query(value = "INSERT INTO stock_snapshot_items (snapshot_id, sock_id, stock) " +
+            "SELECT ?1, d.sock_id, SUM(d.stock) FROM (" +
+            "SELECT sock_id, stock FROM stock_snapshot_items WHERE snapshot_id = ?2 " +
+            "UNION ALL " +
+            "SELECT sock_id, " + SIGNED_QUANTITY + " FROM trading_actions WHERE operation_time > ?3 AND operation_time <= ?4" +
+            ") d WHERE d.sock_id IN (SELECT id FROM socks) GROUP BY d.sock_id", nativeQuery = true)
+    int insertIncrementalItems(long snapshotId, long previousSnapshotId, LocalDateTime previousLastOperationTime,
+                               LocalDateTime lastOperationTime);
+
+    @Modifying
+    @Query(value = "LOCK TABLE socks IN EXCLUSIVE MODE", nativeQuery = true)
+    void lockSocks();
+
+    @Modifying
+    @Query(value = "UPDATE socks s SET stock = r.stock FROM (" +
+            "SELECT k.id, COALESCE(i.stock, 0) + COALESCE(t.delta, 0) AS stock FROM socks k " +
+            "LEFT JOIN stock_snapshot_items i ON i.snapshot_id = ?1 AND i.sock_id = k.id " +
+            "LEFT JOIN (SELECT sock_id, SUM(" + SIGNED_QUANTITY + ") AS delta FROM trading_actions " +
+            "WHERE operation_time > ?2 GROUP BY sock_id) t ON t.sock_id = k.id" +
+            ") r WHERE r.id = s.id AND s.stock IS DISTINCT FROM r.stock", nativeQuery = true)
+    int rebuildStock(long snapshotId, LocalDateTime lastOperationTime);
+
+    @Modifying
+    @Query(value = "DELETE FROM stock_snapshots WHERE id < " +
+            "(SELECT MIN(k.id) FROM (SELECT id FROM stock_snapshots ORDER BY id DESC LIMIT ?1) k)", nativeQuery = true)
+    int deleteAllButLatest(int retained);
+}
@@ -0,0 +1,32 @@
+package ru.teliontech.warehousecontrol.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.teliontech.warehousecontrol.entity.TradingAction;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Trading actions the write-behind journal could not save, kept with the reason so they can be
+ * looked into and replayed by hand. Plain JDBC and no constraints on the columns, so a row that
+ * was rejected by trading_actions can still be written here.
+ */
+@Repository
+public class TradingActionDeadLetterRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TradingActionDeadLetterRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void insertAll(List<TradingAction> tradingActions, LocalDateTime failedAt, String error) {
+        jdbcTemplate.batchUpdate("INSERT INTO trading_action_dead_letters " +
+                        "(failed_at, operation_time, operation_type, sock_id, quantity, error) VALUES (?, ?, ?, ?, ?, ?)",
+                tradingActions.stream().map(tradingAction -> new Object[]{failedAt, tradingAction.getOperationTime(),
+                        tradingAction.getOperationType() == null ? null : tradingAction.getOperationType().ordinal(),
+                        tradingAction.getSock() == null ? null : tradingAction.getSock().getId(),
+                        tradingAction.getQuantity(), error}).toList());
+    }
+}
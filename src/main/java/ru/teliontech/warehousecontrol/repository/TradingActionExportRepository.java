@@ -0,0 +1,74 @@
+package ru.teliontech.warehousecontrol.repository;
+
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.teliontech.warehousecontrol.entity.OperationType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Streams trading actions as CSV with {@code COPY ... TO STDOUT}: the server formats the rows and the driver
+ * hands the bytes straight to the output stream, so no row is ever materialized in the application.
+ * COPY takes no bind parameters, so the filters are rendered into the statement, from typed values only.
+ */
+@Repository
+public class TradingActionExportRepository {
+    private static final String OPERATION_TYPE = Arrays.stream(OperationType.values())
+            .map(type -> "WHEN " + type.ordinal() + " THEN '" + type.name() + "'")
+            .collect(Collectors.joining(" ", "CASE t.operation_type ", " END"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TradingActionExportRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Writes every action with {@code from <= operationTime < to} of the given sock in id order,
+     * after a header line; a {@code null} filter matches everything.
+     *
+     * @return the number of exported actions
+     */
+    public long copyOut(LocalDateTime from, LocalDateTime to, Long sockId, OutputStream out) {
+        String sql = exportStatement(from, to, sockId);
+        return jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try {
+                return connection.unwrap(PGConnection.class).getCopyAPI().copyOut(sql, out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    static String exportStatement(LocalDateTime from, LocalDateTime to, Long sockId) {
+        List<String> conditions = new ArrayList<>();
+        if (from != null) {
+            conditions.add("t.operation_time >= " + timestamp(from));
+        }
+        if (to != null) {
+            conditions.add("t.operation_time < " + timestamp(to));
+        }
+        if (sockId != null) {
+            conditions.add("t.sock_id = " + sockId.longValue());
+        }
+        return "COPY (SELECT t.id, t.operation_time, " + OPERATION_TYPE + " AS operation_type, " +
+                "t.sock_id, c.name AS color, s.cotton_part, t.quantity " +
+                "FROM trading_actions t LEFT JOIN socks s ON s.id = t.sock_id LEFT JOIN colors c ON c.id = s.color_id" +
+                (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions)) +
+                " ORDER BY t.id) TO STDOUT (FORMAT csv, HEADER)";
+    }
+
+    private static String timestamp(LocalDateTime value) {
+        return "'" + value.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) + "'::timestamp";
+    }
+}
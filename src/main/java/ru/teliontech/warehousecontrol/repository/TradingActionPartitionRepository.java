@@ -0,0 +1,109 @@
+package ru.teliontech.warehousecontrol.repository;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.teliontech.warehousecontrol.archive.ArchivedAction;
+import ru.teliontech.warehousecontrol.entity.OperationType;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Monthly range partitions of trading_actions, named {@code trading_actions_pYYYYMM}.
+ * Detached partitions are moved to the {@code trading_actions_archive} schema until they are exported.
+ */
+@Repository
+@ConditionalOnProperty(name = "warehouse.partitions.enabled", havingValue = "true")
+public class TradingActionPartitionRepository {
+    public static final String PREFIX = "trading_actions_p";
+    public static final String ARCHIVE_SCHEMA = "trading_actions_archive";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    public static final String EXCMSG_NULL_COLUMN = "Trading action %d has no %s and cannot be archived";
+
+    private static final int FETCH_SIZE = 10_000;
+    private static final OperationType[] OPERATION_TYPES = OperationType.values();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingTemplate;
+
+    public TradingActionPartitionRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.streamingTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingTemplate.setFetchSize(FETCH_SIZE);
+    }
+
+    public List<YearMonth> findPartitions() {
+        return toMonths(jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                        "WHERE i.inhparent = 'trading_actions'::regclass AND c.relname ~ '^" + PREFIX + "[0-9]{6}$' " +
+                        "ORDER BY c.relname", String.class));
+    }
+
+    public List<YearMonth> findArchivedPartitions() {
+        return toMonths(jdbcTemplate.queryForList(
+                "SELECT table_name FROM information_schema.tables WHERE table_schema = '" + ARCHIVE_SCHEMA + "' " +
+                        "AND table_name ~ '^" + PREFIX + "[0-9]{6}$' ORDER BY table_name", String.class));
+    }
+
+    public void createPartition(YearMonth month) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + tableName(month) +
+                " PARTITION OF trading_actions FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+    }
+
+    @Transactional
+    public void detachPartition(YearMonth month) {
+        jdbcTemplate.execute("ALTER TABLE trading_actions DETACH PARTITION " + tableName(month));
+        jdbcTemplate.execute("ALTER TABLE " + tableName(month) + " SET SCHEMA " + ARCHIVE_SCHEMA);
+    }
+
+    /**
+     * Streams the rows of a detached partition in id order. Runs in a transaction so that
+     * the driver fetches the rows with a cursor instead of loading the whole month.
+     * A row with a NULL column fails the export: a segment has no way to store NULL.
+     */
+    @Transactional(readOnly = true)
+    public void forEachArchived(YearMonth month, Consumer<ArchivedAction> consumer) {
+        streamingTemplate.query("SELECT id, operation_time, operation_type, sock_id, quantity FROM " +
+                        ARCHIVE_SCHEMA + "." + tableName(month) + " ORDER BY id",
+                (RowCallbackHandler) rs -> consumer.accept(toArchivedAction(rs)));
+    }
+
+    static ArchivedAction toArchivedAction(ResultSet rs) throws SQLException {
+        long id = rs.getLong(1);
+        return new ArchivedAction(id,
+                required(rs.getTimestamp(2), id, "operation_time").toLocalDateTime(),
+                OPERATION_TYPES[required(rs.getObject(3, Integer.class), id, "operation_type")],
+                required(rs.getObject(4, Long.class), id, "sock_id"),
+                required(rs.getObject(5, Integer.class), id, "quantity"));
+    }
+
+    private static <T> T required(T value, long id, String column) {
+        if (value == null) {
+            throw new DataIntegrityViolationException(String.format(EXCMSG_NULL_COLUMN, id, column));
+        }
+        return value;
+    }
+
+    public void dropArchived(YearMonth month) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + ARCHIVE_SCHEMA + "." + tableName(month));
+    }
+
+    public static String tableName(YearMonth month) {
+        return PREFIX + month.format(SUFFIX);
+    }
+
+    private List<YearMonth> toMonths(List<String> tableNames) {
+        return tableNames.stream()
+                .map(name -> YearMonth.parse(name.substring(PREFIX.length()), SUFFIX))
+                .toList();
+    }
+}
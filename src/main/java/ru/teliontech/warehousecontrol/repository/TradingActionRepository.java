@@ -1,7 +1,21 @@
 package ru.teliontech.warehousecontrol.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import ru.teliontech.warehousecontrol.dto.TradingActionDto;
 import ru.teliontech.warehousecontrol.entity.TradingAction;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 public interface TradingActionRepository extends JpaRepository<TradingAction, Long> {
+
+    @Query("SELECT new ru.teliontech.warehousecontrol.dto.TradingActionDto(t.id, t.operationTime, t.operationType, t.sock.id, t.quantity) " +
+            "FROM TradingAction t WHERE (t.operationTime > ?1 OR t.operationTime = ?1 AND t.id > ?2) AND t.operationTime <= ?3 " +
+            "ORDER BY t.operationTime, t.id")
+    List<TradingActionDto> findPageAfter(LocalDateTime operationTime, long id, LocalDateTime settledBefore, Pageable pageable);
+
+    @Query("SELECT t.operationTime FROM TradingAction t WHERE t.operationTime > ?1 AND t.operationTime <= ?2 ORDER BY t.operationTime")
+    List<LocalDateTime> findOperationTimes(LocalDateTime after, LocalDateTime upTo, Pageable pageable);
 }
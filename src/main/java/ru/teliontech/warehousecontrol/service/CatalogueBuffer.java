@@ -0,0 +1,105 @@
+package ru.teliontech.warehousecontrol.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The whole catalogue as a ready-to-send JSON array, optionally also gzipped.
+ * The buffer is tagged with the {@link StockVersion} it was built at and rebuilt lazily
+ * by the first request that finds it outdated; concurrent requests wait for that one rebuild.
+ * Rows come straight from the DTO projection, without entities.
+ */
+@Component
+public class CatalogueBuffer {
+    private static final String GZIP_SUFFIX = "-gzip\"";
+
+    private final SockService sockService;
+    private final StockVersion stockVersion;
+    private final ObjectMapper objectMapper;
+    private final boolean gzip;
+    private final Timer rebuildTimer;
+
+    private volatile Encoded encoded;
+
+    public CatalogueBuffer(SockService sockService, StockVersion stockVersion, ObjectMapper objectMapper,
+                           @Value("${warehouse.catalogue.gzip:true}") boolean gzip) {
+        this.sockService = sockService;
+        this.stockVersion = stockVersion;
+        this.objectMapper = objectMapper;
+        this.gzip = gzip;
+        this.rebuildTimer = Timer.builder("warehouse.catalogue.rebuild")
+                .description("Time to encode the whole catalogue")
+                .register(Metrics.globalRegistry);
+    }
+
+    public Encoded current() {
+        Encoded current = encoded;
+        if (current != null && current.version() == stockVersion.current()) {
+            return current;
+        }
+        synchronized (this) {
+            long version = stockVersion.current();
+            if (encoded == null || encoded.version() != version) {
+                encoded = rebuildTimer.record(() -> encode(version));
+            }
+            return encoded;
+        }
+    }
+
+    /**
+     * The ETag of the gzipped representation; it has to differ from the identity one.
+     */
+    public static String gzipEtag(String etag) {
+        return etag.substring(0, etag.length() - 1) + GZIP_SUFFIX;
+    }
+
+    public void invalidate() {
+        encoded = null;
+    }
+
+    private Encoded encode(long version) {
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(json)) {
+            generator.writeStartArray();
+            sockService.forEachSock(sockDto -> writeValue(generator, sockDto));
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] bytes = json.toByteArray();
+        return new Encoded(version, stockVersion.etag(version), bytes, gzip ? compress(bytes) : null);
+    }
+
+    private byte[] compress(byte[] bytes) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    private void writeValue(JsonGenerator generator, Object value) {
+        try {
+            generator.writeObject(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param gzipped null when gzip is disabled
+     */
+    public record Encoded(long version, String etag, byte[] json, byte[] gzipped) {
+    }
+}
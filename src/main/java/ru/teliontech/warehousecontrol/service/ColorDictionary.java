@@ -0,0 +1,143 @@
+package ru.teliontech.warehousecontrol.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.teliontech.warehousecontrol.exception.InvalidArgumentException;
+import ru.teliontech.warehousecontrol.repository.ColorRepository;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory, append-only intern table of the colors dictionary: name to smallint id and back.
+ * Names are normalized (trimmed, lower case) at the edge, so "White " and "white" are the same color.
+ * The table is loaded at startup; a miss falls back to the database once, which picks up colors
+ * added by another instance. Colors are never removed.
+ * <p>
+ * A new color is inserted on the caller's transaction. Until that transaction commits the color is known
+ * to it alone; it enters the table on commit and is forgotten on rollback, so the table never holds an id
+ * that may not exist.
+ */
+@Component
+public class ColorDictionary {
+    public static final short UNKNOWN = -1;
+    public static final int MAX_NAME_LENGTH = 20;
+    public static final String EXCMSG_COLOR_INVALID = "The value of the color field must not be blank or longer than " + MAX_NAME_LENGTH + " characters";
+
+    private final ColorRepository colorRepository;
+    private final Map<String, Short> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[0];
+
+    public ColorDictionary(ColorRepository colorRepository) {
+        this.colorRepository = colorRepository;
+    }
+
+    @PostConstruct
+    public void load() {
+        Map<String, ColorRepository.Color> pending = pending();
+        colorRepository.findAll().stream()
+                .filter(color -> !pending.containsKey(color.name()))
+                .forEach(this::register);
+    }
+
+    public static String normalize(String name) {
+        return name == null ? null : name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Id of a color, or {@link #UNKNOWN} if there is no such color; an unknown id matches no rows.
+     */
+    public short id(String name) {
+        String normalized = normalize(name);
+        Short id = ids.get(normalized);
+        if (id != null) {
+            return id;
+        }
+        ColorRepository.Color added = pending().get(normalized);
+        if (added != null) {
+            return added.id();
+        }
+        return colorRepository.findByName(normalized).map(this::register).orElse(UNKNOWN);
+    }
+
+    public String name(short id) {
+        String[] current = names;
+        if (id >= 0 && id < current.length && current[id] != null) {
+            return current[id];
+        }
+        for (ColorRepository.Color added : pending().values()) {
+            if (added.id() == id) {
+                return added.name();
+            }
+        }
+        load();
+        current = names;
+        if (id < 0 || id >= current.length || current[id] == null) {
+            throw new IllegalStateException("Unknown color id " + id);
+        }
+        return current[id];
+    }
+
+    /**
+     * Id of a color, adding it to the dictionary first if it is new.
+     */
+    public short intern(String name) {
+        String normalized = normalize(name);
+        if (normalized == null || normalized.isEmpty() || normalized.length() > MAX_NAME_LENGTH) {
+            throw new InvalidArgumentException(EXCMSG_COLOR_INVALID);
+        }
+        short id = id(normalized);
+        if (id != UNKNOWN) {
+            return id;
+        }
+        ColorRepository.Color color = colorRepository.insertIfAbsent(normalized);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return register(color);
+        }
+        addPending(color);
+        return color.id();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, ColorRepository.Color> pending() {
+        Object pending = TransactionSynchronizationManager.getResource(this);
+        return pending == null ? Map.of() : (Map<String, ColorRepository.Color>) pending;
+    }
+
+    private void addPending(ColorRepository.Color color) {
+        Map<String, ColorRepository.Color> pending = pending();
+        if (pending.isEmpty()) {
+            Map<String, ColorRepository.Color> added = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(this, added);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ColorDictionary.this);
+                    if (status == STATUS_COMMITTED) {
+                        added.values().forEach(ColorDictionary.this::register);
+                    }
+                }
+            });
+            pending = added;
+        }
+        pending.put(color.name(), color);
+    }
+
+    private synchronized short register(ColorRepository.Color color) {
+        String[] current = names;
+        if (color.id() >= current.length) {
+            current = Arrays.copyOf(current, Math.max(color.id() + 1, current.length * 2));
+        } else {
+            current = current.clone();
+        }
+        current[color.id()] = color.name();
+        names = current;
+        ids.put(color.name(), color.id());
+        return color.id();
+    }
+}
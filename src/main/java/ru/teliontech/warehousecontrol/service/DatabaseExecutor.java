@@ -0,0 +1,123 @@
+package ru.teliontech.warehousecontrol.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.teliontech.warehousecontrol.exception.ServiceOverloadedException;
+import ru.teliontech.warehousecontrol.metrics.SqlStatementCounter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs service calls that hit the database for the controllers.
+ * <p>
+ * In async mode the calls run on a fixed pool with as many threads as there are connections,
+ * so request threads are released right away and no thread ever waits for a connection.
+ * Calls that do not fit into the bounded admission queue are rejected at once with
+ * {@link ServiceOverloadedException}, which keeps the latency of admitted calls predictable.
+ * Streamed responses are admitted the same way, see {@link #stream(StreamingResponseBody)}.
+ * With async mode off every call runs on the request thread. The reactive endpoints are not covered:
+ * they use a separate R2DBC connection pool and never block a thread.
+ */
+@Component
+public class DatabaseExecutor {
+    public static final String EXCMSG_OVERLOADED = "The service is overloaded, try again later";
+    private static final long STREAM_START_TIMEOUT_SECONDS = 30;
+
+    private final ThreadPoolExecutor executor;
+    private final Counter rejected;
+
+    public DatabaseExecutor(@Value("${warehouse.async.enabled:false}") boolean enabled,
+                            @Value("${warehouse.async.threads:${spring.datasource.hikari.maximum-pool-size:10}}") int threads,
+                            @Value("${warehouse.async.queue-capacity:100}") int queueCapacity) {
+        this.executor = enabled
+                ? new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory(), new ThreadPoolExecutor.AbortPolicy())
+                : null;
+        this.rejected = Counter.builder("warehouse.async.rejected")
+                .description("Service calls rejected because the admission queue was full")
+                .register(Metrics.globalRegistry);
+        if (executor != null) {
+            Gauge.builder("warehouse.async.queue.depth", executor, pool -> pool.getQueue().size())
+                    .description("Service calls waiting for a database thread")
+                    .register(Metrics.globalRegistry);
+        }
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> call) {
+        if (executor == null) {
+            return CompletableFuture.completedFuture(call.get());
+        }
+        try {
+            return CompletableFuture.supplyAsync(SqlStatementCounter.propagate(call), executor);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ServiceOverloadedException(EXCMSG_OVERLOADED);
+        }
+    }
+
+    /**
+     * Admits a streamed response as one call. The call is queued at once, so a full queue rejects the request
+     * before any header is sent. Once the response starts, the body is written from a database thread
+     * while the request's own async thread waits for it. A call whose response never starts gives up after
+     * {@value #STREAM_START_TIMEOUT_SECONDS} seconds, so it cannot hold a database thread for good.
+     */
+    public StreamingResponseBody stream(StreamingResponseBody body) {
+        if (executor == null) {
+            return body;
+        }
+        CompletableFuture<OutputStream> target = new CompletableFuture<OutputStream>()
+                .orTimeout(STREAM_START_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        CompletableFuture<Void> written = submit(() -> {
+            try {
+                body.writeTo(target.join());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        });
+        return outputStream -> {
+            target.complete(outputStream);
+            try {
+                written.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof UncheckedIOException unchecked) {
+                    throw unchecked.getCause();
+                }
+                throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
+            }
+        };
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        }
+    }
+
+    private static ThreadFactory threadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "database-executor-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,142 @@
+package ru.teliontech.warehousecontrol.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.teliontech.warehousecontrol.dto.SockQntDto;
+import ru.teliontech.warehousecontrol.entity.IdempotencyKey;
+import ru.teliontech.warehousecontrol.entity.OperationType;
+import ru.teliontech.warehousecontrol.entity.Sock;
+import ru.teliontech.warehousecontrol.exception.InvalidArgumentException;
+import ru.teliontech.warehousecontrol.repository.IdempotencyKeyRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Remembers the result of every income/outcome made under an {@code Idempotency-Key}, so that a retry
+ * gets the original response instead of moving the stock again. Completed movements are kept in a bounded
+ * in-memory cache and answered without a transaction; the {@code idempotency_keys} table is the source of truth
+ * and covers restarts, evicted entries and concurrent retries, which queue up on the primary key of the
+ * first attempt. Keys are kept for {@code ttl} and then purged.
+ */
+@Component
+public class IdempotencyStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IdempotencyStore.class);
+    public static final int MAX_KEY_LENGTH = 64;
+    public static final String EXCMSG_KEY_INVALID = "The Idempotency-Key header must not be blank or longer than 64 characters";
+    public static final String EXCMSG_KEY_REUSED = "The Idempotency-Key was already used for a different movement";
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final Duration ttl;
+    private final Cache<String, StoredMovement> completed;
+
+    public IdempotencyStore(IdempotencyKeyRepository idempotencyKeyRepository,
+                            @Value("${warehouse.idempotency.ttl:PT24H}") Duration ttl,
+                            @Value("${warehouse.idempotency.maximum-size:100000}") long maximumSize) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.ttl = ttl;
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(Metrics.globalRegistry, completed, "idempotency.keys");
+    }
+
+    /**
+     * Answers a retry from memory. An empty result means the key is unknown here,
+     * not that it is unused, so the caller still has to {@link #claim} it.
+     */
+    public Optional<SockQntDto> replay(String key, SockQntDto inputSock, OperationType operationType) {
+        validateKey(key);
+        StoredMovement stored = completed.getIfPresent(key);
+        if (stored == null) {
+            return Optional.empty();
+        }
+        return Optional.of(stored.replay(inputSock, operationType));
+    }
+
+    /**
+     * Reserves the key on the caller's transaction. Returns the stored result if the key was already used
+     * by a committed movement; an empty result means the caller owns the key and must {@link #complete} it.
+     */
+    public Optional<SockQntDto> claim(String key, SockQntDto inputSock, OperationType operationType) {
+        validateKey(key);
+        int claimed = idempotencyKeyRepository.claim(key, LocalDateTime.now(), operationType.ordinal(),
+                ColorDictionary.normalize(inputSock.getColor()), inputSock.getCottonPart(), inputSock.getQuantity());
+        if (claimed == 1) {
+            return Optional.empty();
+        }
+        StoredMovement stored = idempotencyKeyRepository.findById(key)
+                .map(StoredMovement::of)
+                .orElseThrow(() -> new IllegalStateException("Idempotency key " + key + " vanished while claimed"));
+        SockQntDto result = stored.replay(inputSock, operationType);
+        completed.put(key, stored);
+        return Optional.of(result);
+    }
+
+    public void complete(String key, Sock result, int quantity, OperationType operationType) {
+        idempotencyKeyRepository.complete(key, result.getId(), result.getStock());
+        StoredMovement stored = new StoredMovement(operationType, result.getColor(), result.getCottonPart(), quantity,
+                result.getId(), result.getStock());
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            completed.put(key, stored);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                completed.put(key, stored);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${warehouse.idempotency.cleanup-interval:PT1H}",
+            initialDelayString = "${warehouse.idempotency.cleanup-interval:PT1H}")
+    public void purgeExpired() {
+        int purged = idempotencyKeyRepository.deleteCreatedBefore(LocalDateTime.now().minus(ttl));
+        if (purged > 0) {
+            LOGGER.info("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    public void invalidateAll() {
+        completed.invalidateAll();
+    }
+
+    private static void validateKey(String key) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidArgumentException(EXCMSG_KEY_INVALID);
+        }
+    }
+
+    private record StoredMovement(OperationType operationType, String color, int cottonPart, int quantity,
+                                  Long sockId, int stock) {
+
+        static StoredMovement of(IdempotencyKey row) {
+            return new StoredMovement(row.getOperationType(), row.getColor(), row.getCottonPart(), row.getQuantity(),
+                    row.getSockId(), Objects.requireNonNullElse(row.getStock(), 0));
+        }
+
+        SockQntDto replay(SockQntDto inputSock, OperationType requested) {
+            if (requested != operationType
+                    || !Objects.equals(ColorDictionary.normalize(inputSock.getColor()), color)
+                    || inputSock.getCottonPart() != cottonPart
+                    || inputSock.getQuantity() != quantity) {
+                throw new InvalidArgumentException(EXCMSG_KEY_REUSED);
+            }
+            return new SockQntDto(sockId, color, cottonPart, quantity, stock);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package ru.teliontech.warehousecontrol.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the movement rollups up to date, catching up batch by batch after a pause.
+ */
+@Component
+@ConditionalOnProperty(name = "warehouse.rollup.enabled", havingValue = "true")
+public class MovementRollupJob {
+
+    private final MovementRollupService movementRollupService;
+
+    public MovementRollupJob(MovementRollupService movementRollupService) {
+        this.movementRollupService = movementRollupService;
+    }
+
+    @Scheduled(fixedDelayString = "${warehouse.rollup.interval:PT1M}")
+    public void refresh() {
+        boolean more;
+        do {
+            more = movementRollupService.refresh();
+        } while (more);
+    }
+}
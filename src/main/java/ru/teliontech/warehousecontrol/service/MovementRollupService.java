@@ -0,0 +1,113 @@
+package ru.teliontech.warehousecontrol.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.teliontech.warehousecontrol.dto.MovementDto;
+import ru.teliontech.warehousecontrol.entity.OperationType;
+import ru.teliontech.warehousecontrol.entity.RollupWatermark;
+import ru.teliontech.warehousecontrol.exception.EntityNotFoundException;
+import ru.teliontech.warehousecontrol.exception.InvalidArgumentException;
+import ru.teliontech.warehousecontrol.repository.MovementBucketView;
+import ru.teliontech.warehousecontrol.repository.MovementRollupRepository;
+import ru.teliontech.warehousecontrol.repository.TradingActionRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Inbound and outbound volume per sock, pre-aggregated into hourly and daily buckets.
+ * The rollups are folded forward from the trading actions log past a watermark on the operation time,
+ * so a history query reads one row per bucket and never touches the raw log.
+ * <p>
+ * Only actions older than {@code settle-lag} are rolled up. The watermark is a time and not an action id:
+ * ids are taken from pooled blocks and bulk imports claim whole blocks, so a smaller id may well commit
+ * after a larger one, while the operation time is stamped just before the insert. {@code settle-lag}
+ * must therefore exceed the longest movement transaction and, with the write-behind journal on,
+ * the longest time an action may wait in its buffer.
+ */
+@Service
+public class MovementRollupService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MovementRollupService.class);
+
+    public static final String HOUR = "hour";
+    public static final String DAY = "day";
+    public static final String WATERMARK = "movements";
+    public static final int MAX_BUCKETS = 10_000;
+    public static final String EXCMSG_GRANULARITY_INVALID = "The value of the granularity field must be hour or day";
+    public static final String EXCMSG_RANGE_INVALID = "The value of the from field must be before the value of the to field";
+    public static final String EXCMSG_TOO_MANY_BUCKETS = "The requested range has more than " + MAX_BUCKETS + " buckets";
+
+    private final MovementRollupRepository movementRollupRepository;
+    private final TradingActionRepository tradingActionRepository;
+    private final Duration settleLag;
+    private final long batchSize;
+
+    public MovementRollupService(MovementRollupRepository movementRollupRepository,
+                                 TradingActionRepository tradingActionRepository,
+                                 @Value("${warehouse.rollup.settle-lag:PT1M}") Duration settleLag,
+                                 @Value("${warehouse.rollup.batch-size:100000}") long batchSize) {
+        this.movementRollupRepository = movementRollupRepository;
+        this.tradingActionRepository = tradingActionRepository;
+        this.settleLag = settleLag;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Folds about {@code batch-size} settled actions into the rollups and moves the watermark: the window
+     * ends at an operation time, so every action stamped with the boundary time is rolled up in the same batch.
+     * The watermark row is locked, so concurrent refreshes never count an action twice.
+     *
+     * @return true if there are more settled actions left to roll up
+     */
+    @Transactional
+    public boolean refresh() {
+        RollupWatermark watermark = movementRollupRepository.findForUpdate(WATERMARK)
+                .orElseThrow(() -> new EntityNotFoundException(WATERMARK));
+        LocalDateTime settled = LocalDateTime.now().minus(settleLag);
+        LocalDateTime from = watermark.getLastOperationTime();
+        if (!settled.isAfter(from)) {
+            return false;
+        }
+        LocalDateTime to = tradingActionRepository
+                .findOperationTimes(from, settled, PageRequest.of(Math.toIntExact(batchSize - 1), 1))
+                .stream()
+                .findFirst()
+                .orElse(settled);
+        int hourly = movementRollupRepository.rollUpHourly(from, to);
+        movementRollupRepository.rollUpDaily(from, to);
+        watermark.setLastOperationTime(to);
+        LOGGER.debug("Rolled up trading actions in ({}, {}] into {} hourly buckets", from, to, hourly);
+        return to.isBefore(settled);
+    }
+
+    @Transactional(readOnly = true)
+    public List<MovementDto> getMovements(long sockId, String granularity, LocalDateTime from, LocalDateTime to) {
+        validateRange(granularity, from, to);
+        List<MovementBucketView> buckets = HOUR.equals(granularity)
+                ? movementRollupRepository.findHourly(sockId, from, to)
+                : movementRollupRepository.findDaily(sockId, from, to);
+        return buckets.stream()
+                .map(bucket -> new MovementDto(bucket.getBucket(), OperationType.values()[bucket.getOperationType()],
+                        bucket.getQuantity(), bucket.getActions()))
+                .toList();
+    }
+
+    private void validateRange(String granularity, LocalDateTime from, LocalDateTime to) {
+        Duration bucket = switch (granularity) {
+            case HOUR -> Duration.ofHours(1);
+            case DAY -> Duration.ofDays(1);
+            default -> throw new InvalidArgumentException(EXCMSG_GRANULARITY_INVALID);
+        };
+        if (!from.isBefore(to)) {
+            throw new InvalidArgumentException(EXCMSG_RANGE_INVALID);
+        }
+        if (Duration.between(from, to).dividedBy(bucket) > MAX_BUCKETS) {
+            throw new InvalidArgumentException(EXCMSG_TOO_MANY_BUCKETS);
+        }
+    }
+}
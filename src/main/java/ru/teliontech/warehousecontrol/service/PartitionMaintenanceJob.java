@@ -0,0 +1,88 @@
+package ru.teliontech.warehousecontrol.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.teliontech.warehousecontrol.repository.TradingActionPartitionRepository;
+
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Keeps trading_actions partitioned by month: partitions for the next {@code months-ahead} months
+ * always exist, and partitions older than {@code retention-months} are detached, exported to
+ * an archive segment and, with {@code drop-exported}, dropped. A retention of 0 keeps every partition attached.
+ */
+@Component
+@ConditionalOnProperty(name = "warehouse.partitions.enabled", havingValue = "true")
+public class PartitionMaintenanceJob {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PartitionMaintenanceJob.class);
+
+    private final TradingActionPartitionRepository partitionRepository;
+    private final TradingActionArchiveService archiveService;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final boolean dropExported;
+
+    public PartitionMaintenanceJob(TradingActionPartitionRepository partitionRepository,
+                                   TradingActionArchiveService archiveService,
+                                   @Value("${warehouse.partitions.months-ahead:3}") int monthsAhead,
+                                   @Value("${warehouse.partitions.retention-months:0}") int retentionMonths,
+                                   @Value("${warehouse.archive.drop-exported:true}") boolean dropExported) {
+        this.partitionRepository = partitionRepository;
+        this.archiveService = archiveService;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.dropExported = dropExported;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${warehouse.partitions.cron:0 0 3 * * *}")
+    public void maintain() {
+        YearMonth current = YearMonth.now();
+        List<YearMonth> existing = partitionRepository.findPartitions();
+        createUpcoming(current, existing);
+        if (retentionMonths > 0) {
+            detachExpired(current.minusMonths(retentionMonths), existing);
+        }
+        exportDetached();
+    }
+
+    private void createUpcoming(YearMonth current, List<YearMonth> existing) {
+        for (YearMonth month = current; !month.isAfter(current.plusMonths(monthsAhead)); month = month.plusMonths(1)) {
+            if (!existing.contains(month)) {
+                partitionRepository.createPartition(month);
+                LOGGER.info("Created trading actions partition for {}", month);
+            }
+        }
+    }
+
+    private void detachExpired(YearMonth oldestRetained, List<YearMonth> existing) {
+        for (YearMonth month : existing) {
+            if (month.isBefore(oldestRetained)) {
+                partitionRepository.detachPartition(month);
+                LOGGER.info("Detached trading actions partition for {} into {}", month, TradingActionPartitionRepository.ARCHIVE_SCHEMA);
+            }
+        }
+    }
+
+    /**
+     * Also picks up partitions whose export failed on an earlier run.
+     */
+    private void exportDetached() {
+        for (YearMonth month : partitionRepository.findArchivedPartitions()) {
+            String name = TradingActionPartitionRepository.tableName(month);
+            if (!archiveService.exists(name)) {
+                archiveService.export(name, sink -> partitionRepository.forEachArchived(month, sink));
+            }
+            if (dropExported) {
+                partitionRepository.dropArchived(month);
+            }
+        }
+    }
+}
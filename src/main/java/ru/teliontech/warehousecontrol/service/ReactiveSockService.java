@@ -0,0 +1,38 @@
+package ru.teliontech.warehousecontrol.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.teliontech.warehousecontrol.dto.SockDto;
+import ru.teliontech.warehousecontrol.exception.EntityNotFoundException;
+import ru.teliontech.warehousecontrol.repository.ReactiveSockRepository;
+
+import static ru.teliontech.warehousecontrol.service.SockService.EXCMSG_NOT_FOUND;
+
+/**
+ * Non-blocking counterpart of the read side of {@link SockService}.
+ * Answers straight from the database, so it also serves as a cross-check of {@link StockIndex}.
+ */
+@Service
+@ConditionalOnProperty(name = "warehouse.reactive.enabled", havingValue = "true")
+public class ReactiveSockService {
+
+    private final ReactiveSockRepository reactiveSockRepository;
+
+    public ReactiveSockService(ReactiveSockRepository reactiveSockRepository) {
+        this.reactiveSockRepository = reactiveSockRepository;
+    }
+
+    public Flux<SockDto> getAllSocks() {
+        return reactiveSockRepository.findAll();
+    }
+
+    public Mono<Integer> getCountSocksWithParams(String color, String operation, Integer cottonPart, Integer cottonPartTo) {
+        SockService.CottonPartRange range = SockService.cottonPartRange(operation, cottonPart, cottonPartTo);
+        return reactiveSockRepository.sum(color, range.from(), range.to())
+                .flatMap(totals -> totals.variants() == 0
+                        ? Mono.error(() -> new EntityNotFoundException(EXCMSG_NOT_FOUND))
+                        : Mono.just(Math.toIntExact(totals.stock())));
+    }
+}
@@ -0,0 +1,205 @@
+package ru.teliontech.warehousecontrol.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.teliontech.warehousecontrol.dto.ReservationDto;
+import ru.teliontech.warehousecontrol.dto.ReservationRequestDto;
+import ru.teliontech.warehousecontrol.dto.SockQntDto;
+import ru.teliontech.warehousecontrol.exception.EntityNotFoundException;
+import ru.teliontech.warehousecontrol.exception.InvalidArgumentException;
+import ru.teliontech.warehousecontrol.exception.InvalidResultException;
+import ru.teliontech.warehousecontrol.utils.TimingWheel;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static ru.teliontech.warehousecontrol.service.SockService.*;
+
+/**
+ * Holds stock between cart and shipment. A reservation only moves quantity into the held count
+ * of {@link StockLedger}, so reserving and releasing never touch the database; confirming ships the
+ * held quantity as an ordinary OUTCOME. Open reservations live in memory and expire on a {@link TimingWheel}
+ * turned by a scheduled tick. They are not persisted: after a restart all holds are gone and the stock is
+ * available again, which can never oversell.
+ */
+@Service
+public class ReservationService {
+    public static final String EXCMSG_RESERVATION_NOT_FOUND = "Reservation not found or already expired";
+    public static final String EXCMSG_TTL_NOT_RANGE = "The value of the ttlSeconds field must be positive and not exceed the maximum reservation time";
+
+    private final SockService sockService;
+    private final StockLedger stockLedger;
+    private final Duration defaultTtl;
+    private final Duration maxTtl;
+    private final Map<Long, Reservation> open = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final TimingWheel<Long> wheel;
+    private final Counter expiredCounter = Metrics.counter("warehouse.reservations.expired");
+
+    public ReservationService(SockService sockService, StockLedger stockLedger,
+                              @Value("${warehouse.reservations.default-ttl:PT15M}") Duration defaultTtl,
+                              @Value("${warehouse.reservations.max-ttl:PT24H}") Duration maxTtl,
+                              @Value("${warehouse.reservations.tick:PT1S}") Duration tick) {
+        this.sockService = sockService;
+        this.stockLedger = stockLedger;
+        this.defaultTtl = defaultTtl;
+        this.maxTtl = maxTtl;
+        this.wheel = new TimingWheel<>(tick.toMillis(), 64, System.currentTimeMillis());
+        Gauge.builder("warehouse.reservations.open", open, Map::size)
+                .description("Reservations holding stock")
+                .register(Metrics.globalRegistry);
+    }
+
+    public ReservationDto reserve(ReservationRequestDto request) {
+        validateCottonPart(request.getCottonPart());
+        if (request.getQuantity() <= 0) {
+            throw new InvalidArgumentException(EXCMSG_QUANTITY_LESS_THAN_ZERO);
+        }
+        Duration ttl = ttl(request.getTtlSeconds());
+        SockKey key = new SockKey(request.getColor(), request.getCottonPart());
+        int available = stockLedger.reserve(key, request.getQuantity());
+        Reservation reservation = new Reservation(sequence.incrementAndGet(), key, request.getQuantity(),
+                System.currentTimeMillis() + ttl.toMillis());
+        open(reservation);
+        return toDto(reservation, available);
+    }
+
+    /**
+     * Ships the reserved quantity. If the shipment does not commit, the reservation is open again
+     * with its original expiry.
+     */
+    @Transactional
+    public SockQntDto confirm(long id) {
+        Reservation reservation = close(id);
+        reopenOnRollback(reservation);
+        SockQntDto inputSock = new SockQntDto(null, reservation.key().color(), reservation.key().cottonPart(),
+                reservation.quantity(), 0);
+        try {
+            return sockService.outcomeReserved(inputSock).orElseThrow(() -> new InvalidResultException(EXCMSG_NOT_FOUND));
+        } catch (RuntimeException e) {
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                open(reservation);
+            }
+            throw e;
+        }
+    }
+
+    public ReservationDto release(long id) {
+        Reservation reservation = close(id);
+        stockLedger.release(reservation.key(), reservation.quantity());
+        return toDto(reservation, stockLedger.available(reservation.key()));
+    }
+
+    public int available(String color, int cottonPart) {
+        validateCottonPart(cottonPart);
+        return stockLedger.available(new SockKey(color, cottonPart));
+    }
+
+    public int openReservations() {
+        return open.size();
+    }
+
+    @Scheduled(fixedDelayString = "${warehouse.reservations.tick:PT1S}")
+    public void expire() {
+        expire(System.currentTimeMillis());
+    }
+
+    void expire(long nowMillis) {
+        wheel.advance(nowMillis, id -> {
+            Reservation reservation = open.remove(id);
+            if (reservation != null) {
+                stockLedger.release(reservation.key(), reservation.quantity());
+                expiredCounter.increment();
+            }
+        });
+    }
+
+    private void open(Reservation reservation) {
+        open.put(reservation.id(), reservation);
+        reservation.timeout = wheel.schedule(reservation.id(), reservation.expiresAtMillis());
+    }
+
+    private void reopenOnRollback(Reservation reservation) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    open(reservation);
+                }
+            }
+        });
+    }
+
+    private Reservation close(long id) {
+        Reservation reservation = open.remove(id);
+        if (reservation == null) {
+            throw new EntityNotFoundException(EXCMSG_RESERVATION_NOT_FOUND);
+        }
+        if (reservation.timeout != null) {
+            reservation.timeout.cancel();
+        }
+        return reservation;
+    }
+
+    private Duration ttl(Long ttlSeconds) {
+        if (ttlSeconds == null) {
+            return defaultTtl;
+        }
+        if (ttlSeconds <= 0 || ttlSeconds > maxTtl.toSeconds()) {
+            throw new InvalidArgumentException(EXCMSG_TTL_NOT_RANGE);
+        }
+        return Duration.ofSeconds(ttlSeconds);
+    }
+
+    private ReservationDto toDto(Reservation reservation, int available) {
+        LocalDateTime expiresAt = LocalDateTime.ofInstant(Instant.ofEpochMilli(reservation.expiresAtMillis()), ZoneId.systemDefault());
+        return new ReservationDto(reservation.id(), reservation.key().color(), reservation.key().cottonPart(),
+                reservation.quantity(), expiresAt, available);
+    }
+
+    private static final class Reservation {
+        private final long id;
+        private final SockKey key;
+        private final int quantity;
+        private final long expiresAtMillis;
+        private volatile TimingWheel.Timeout<Long> timeout;
+
+        Reservation(long id, SockKey key, int quantity, long expiresAtMillis) {
+            this.id = id;
+            this.key = key;
+            this.quantity = quantity;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        long id() {
+            return id;
+        }
+
+        SockKey key() {
+            return key;
+        }
+
+        int quantity() {
+            return quantity;
+        }
+
+        long expiresAtMillis() {
+            return expiresAtMillis;
+        }
+    }
+}
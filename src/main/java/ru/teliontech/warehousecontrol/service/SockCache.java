@@ -0,0 +1,106 @@
+package ru.teliontech.warehousecontrol.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.teliontech.warehousecontrol.entity.Sock;
+import ru.teliontech.warehousecontrol.event.CatalogueReloadedEvent;
+import ru.teliontech.warehousecontrol.event.SockChangedEvent;
+import ru.teliontech.warehousecontrol.exception.DuplicateSocksException;
+import ru.teliontech.warehousecontrol.repository.SockRepository;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static ru.teliontech.warehousecontrol.service.SockService.EXCMSG_DUPLICATE_ENTITY;
+
+/**
+ * Bounded read-through cache of sock variants, looked up by id and by (color, cottonPart).
+ * Entries are loaded atomically per key, so an eviction that races with a load waits for it
+ * and cannot be overwritten by a stale row. Every {@link SockChangedEvent} evicts the affected
+ * entries once the change commits; catalogue changes also evict eagerly, before the commit.
+ * Absent variants are not cached. Callers always get their own copy of the entity.
+ */
+@Component
+public class SockCache {
+
+    private final SockRepository sockRepository;
+    private final Cache<Long, Sock> byId;
+    private final Cache<SockKey, Sock> byKey;
+
+    public SockCache(SockRepository sockRepository,
+                     @Value("${warehouse.cache.maximum-size:10000}") long maximumSize,
+                     @Value("${warehouse.cache.expire-after-write:PT10M}") Duration expireAfterWrite) {
+        this.sockRepository = sockRepository;
+        this.byId = build(maximumSize, expireAfterWrite);
+        this.byKey = build(maximumSize, expireAfterWrite);
+        CaffeineCacheMetrics.monitor(Metrics.globalRegistry, byId, "socks.by-id");
+        CaffeineCacheMetrics.monitor(Metrics.globalRegistry, byKey, "socks.by-key");
+    }
+
+    public Optional<Sock> findById(Long id) {
+        return Optional.ofNullable(byId.get(id, key -> sockRepository.findById(key).map(SockCache::copy).orElse(null)))
+                .map(SockCache::copy);
+    }
+
+    public Optional<Sock> findByKey(SockKey key) {
+        return Optional.ofNullable(byKey.get(key, this::loadByKey))
+                .map(SockCache::copy);
+    }
+
+    public void evict(Sock sock) {
+        if (sock.getId() != null) {
+            byId.invalidate(sock.getId());
+        }
+        byKey.invalidate(new SockKey(sock.getColor(), sock.getCottonPart()));
+    }
+
+    public void evict(SockKey key) {
+        byKey.invalidate(key);
+    }
+
+    public void invalidateAll() {
+        byId.invalidateAll();
+        byKey.invalidateAll();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSockChanged(SockChangedEvent event) {
+        if (event.before() != null) {
+            evict(event.before());
+        }
+        if (event.after() != null) {
+            evict(event.after());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogueReloaded(CatalogueReloadedEvent event) {
+        invalidateAll();
+    }
+
+    private Sock loadByKey(SockKey key) {
+        List<Sock> socks = sockRepository.findByColorAndCottonPart(key.color(), key.cottonPart());
+        if (socks.size() > 1) {
+            throw new DuplicateSocksException(EXCMSG_DUPLICATE_ENTITY);
+        }
+        return socks.isEmpty() ? null : copy(socks.get(0));
+    }
+
+    private static <K> Cache<K, Sock> build(long maximumSize, Duration expireAfterWrite) {
+        return Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    private static Sock copy(Sock sock) {
+        return new Sock(sock.getId(), sock.getColor(), sock.getCottonPart(), sock.getStock());
+    }
+}
@@ -0,0 +1,226 @@
+package ru.teliontech.warehousecontrol.service;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.teliontech.warehousecontrol.dto.ImportErrorDto;
+import ru.teliontech.warehousecontrol.dto.ImportReportDto;
+import ru.teliontech.warehousecontrol.event.CatalogueReloadedEvent;
+import ru.teliontech.warehousecontrol.repository.SockImportRepository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static ru.teliontech.warehousecontrol.service.SockService.EXCMSG_COTTONPART_NOT_RANGE;
+import static ru.teliontech.warehousecontrol.service.SockService.EXCMSG_QUANTITY_LESS_THAN_ZERO;
+
+/**
+ * Loads sock variants and their opening stock in bulk. Rows are validated as they are read and the valid
+ * ones are copied into a staging table in chunks of {@code chunk-size}, so neither the upload nor the rows
+ * are ever held in memory as a whole. The staged rows are then merged in one go: existing socks get the
+ * quantity added to their stock, missing socks are created with it, and every row is journaled as an INCOME.
+ * Invalid rows are skipped and reported by line number; the first {@code max-errors} of them are listed.
+ */
+@Service
+public class SockImportService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SockImportService.class);
+
+    public static final String CSV_HEADER = "color,cottonPart,quantity";
+    public static final String EXCMSG_ROW_MALFORMED = "The row must hold color, cottonPart and quantity, the last two as whole numbers";
+
+    private final SockImportRepository sockImportRepository;
+    private final ColorDictionary colorDictionary;
+    private final StockLedger stockLedger;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int chunkSize;
+    private final int maxErrors;
+
+    public SockImportService(SockImportRepository sockImportRepository, ColorDictionary colorDictionary,
+                             StockLedger stockLedger, ObjectMapper objectMapper, ApplicationEventPublisher eventPublisher,
+                             @Value("${warehouse.import.chunk-size:10000}") int chunkSize,
+                             @Value("${warehouse.import.max-errors:1000}") int maxErrors) {
+        this.sockImportRepository = sockImportRepository;
+        this.colorDictionary = colorDictionary;
+        this.stockLedger = stockLedger;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.chunkSize = chunkSize;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Imports CSV rows {@code color,cottonPart,quantity}; a header line {@value #CSV_HEADER} is optional.
+     */
+    @Transactional
+    public ImportReportDto importCsv(Reader reader) {
+        return importRows(reader, true);
+    }
+
+    /**
+     * Imports one JSON object per line with the fields color, cottonPart and quantity. The quantity may be
+     * called stock as well, so the NDJSON export of the catalogue can be loaded as it is.
+     */
+    @Transactional
+    public ImportReportDto importNdjson(Reader reader) {
+        return importRows(reader, false);
+    }
+
+    private ImportReportDto importRows(Reader reader, boolean csv) {
+        sockImportRepository.createStaging();
+        Report report = new Report();
+        StringBuilder chunk = new StringBuilder();
+        int chunkRows = 0;
+        try (BufferedReader lines = new BufferedReader(reader)) {
+            String line;
+            long lineNumber = 0;
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || csv && lineNumber == 1 && isHeader(line)) {
+                    continue;
+                }
+                report.rows++;
+                Row row = csv ? parseCsv(line) : parseJson(line);
+                String error = validate(row);
+                if (error != null) {
+                    report.reject(lineNumber, error);
+                    continue;
+                }
+                chunk.append(lineNumber).append(',').append(colorDictionary.intern(row.color())).append(',')
+                        .append(row.cottonPart()).append(',').append(row.quantity()).append('\n');
+                report.imported++;
+                if (++chunkRows == chunkSize) {
+                    flush(chunk);
+                    chunkRows = 0;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        flush(chunk);
+        if (report.imported > 0) {
+            SockImportRepository.Merged merged = stockLedger.rewriteAll(() -> {
+                SockImportRepository.Merged result = sockImportRepository.merge();
+                sockImportRepository.journal(LocalDateTime.now());
+                return result;
+            });
+            report.created = merged.created();
+            report.updated = merged.updated();
+            eventPublisher.publishEvent(new CatalogueReloadedEvent());
+        }
+        LOGGER.info("Imported {} of {} rows: {} socks created, {} updated, {} rows rejected",
+                report.imported, report.rows, report.created, report.updated, report.rejected);
+        return report.toDto();
+    }
+
+    private void flush(StringBuilder chunk) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        sockImportRepository.copy(new StringReader(chunk.toString()));
+        chunk.setLength(0);
+    }
+
+    private boolean isHeader(String line) {
+        return line.replace("\"", "").replace(" ", "").equalsIgnoreCase(CSV_HEADER);
+    }
+
+    private Row parseCsv(String line) {
+        List<String> fields = splitCsv(line);
+        if (fields.size() != 3) {
+            return null;
+        }
+        try {
+            return new Row(fields.get(0), Integer.valueOf(fields.get(1).trim()), Integer.valueOf(fields.get(2).trim()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private Row parseJson(String line) {
+        try {
+            return objectMapper.readValue(line, Row.class);
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Splits a CSV line on commas outside double quotes; a doubled quote inside quotes stands for one quote.
+     */
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private String validate(Row row) {
+        if (row == null || row.color() == null || row.cottonPart() == null || row.quantity() == null) {
+            return EXCMSG_ROW_MALFORMED;
+        }
+        String color = ColorDictionary.normalize(row.color());
+        if (color.isEmpty() || color.length() > ColorDictionary.MAX_NAME_LENGTH) {
+            return ColorDictionary.EXCMSG_COLOR_INVALID;
+        }
+        if (row.cottonPart() < 0 || row.cottonPart() > 100) {
+            return EXCMSG_COTTONPART_NOT_RANGE;
+        }
+        if (row.quantity() < 0) {
+            return EXCMSG_QUANTITY_LESS_THAN_ZERO;
+        }
+        return null;
+    }
+
+    record Row(String color, Integer cottonPart, @JsonAlias("stock") Integer quantity) {
+    }
+
+    private class Report {
+        private long rows;
+        private long imported;
+        private long rejected;
+        private int created;
+        private int updated;
+        private final List<ImportErrorDto> errors = new ArrayList<>();
+
+        void reject(long line, String message) {
+            rejected++;
+            if (errors.size() < maxErrors) {
+                errors.add(new ImportErrorDto(line, message));
+            }
+        }
+
+        ImportReportDto toDto() {
+            return new ImportReportDto(rows, imported, rejected, created, updated, errors);
+        }
+    }
+}
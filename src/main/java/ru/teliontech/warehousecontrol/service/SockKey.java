@@ -0,0 +1,8 @@
+package ru.teliontech.warehousecontrol.service;
+
+public record SockKey(String color, int cottonPart) {
+
+    public SockKey {
+        color = ColorDictionary.normalize(color);
+    }
+}
@@ -1,111 +1,277 @@
 package ru.teliontech.warehousecontrol.service;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.teliontech.warehousecontrol.dto.PageDto;
 import ru.teliontech.warehousecontrol.dto.SockDto;
 import ru.teliontech.warehousecontrol.dto.SockQntDto;
+import ru.teliontech.warehousecontrol.dto.TransferDto;
 import ru.teliontech.warehousecontrol.entity.OperationType;
 import ru.teliontech.warehousecontrol.entity.Sock;
 import ru.teliontech.warehousecontrol.entity.TradingAction;
-import ru.teliontech.warehousecontrol.exception.DuplicateSocksException;
+import ru.teliontech.warehousecontrol.event.SockChangedEvent;
+import ru.teliontech.warehousecontrol.exception.ConcurrentChangeException;
 import ru.teliontech.warehousecontrol.exception.EntityNotFoundException;
 import ru.teliontech.warehousecontrol.exception.InvalidArgumentException;
-import ru.teliontech.warehousecontrol.exception.NegativeStockException;
+import ru.teliontech.warehousecontrol.metrics.HotKeyTracker;
+import ru.teliontech.warehousecontrol.metrics.PhaseTimers;
 import ru.teliontech.warehousecontrol.repository.SockRepository;
-import ru.teliontech.warehousecontrol.repository.TradingActionRepository;
+import ru.teliontech.warehousecontrol.utils.KeysetPages;
 import ru.teliontech.warehousecontrol.utils.MappingUtils;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class SockService {
-    public static final Logger LOGGER = LoggerFactory.getLogger(SockService.class);
     public static final String MORE = "moreThan";
     public static final String LESS = "lessThan";
+    public static final String EQUAL = "equal";
+    public static final String BETWEEN = "between";
     public static final String EXCMSG_NOT_FOUND = "Entity not found";
     public static final String EXCMSG_FOUND = "An entry with this id already exists";
     public static final String EXCMSG_QUANTITY_BIGGER_THAN_STOCK = "Quantity is bigger than stock";
     public static final String EXCMSG_DUPLICATE_ENTITY = "Database include a few duplicate socks with current parameters";
     public static final String EXCMSG_COTTONPART_NOT_RANGE = "The value of the cottonPart field does not fall within the range from 0 to 100";
     public static final String EXCMSG_QUANTITY_LESS_THAN_ZERO = "The value of quantity field is less than 0";
+    public static final String EXCMSG_COTTONPART_TO_INVALID = "The value of the cottonPartTo field must be set and not be less than cottonPart";
+    public static final String EXCMSG_EMPTY_BATCH = "The list of movements is empty";
+    public static final String EXCMSG_CHANGED_CONCURRENTLY = "The sock was changed by another request, repeat the request";
+    public static final String EXCMSG_TRANSFER_SAME_VARIANT = "The source and the target of a transfer must be different socks";
 
     private final SockRepository sockRepository;
-    private final TradingActionRepository tradingActionRepository;
+    private final TradingActionJournal tradingActionJournal;
     private final MappingUtils mappingUtils;
+    private final StockLedger stockLedger;
+    private final StockIndex stockIndex;
+    private final SockCache sockCache;
+    private final HotKeyTracker hotKeyTracker;
+    private final IdempotencyStore idempotencyStore;
+    private final ColorDictionary colorDictionary;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Timer validateTimer = PhaseTimers.timer("validate");
+    private final Timer journalTimer = PhaseTimers.timer("journal");
 
-    public SockService(SockRepository sockRepository, TradingActionRepository tradingActionRepository, MappingUtils mappingUtils) {
+    public SockService(SockRepository sockRepository, TradingActionJournal tradingActionJournal, MappingUtils mappingUtils,
+                       StockLedger stockLedger, StockIndex stockIndex, SockCache sockCache, HotKeyTracker hotKeyTracker,
+                       IdempotencyStore idempotencyStore, ColorDictionary colorDictionary,
+                       ApplicationEventPublisher eventPublisher) {
         this.sockRepository = sockRepository;
-        this.tradingActionRepository = tradingActionRepository;
+        this.tradingActionJournal = tradingActionJournal;
         this.mappingUtils = mappingUtils;
+        this.stockLedger = stockLedger;
+        this.stockIndex = stockIndex;
+        this.sockCache = sockCache;
+        this.hotKeyTracker = hotKeyTracker;
+        this.idempotencyStore = idempotencyStore;
+        this.colorDictionary = colorDictionary;
+        this.eventPublisher = eventPublisher;
     }
 
-    public List<SockDto> getAllSocks() {
-        List<Sock> list = sockRepository.findAll();
-        return list.stream().map(mappingUtils::mapToSockDto).toList();
+    public PageDto<SockDto> getSocksPage(String cursor, int size) {
+        List<SockDto> rows = sockRepository.findPageAfter(KeysetPages.afterId(cursor), KeysetPages.limit(size));
+        return KeysetPages.toPage(rows, size, SockDto::getId);
+    }
+
+    @Transactional(readOnly = true)
+    public void forEachSock(Consumer<SockDto> consumer) {
+        try (Stream<SockDto> socks = sockRepository.streamAll()) {
+            socks.forEach(consumer);
+        }
     }
 
     public Optional<Integer> getCountSocksWithParams(String color, String operation, Integer cottonPart) {
-        validateCottonPart(cottonPart);
+        return getCountSocksWithParams(color, operation, cottonPart, null);
+    }
 
-        switch (operation) {
-            case MORE -> {
-                List<Sock> foundSocks = sockRepository.findAllByColorAndCottonPartGreaterThan(color, cottonPart);
-                if (!foundSocks.isEmpty()) {
-                    return Optional.of(sockRepository.getStockSumByColorAndCottonPartGreaterThan(color, cottonPart));
-                }
-            }
-            case LESS -> {
-                List<Sock> foundSocks = sockRepository.findAllByColorAndCottonPartLessThan(color, cottonPart);
-                if (!foundSocks.isEmpty()) {
-                    return Optional.of(sockRepository.getStockSumByColorAndCottonPartLessThan(color, cottonPart));
-                }
-            }
+    public Optional<Integer> getCountSocksWithParams(String color, String operation, Integer cottonPart, Integer cottonPartTo) {
+        CottonPartRange range = cottonPartRange(operation, cottonPart, cottonPartTo);
+        StockIndex.Totals totals = stockIndex.sum(color, range.from(), range.to());
+        if (totals.variants() == 0) {
+            throw new EntityNotFoundException(EXCMSG_NOT_FOUND);
         }
-        throw new EntityNotFoundException(EXCMSG_NOT_FOUND);
+        return Optional.of(Math.toIntExact(totals.stock()));
     }
 
+    /**
+     * Translates the operation of a count query into an inclusive range of cottonPart.
+     */
+    public static CottonPartRange cottonPartRange(String operation, Integer cottonPart, Integer cottonPartTo) {
+        validateCottonPart(cottonPart);
+        return switch (operation) {
+            case MORE -> new CottonPartRange(cottonPart + 1, 100);
+            case LESS -> new CottonPartRange(0, cottonPart - 1);
+            case EQUAL -> new CottonPartRange(cottonPart, cottonPart);
+            case BETWEEN -> {
+                validateCottonPartTo(cottonPart, cottonPartTo);
+                yield new CottonPartRange(cottonPart, cottonPartTo);
+            }
+            default -> throw new EntityNotFoundException(EXCMSG_NOT_FOUND);
+        };
+    }
+
+    @Transactional
     public Optional<SockQntDto> income(SockQntDto inputSock) {
         return handleOperation(inputSock, OperationType.INCOME);
     }
 
+    @Transactional
     public Optional<SockQntDto> outcome(SockQntDto inputSock) {
         return handleOperation(inputSock, OperationType.OUTCOME);
     }
 
-    private Optional<SockQntDto> handleOperation(SockQntDto inputSock, OperationType operationType) {
-        validateCottonPart(mappingUtils.mapToSock(inputSock));
-        validateQuantity(inputSock);
+    /**
+     * Income under an idempotency key: a repeated key returns the result of the first call
+     * and leaves the stock alone. A {@code null} key behaves like {@link #income(SockQntDto)}.
+     */
+    @Transactional
+    public Optional<SockQntDto> income(SockQntDto inputSock, String idempotencyKey) {
+        return handleOperation(inputSock, OperationType.INCOME, idempotencyKey);
+    }
 
-        Sock foundSock = findSock(inputSock);
-        calculateStock(inputSock, foundSock, operationType);
+    @Transactional
+    public Optional<SockQntDto> outcome(SockQntDto inputSock, String idempotencyKey) {
+        return handleOperation(inputSock, OperationType.OUTCOME, idempotencyKey);
+    }
+
+    /**
+     * Moves a quantity from one variant to another in one transaction: an OUTCOME of the source
+     * and an INCOME of the target, returned in that order.
+     */
+    @Transactional
+    public List<SockQntDto> transfer(TransferDto transferDto) {
+        SockKey from = new SockKey(transferDto.getFromColor(), transferDto.getFromCottonPart());
+        SockKey to = new SockKey(transferDto.getToColor(), transferDto.getToCottonPart());
+        validateTimer.record(() -> {
+            validateCottonPart(from.cottonPart());
+            validateCottonPart(to.cottonPart());
+            if (transferDto.getQuantity() < 0) {
+                throw new InvalidArgumentException(EXCMSG_QUANTITY_LESS_THAN_ZERO);
+            }
+            if (from.equals(to)) {
+                throw new InvalidArgumentException(EXCMSG_TRANSFER_SAME_VARIANT);
+            }
+        });
+        return applyMovements(List.of(
+                new StockLedger.Movement(from, transferDto.getQuantity(), OperationType.OUTCOME),
+                new StockLedger.Movement(to, transferDto.getQuantity(), OperationType.INCOME)));
+    }
 
-        sockRepository.save(foundSock);
-        tradingActionRepository.save(createTradingAction(foundSock, inputSock.getQuantity(), operationType));
+    /**
+     * Outcome of a quantity that is already held by a reservation; see {@link ReservationService}.
+     */
+    @Transactional
+    public Optional<SockQntDto> outcomeReserved(SockQntDto inputSock) {
+        validateQuantity(inputSock);
+        SockKey key = new SockKey(inputSock.getColor(), inputSock.getCottonPart());
+        hotKeyTracker.record(key);
+        Sock foundSock = stockLedger.confirm(key, inputSock.getQuantity());
+        journal(foundSock, inputSock.getQuantity(), OperationType.OUTCOME);
         return Optional.ofNullable(mappingUtils.mapToSockQntDto(foundSock, inputSock.getQuantity()));
     }
 
-    private Sock findSock(SockQntDto inputSock) {
-        List<Sock> socks = sockRepository.findByColorAndCottonPart(inputSock.getColor(), inputSock.getCottonPart());
-        if (socks.size() > 1) {
-            throw new DuplicateSocksException(EXCMSG_DUPLICATE_ENTITY);
-        } else if (socks.size() == 0) {
-            throw new EntityNotFoundException(EXCMSG_NOT_FOUND);
+    @Transactional
+    public List<SockQntDto> incomeAll(List<SockQntDto> inputSocks) {
+        return handleOperations(inputSocks, OperationType.INCOME);
+    }
+
+    @Transactional
+    public List<SockQntDto> outcomeAll(List<SockQntDto> inputSocks) {
+        return handleOperations(inputSocks, OperationType.OUTCOME);
+    }
+
+    private List<SockQntDto> handleOperations(List<SockQntDto> inputSocks, OperationType operationType) {
+        validateTimer.record(() -> {
+            validateBatch(inputSocks);
+            inputSocks.forEach(inputSock -> {
+                validateCottonPart(mappingUtils.mapToSock(inputSock));
+                validateQuantity(inputSock);
+            });
+        });
+
+        List<StockLedger.Movement> movements = inputSocks.stream()
+                .map(inputSock -> new StockLedger.Movement(new SockKey(inputSock.getColor(), inputSock.getCottonPart()),
+                        inputSock.getQuantity(), operationType))
+                .toList();
+        return applyMovements(movements);
+    }
+
+    private List<SockQntDto> applyMovements(List<StockLedger.Movement> movements) {
+        movements.forEach(movement -> hotKeyTracker.record(movement.key()));
+        List<Sock> updatedSocks = stockLedger.applyAll(movements);
+        List<TradingAction> tradingActions = new ArrayList<>(movements.size());
+        List<SockQntDto> result = new ArrayList<>(movements.size());
+        for (int i = 0; i < movements.size(); i++) {
+            StockLedger.Movement movement = movements.get(i);
+            Sock foundSock = updatedSocks.get(i);
+            publishMovement(foundSock, movement.quantity(), movement.operationType());
+            tradingActions.add(createTradingAction(foundSock, movement.quantity(), movement.operationType()));
+            result.add(mappingUtils.mapToSockQntDto(foundSock, movement.quantity()));
         }
-        return socks.get(0);
+        journalTimer.record(() -> tradingActionJournal.appendAll(tradingActions));
+        return result;
     }
 
-    private void calculateStock(SockQntDto inputSock, Sock foundSock, OperationType operationType) {
-        if (operationType.equals(OperationType.INCOME)) {
-            foundSock.setStock(foundSock.getStock() + inputSock.getQuantity());
-        } else {
-            if (inputSock.getQuantity() > foundSock.getStock()) {
-                throw new NegativeStockException(EXCMSG_QUANTITY_BIGGER_THAN_STOCK);
-            }
-            foundSock.setStock(foundSock.getStock() - inputSock.getQuantity());
+    private Optional<SockQntDto> handleOperation(SockQntDto inputSock, OperationType operationType, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return handleOperation(inputSock, operationType);
         }
+        validateTimer.record(() -> {
+            validateCottonPart(mappingUtils.mapToSock(inputSock));
+            validateQuantity(inputSock);
+        });
+        Optional<SockQntDto> replayed = idempotencyStore.claim(idempotencyKey, inputSock, operationType);
+        if (replayed.isPresent()) {
+            return replayed;
+        }
+        Sock foundSock = move(inputSock, operationType);
+        idempotencyStore.complete(idempotencyKey, foundSock, inputSock.getQuantity(), operationType);
+        return Optional.ofNullable(mappingUtils.mapToSockQntDto(foundSock, inputSock.getQuantity()));
+    }
+
+    private Optional<SockQntDto> handleOperation(SockQntDto inputSock, OperationType operationType) {
+        validateTimer.record(() -> {
+            validateCottonPart(mappingUtils.mapToSock(inputSock));
+            validateQuantity(inputSock);
+        });
+        Sock foundSock = move(inputSock, operationType);
+        return Optional.ofNullable(mappingUtils.mapToSockQntDto(foundSock, inputSock.getQuantity()));
+    }
+
+    private Sock move(SockQntDto inputSock, OperationType operationType) {
+        hotKeyTracker.record(new SockKey(inputSock.getColor(), inputSock.getCottonPart()));
+        Sock foundSock = stockLedger.apply(inputSock.getColor(), inputSock.getCottonPart(), inputSock.getQuantity(), operationType);
+        journal(foundSock, inputSock.getQuantity(), operationType);
+        return foundSock;
+    }
+
+    private void journal(Sock foundSock, int quantity, OperationType operationType) {
+        publishMovement(foundSock, quantity, operationType);
+        journalTimer.record(() -> tradingActionJournal.append(createTradingAction(foundSock, quantity, operationType)));
+    }
+
+    private void publishMovement(Sock updatedSock, int quantity, OperationType operationType) {
+        int delta = operationType.equals(OperationType.INCOME) ? quantity : -quantity;
+        Sock before = new Sock(updatedSock.getId(), updatedSock.getColor(), updatedSock.getCottonPart(), updatedSock.getStock() - delta);
+        eventPublisher.publishEvent(new SockChangedEvent(before, updatedSock));
+    }
+
+    /**
+     * Stock set directly through the catalogue is journaled as an income or outcome as well,
+     * so that the trading actions log alone is enough to rebuild the stock.
+     */
+    private void journalAdjustment(Sock sock, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        OperationType operationType = delta > 0 ? OperationType.INCOME : OperationType.OUTCOME;
+        tradingActionJournal.append(createTradingAction(sock, Math.abs(delta), operationType));
     }
 
     private TradingAction createTradingAction(Sock foundSock, int quantity, OperationType operationType) {
@@ -117,56 +283,114 @@ public class SockService {
         return tradingAction;
     }
 
+    @Transactional
     public Optional<SockDto> createSock(SockDto sockDto) {
         validateCottonPart(mappingUtils.mapToSock(sockDto));
         validateEntryExists(sockDto.getId());
-        sockRepository.save(mappingUtils.mapToSock(sockDto));
+        colorDictionary.intern(sockDto.getColor());
+        Sock savedSock = stockLedger.rewrite(List.of(toKey(sockDto)), () -> sockRepository.save(mappingUtils.mapToSock(sockDto)));
+        journalAdjustment(savedSock, savedSock.getStock());
+        eventPublisher.publishEvent(new SockChangedEvent(null, savedSock));
         return Optional.of(sockDto);
     }
 
+    @Transactional
     public Optional<SockDto> updateSock(SockDto sockDto) {
         validateCottonPart(mappingUtils.mapToSock(sockDto));
-        validateEntryNonExists(sockDto.getId());
-        sockRepository.save(mappingUtils.mapToSock((sockDto)));
+        Sock foundSock = validateEntryNonExists(sockDto.getId());
+        colorDictionary.intern(sockDto.getColor());
+        SockChangedEvent change = stockLedger.rewrite(List.of(toKey(foundSock), toKey(sockDto)), () -> {
+            Sock before = currentSock(foundSock);
+            return new SockChangedEvent(before, sockRepository.save(mappingUtils.mapToSock(sockDto)));
+        });
+        journalAdjustment(change.after(), change.after().getStock() - change.before().getStock());
+        eventPublisher.publishEvent(change);
         return Optional.of(sockDto);
     }
 
+    @Transactional
     public Optional<SockDto> deleteSock(Long id) {
         Sock foundSock = findSockById(id).orElseThrow(() -> new EntityNotFoundException(EXCMSG_NOT_FOUND));
-        sockRepository.delete(foundSock);
-        return Optional.of(mappingUtils.mapToSockDto(foundSock));
+        Sock deletedSock = stockLedger.rewrite(List.of(toKey(foundSock)), () -> {
+            Sock before = currentSock(foundSock);
+            sockRepository.deleteById(id);
+            return before;
+        });
+        eventPublisher.publishEvent(new SockChangedEvent(deletedSock, null));
+        return Optional.of(mappingUtils.mapToSockDto(deletedSock));
+    }
+
+    /**
+     * Re-reads a sock under the ledger locks of its cached key. The cached copy may lag behind a movement
+     * or a catalogue change that committed in between; if the sock has moved to another key meanwhile,
+     * the locks held are the wrong ones and the change is refused.
+     */
+    private Sock currentSock(Sock cached) {
+        sockCache.evict(cached);
+        Sock current = sockRepository.findCurrentById(cached.getId())
+                .map(mappingUtils::mapToSock)
+                .orElseThrow(() -> new EntityNotFoundException(EXCMSG_NOT_FOUND));
+        if (!toKey(current).equals(toKey(cached))) {
+            throw new ConcurrentChangeException(EXCMSG_CHANGED_CONCURRENTLY);
+        }
+        return current;
     }
 
     private Optional<Sock> findSockById(Long id) {
-        return sockRepository.findById(id);
+        return sockCache.findById(id);
     }
 
     private void validateCottonPart(Sock sock) {
         validateCottonPart(sock.getCottonPart());
     }
 
-    private void validateCottonPart(Integer cottonPart) {
+    static void validateCottonPart(Integer cottonPart) {
         if (cottonPart < 0 || cottonPart > 100) {
             throw new InvalidArgumentException(EXCMSG_COTTONPART_NOT_RANGE);
         }
     }
+    private static void validateCottonPartTo(Integer cottonPart, Integer cottonPartTo) {
+        if (cottonPartTo == null || cottonPartTo < cottonPart) {
+            throw new InvalidArgumentException(EXCMSG_COTTONPART_TO_INVALID);
+        }
+        validateCottonPart(cottonPartTo);
+    }
+
     private void validateQuantity(SockQntDto inputSock) {
         if (inputSock.getQuantity() < 0) {
             throw new InvalidArgumentException(EXCMSG_QUANTITY_LESS_THAN_ZERO);
         }
     }
 
+    private void validateBatch(List<SockQntDto> inputSocks) {
+        if (inputSocks == null || inputSocks.isEmpty()) {
+            throw new InvalidArgumentException(EXCMSG_EMPTY_BATCH);
+        }
+    }
+
     private void validateEntryExists(long id) {
-        Optional<Sock> sock = sockRepository.findById(id);
+        Optional<Sock> sock = findSockById(id);
         if (sock.isPresent()) {
             throw new InvalidArgumentException(EXCMSG_FOUND);
         }
     }
 
-    private void validateEntryNonExists(Long id) {
-        Optional<Sock> sock = sockRepository.findById(id);
+    private Sock validateEntryNonExists(Long id) {
+        Optional<Sock> sock = findSockById(id);
         if (sock.isEmpty()) {
             throw new InvalidArgumentException(EXCMSG_NOT_FOUND);
         }
+        return sock.get();
+    }
+
+    private SockKey toKey(Sock sock) {
+        return new SockKey(sock.getColor(), sock.getCottonPart());
+    }
+
+    private SockKey toKey(SockDto sockDto) {
+        return new SockKey(sockDto.getColor(), sockDto.getCottonPart());
+    }
+
+    public record CottonPartRange(int from, int to) {
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,136 @@
+package ru.teliontech.warehousecontrol.service;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.teliontech.warehousecontrol.entity.Sock;
+import ru.teliontech.warehousecontrol.event.CatalogueReloadedEvent;
+import ru.teliontech.warehousecontrol.event.SockChangedEvent;
+import ru.teliontech.warehousecontrol.repository.SockRepository;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Aggregated stock per color, answering range sums over cottonPart without touching the database.
+ * Every color owns two Fenwick trees over cottonPart 0..100: one for the stock and one for the number
+ * of variants, so that "nothing matches" can still be told apart from "matches with zero stock".
+ * The index is filled from the database on the first query and kept up to date by {@link SockChangedEvent}s,
+ * ahead of {@link StockVersion}. The load runs under {@link StockLedger#quiesced}, so no change can commit
+ * between the read and the moment the index starts taking its events: none is dropped or counted twice.
+ * A load that an invalidation overtook answers its own query but is not kept.
+ */
+@Component
+public class StockIndex {
+    private static final int SIZE = 101;
+
+    private final SockRepository sockRepository;
+    private final StockLedger stockLedger;
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Map<String, ColorTree> trees;
+
+    public StockIndex(SockRepository sockRepository, StockLedger stockLedger) {
+        this.sockRepository = sockRepository;
+        this.stockLedger = stockLedger;
+    }
+
+    public Totals sum(String color, int fromCottonPart, int toCottonPart) {
+        ColorTree tree = loadedTrees().get(ColorDictionary.normalize(color));
+        if (tree == null || fromCottonPart > toCottonPart) {
+            return new Totals(0, 0);
+        }
+        return tree.sum(fromCottonPart, toCottonPart);
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSockChanged(SockChangedEvent event) {
+        Map<String, ColorTree> current = trees;
+        if (current == null) {
+            return;
+        }
+        if (event.before() != null) {
+            add(current, event.before(), -1);
+        }
+        if (event.after() != null) {
+            add(current, event.after(), 1);
+        }
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogueReloaded(CatalogueReloadedEvent event) {
+        invalidate();
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+        trees = null;
+    }
+
+    private Map<String, ColorTree> loadedTrees() {
+        Map<String, ColorTree> current = trees;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            current = trees;
+            if (current != null) {
+                return current;
+            }
+            return stockLedger.quiesced(() -> {
+                long loadedGeneration = generation.get();
+                Map<String, ColorTree> loaded = new ConcurrentHashMap<>();
+                sockRepository.findAll().forEach(sock -> add(loaded, sock, 1));
+                if (generation.get() == loadedGeneration) {
+                    trees = loaded;
+                }
+                return loaded;
+            });
+        }
+    }
+
+    private void add(Map<String, ColorTree> target, Sock sock, int sign) {
+        target.computeIfAbsent(sock.getColor(), color -> new ColorTree())
+                .add(sock.getCottonPart(), sign * (long) sock.getStock(), sign);
+    }
+
+    public record Totals(long stock, int variants) {
+    }
+
+    private static class ColorTree {
+        private final long[] stock = new long[SIZE + 1];
+        private final int[] variants = new int[SIZE + 1];
+
+        synchronized void add(int cottonPart, long stockDelta, int variantsDelta) {
+            for (int i = cottonPart + 1; i <= SIZE; i += i & -i) {
+                stock[i] += stockDelta;
+                variants[i] += variantsDelta;
+            }
+        }
+
+        synchronized Totals sum(int fromCottonPart, int toCottonPart) {
+            return new Totals(
+                    prefixStock(toCottonPart) - prefixStock(fromCottonPart - 1),
+                    prefixVariants(toCottonPart) - prefixVariants(fromCottonPart - 1));
+        }
+
+        private long prefixStock(int cottonPart) {
+            long sum = 0;
+            for (int i = cottonPart + 1; i > 0; i -= i & -i) {
+                sum += stock[i];
+            }
+            return sum;
+        }
+
+        private int prefixVariants(int cottonPart) {
+            int sum = 0;
+            for (int i = cottonPart + 1; i > 0; i -= i & -i) {
+                sum += variants[i];
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package ru.teliontech.warehousecontrol.service;
+
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.teliontech.warehousecontrol.entity.OperationType;
+import ru.teliontech.warehousecontrol.entity.Sock;
+import ru.teliontech.warehousecontrol.event.CatalogueReloadedEvent;
+import ru.teliontech.warehousecontrol.exception.EntityNotFoundException;
+import ru.teliontech.warehousecontrol.exception.NegativeStockException;
+import ru.teliontech.warehousecontrol.metrics.PhaseTimers;
+import ru.teliontech.warehousecontrol.repository.SockRepository;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static ru.teliontech.warehousecontrol.service.SockService.*;
+
+/**
+ * In-memory stock of every sock variant touched by income/outcome.
+ * Each (color, cottonPart) key is guarded by one of a fixed set of striped locks,
+ * so movements on the same key are validated and persisted strictly one after another,
+ * while movements on different keys run in parallel. Inside a transaction a lock is held until the
+ * transaction completes, so a movement never builds on stock that another transaction may still roll back.
+ * A key is loaded through {@link SockCache} the first time it is touched. Quantities held by open reservations are counted per key as well:
+ * an outcome may only take what is neither sold nor reserved.
+ */
+@Component
+public class StockLedger {
+
+    private final SockRepository sockRepository;
+    private final SockCache sockCache;
+    private final ReentrantLock[] locks;
+    private final ConcurrentMap<SockKey, Sock> entries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<SockKey, Integer> reserved = new ConcurrentHashMap<>();
+    private final Timer lookupTimer = PhaseTimers.timer("lookup");
+    private final Timer saveTimer = PhaseTimers.timer("save");
+
+    public StockLedger(SockRepository sockRepository, SockCache sockCache,
+                       @Value("${warehouse.ledger.stripes:64}") int stripes) {
+        this.sockRepository = sockRepository;
+        this.sockCache = sockCache;
+        this.locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Applies a movement to the ledger and to the database with a single conditional UPDATE.
+     * The database row count is the final word: if it disagrees with the in-memory stock,
+     * the key is dropped and the cause is reported. Inside a transaction the key is also
+     * dropped when the transaction does not commit.
+     */
+    public Sock apply(String color, int cottonPart, int quantity, OperationType operationType) {
+        return apply(new SockKey(color, cottonPart), quantity, operationType, 0);
+    }
+
+    /**
+     * Ships a reserved quantity: the outcome may take the reservation's own hold, and the hold is
+     * released once the transaction commits, so the stock stays promised until the shipment is final.
+     */
+    public Sock confirm(SockKey key, int quantity) {
+        Sock updated = apply(key, quantity, OperationType.OUTCOME, quantity);
+        afterCommit(() -> release(key, quantity));
+        return updated;
+    }
+
+    /**
+     * Holds a quantity of a key if it is available and returns what is left available afterwards.
+     */
+    public int reserve(SockKey key, int quantity) {
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        try {
+            int available = available(current(key), key);
+            if (quantity > available) {
+                throw new NegativeStockException(EXCMSG_QUANTITY_BIGGER_THAN_STOCK);
+            }
+            reserved.merge(key, quantity, Integer::sum);
+            return available - quantity;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release(SockKey key, int quantity) {
+        reserved.computeIfPresent(key, (k, held) -> held > quantity ? held - quantity : null);
+    }
+
+    /**
+     * Available-to-promise: the stock minus everything held by open reservations, never below zero.
+     */
+    public int available(SockKey key) {
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        try {
+            return available(current(key), key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int reserved(SockKey key) {
+        return reserved.getOrDefault(key, 0);
+    }
+
+    private Sock apply(SockKey key, int quantity, OperationType operationType, int ownHold) {
+        List<ReentrantLock> held = List.of(lockFor(key));
+        held.forEach(ReentrantLock::lock);
+        boolean handedOver = false;
+        try {
+            Sock current = current(key);
+            Sock updated = copy(current);
+            calculateStock(updated, quantity, operationType, reserved(key) - ownHold);
+            saveTimer.record(() -> persistStock(key, updated.getId(), quantity, operationType));
+            entries.put(key, updated);
+            releaseOnCompletion(held, () -> { }, () -> drop(key));
+            handedOver = true;
+            return copy(updated);
+        } finally {
+            if (!handedOver) {
+                unlockAll(held);
+            }
+        }
+    }
+
+    /**
+     * Applies several movements as one unit. The locks of all keys are taken up front in stripe order,
+     * every line is checked against the in-memory stock before the first UPDATE is sent, and the UPDATEs
+     * go out in ascending sock id, so concurrent multi-line movements always lock rows in the same order
+     * and cannot deadlock in the database. Lines of the same key are applied in the given order;
+     * the results come back in the given order as well.
+     */
+    public List<Sock> applyAll(List<Movement> movements) {
+        List<ReentrantLock> ordered = lockAll(movements.stream().map(Movement::key).toList());
+        boolean handedOver = false;
+        try {
+            Map<SockKey, Sock> working = new HashMap<>();
+            movements.forEach(movement -> working.computeIfAbsent(movement.key(), key -> copy(current(key))));
+            List<Integer> lines = IntStream.range(0, movements.size()).boxed()
+                    .sorted(Comparator.comparing(line -> working.get(movements.get(line).key()).getId()))
+                    .toList();
+            Sock[] results = new Sock[movements.size()];
+            for (int line : lines) {
+                Movement movement = movements.get(line);
+                Sock sock = working.get(movement.key());
+                calculateStock(sock, movement.quantity(), movement.operationType(), reserved(movement.key()));
+                results[line] = copy(sock);
+            }
+            try {
+                saveTimer.record(() -> lines.forEach(line -> {
+                    Movement movement = movements.get(line);
+                    persistStock(movement.key(), results[line].getId(), movement.quantity(), movement.operationType());
+                }));
+            } catch (RuntimeException e) {
+                working.keySet().forEach(this::drop);
+                throw e;
+            }
+            entries.putAll(working);
+            releaseOnCompletion(ordered, () -> { }, () -> working.keySet().forEach(this::drop));
+            handedOver = true;
+            return List.of(results);
+        } finally {
+            if (!handedOver) {
+                unlockAll(ordered);
+            }
+        }
+    }
+
+    /**
+     * Runs a catalogue change (create, update, delete) under the locks of all affected keys
+     * and drops those keys once the change is final, so the next movement reloads them from the database.
+     * The keys are dropped from {@link SockCache} as well.
+     */
+    public <T> T rewrite(Collection<SockKey> keys, Supplier<T> action) {
+        List<ReentrantLock> ordered = lockAll(keys);
+        boolean handedOver = false;
+        try {
+            T result = action.get();
+            Runnable dropKeys = () -> keys.forEach(this::drop);
+            releaseOnCompletion(ordered, dropKeys, dropKeys);
+            handedOver = true;
+            return result;
+        } finally {
+            if (!handedOver) {
+                unlockAll(ordered);
+            }
+        }
+    }
+
+    /**
+     * Runs a bulk change of an unknown set of keys with every lock held. The whole ledger and {@link SockCache}
+     * are dropped once the change is final, before the locks are released, so no movement can load a key
+     * from the database before the change has committed.
+     */
+    public <T> T rewriteAll(Supplier<T> action) {
+        List<ReentrantLock> all = List.of(locks);
+        all.forEach(ReentrantLock::lock);
+        boolean handedOver = false;
+        try {
+            T result = action.get();
+            Runnable dropAll = () -> {
+                invalidateAll();
+                sockCache.invalidateAll();
+            };
+            releaseOnCompletion(all, dropAll, dropAll);
+            handedOver = true;
+            return result;
+        } finally {
+            if (!handedOver) {
+                unlockAll(all);
+            }
+        }
+    }
+
+    /**
+     * Runs a read with every lock held and releases them right after. Every change of stock or of the
+     * catalogue holds its locks until its transaction has completed and its after-commit listeners have run,
+     * so the read sees no change half-way: each one is either in the database and already announced,
+     * or not started yet.
+     */
+    public <T> T quiesced(Supplier<T> read) {
+        Arrays.stream(locks).forEach(ReentrantLock::lock);
+        try {
+            return read.get();
+        } finally {
+            Arrays.stream(locks).forEach(ReentrantLock::unlock);
+        }
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogueReloaded(CatalogueReloadedEvent event) {
+        invalidateAll();
+    }
+
+    private List<ReentrantLock> lockAll(Collection<SockKey> keys) {
+        List<ReentrantLock> ordered = keys.stream()
+                .map(this::lockIndex)
+                .distinct()
+                .sorted()
+                .map(index -> locks[index])
+                .toList();
+        ordered.forEach(ReentrantLock::lock);
+        return ordered;
+    }
+
+    private Sock current(SockKey key) {
+        Sock current = entries.get(key);
+        if (current == null) {
+            current = lookupTimer.record(() -> load(key));
+            entries.put(key, current);
+        }
+        return current;
+    }
+
+    private int available(Sock sock, SockKey key) {
+        return Math.max(0, sock.getStock() - reserved(key));
+    }
+
+    private Sock load(SockKey key) {
+        return sockCache.findByKey(key).orElseThrow(() -> new EntityNotFoundException(EXCMSG_NOT_FOUND));
+    }
+
+    private void drop(SockKey key) {
+        entries.remove(key);
+        sockCache.evict(key);
+    }
+
+    private void persistStock(SockKey key, Long id, int quantity, OperationType operationType) {
+        int updatedRows = operationType.equals(OperationType.INCOME)
+                ? sockRepository.incrementStock(id, quantity)
+                : sockRepository.decrementStock(id, quantity);
+        if (updatedRows == 1) {
+            return;
+        }
+        drop(key);
+        if (operationType.equals(OperationType.OUTCOME) && sockRepository.existsById(id)) {
+            throw new NegativeStockException(EXCMSG_QUANTITY_BIGGER_THAN_STOCK);
+        }
+        throw new EntityNotFoundException(EXCMSG_NOT_FOUND);
+    }
+
+    /**
+     * Keeps the locks until the surrounding transaction completes, so that no other caller can read
+     * a value this transaction may still roll back. {@code onCommit} or {@code onRollback} runs first,
+     * while the locks are still held. Without a transaction the change is already final:
+     * {@code onCommit} runs and the locks are released at once.
+     */
+    private void releaseOnCompletion(List<ReentrantLock> held, Runnable onCommit, Runnable onRollback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            try {
+                onCommit.run();
+            } finally {
+                unlockAll(held);
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    (status == STATUS_COMMITTED ? onCommit : onRollback).run();
+                } finally {
+                    unlockAll(held);
+                }
+            }
+        });
+    }
+
+    private void unlockAll(List<ReentrantLock> held) {
+        held.forEach(ReentrantLock::unlock);
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private void calculateStock(Sock sock, int quantity, OperationType operationType, int heldByOthers) {
+        if (operationType.equals(OperationType.INCOME)) {
+            sock.setStock(sock.getStock() + quantity);
+        } else {
+            if (quantity > sock.getStock() - Math.max(0, heldByOthers)) {
+                throw new NegativeStockException(EXCMSG_QUANTITY_BIGGER_THAN_STOCK);
+            }
+            sock.setStock(sock.getStock() - quantity);
+        }
+    }
+
+    private ReentrantLock lockFor(SockKey key) {
+        return locks[lockIndex(key)];
+    }
+
+    private int lockIndex(SockKey key) {
+        return Math.floorMod(key.hashCode(), locks.length);
+    }
+
+    private Sock copy(Sock sock) {
+        return new Sock(sock.getId(), sock.getColor(), sock.getCottonPart(), sock.getStock());
+    }
+
+    public record Movement(SockKey key, int quantity, OperationType operationType) {
+    }
+}
@@ -0,0 +1,43 @@
+package ru.teliontech.warehousecontrol.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Takes stock snapshots on a fixed delay and, if asked to, replays the log tail on startup.
+ * Snapshots cannot be taken with the write-behind journal on, so that combination fails the startup.
+ */
+@Component
+@ConditionalOnProperty(name = "warehouse.snapshot.enabled", havingValue = "true")
+public class StockSnapshotJob {
+
+    private final StockSnapshotService stockSnapshotService;
+    private final boolean replayOnStartup;
+
+    public StockSnapshotJob(StockSnapshotService stockSnapshotService,
+                            @Value("${warehouse.snapshot.replay-on-startup:false}") boolean replayOnStartup,
+                            @Value("${warehouse.journal.write-behind.enabled:false}") boolean writeBehind) {
+        if (writeBehind) {
+            throw new IllegalStateException("warehouse.snapshot.enabled requires warehouse.journal.write-behind.enabled=false");
+        }
+        this.stockSnapshotService = stockSnapshotService;
+        this.replayOnStartup = replayOnStartup;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void replayOnStartup() {
+        if (replayOnStartup && stockSnapshotService.hasSnapshot()) {
+            stockSnapshotService.rebuild();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${warehouse.snapshot.interval:PT5M}",
+            initialDelayString = "${warehouse.snapshot.interval:PT5M}")
+    public void takeSnapshot() {
+        stockSnapshotService.takeSnapshot();
+    }
+}
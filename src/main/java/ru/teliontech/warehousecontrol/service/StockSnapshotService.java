@@ -0,0 +1,128 @@
+package ru.teliontech.warehousecontrol.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.teliontech.warehousecontrol.dto.StockRebuildDto;
+import ru.teliontech.warehousecontrol.dto.StockSnapshotDto;
+import ru.teliontech.warehousecontrol.entity.StockSnapshot;
+import ru.teliontech.warehousecontrol.event.CatalogueReloadedEvent;
+import ru.teliontech.warehousecontrol.exception.EntityNotFoundException;
+import ru.teliontech.warehousecontrol.exception.SnapshotUnavailableException;
+import ru.teliontech.warehousecontrol.repository.StockSnapshotRepository;
+import ru.teliontech.warehousecontrol.repository.TradingActionRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Compact snapshots of the stock of every sock, each one tagged with the operation time of the last
+ * trading action it includes. Stock can be rebuilt from the latest snapshot plus the tail of the trading
+ * actions log, so recovery never has to scan the whole log.
+ * <p>
+ * A snapshot only covers actions older than {@code settle-lag}, by operation time and not by id: ids come
+ * from pooled blocks and commit out of order, while an action is stamped just before it is inserted,
+ * so once {@code settle-lag} has passed every action up to that time has been committed.
+ * <p>
+ * Snapshots and rebuilds are refused while the write-behind journal is on: the stock is updated at once
+ * but its actions reach the log only later, so the two never agree at any point in time.
+ */
+@Service
+public class StockSnapshotService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StockSnapshotService.class);
+
+    public static final String EXCMSG_NO_SNAPSHOT = "no stock snapshot to rebuild from";
+    public static final String EXCMSG_WRITE_BEHIND = "Stock snapshots are unavailable while the write-behind journal is enabled";
+
+    private final StockSnapshotRepository stockSnapshotRepository;
+    private final TradingActionRepository tradingActionRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final StockLedger stockLedger;
+    private final Duration settleLag;
+    private final int retained;
+    private final boolean writeBehind;
+
+    public StockSnapshotService(StockSnapshotRepository stockSnapshotRepository,
+                                TradingActionRepository tradingActionRepository,
+                                ApplicationEventPublisher eventPublisher,
+                                StockLedger stockLedger,
+                                @Value("${warehouse.snapshot.settle-lag:PT1M}") Duration settleLag,
+                                @Value("${warehouse.snapshot.retained:3}") int retained,
+                                @Value("${warehouse.journal.write-behind.enabled:false}") boolean writeBehind) {
+        this.stockSnapshotRepository = stockSnapshotRepository;
+        this.tradingActionRepository = tradingActionRepository;
+        this.eventPublisher = eventPublisher;
+        this.stockLedger = stockLedger;
+        this.settleLag = settleLag;
+        this.retained = retained;
+        this.writeBehind = writeBehind;
+    }
+
+    /**
+     * The first snapshot is taken from the current stock minus the unsettled log tail,
+     * every next one rolls the previous snapshot forward with the actions settled since.
+     * Returns the latest snapshot unchanged if no new action has settled.
+     */
+    @Transactional
+    public StockSnapshotDto takeSnapshot() {
+        requireJournalInLine();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime settled = now.minus(settleLag);
+        Optional<StockSnapshot> previous = stockSnapshotRepository.findTopByOrderByIdDesc();
+        if (previous.isPresent() && !hasActionsBetween(previous.get().getLastOperationTime(), settled)) {
+            return mapToDto(previous.get());
+        }
+        StockSnapshot snapshot = stockSnapshotRepository.save(new StockSnapshot(null, now, settled));
+        int items = previous
+                .map(prev -> stockSnapshotRepository.insertIncrementalItems(
+                        snapshot.getId(), prev.getId(), prev.getLastOperationTime(), settled))
+                .orElseGet(() -> stockSnapshotRepository.insertBaselineItems(snapshot.getId(), settled));
+        stockSnapshotRepository.deleteAllButLatest(retained);
+        LOGGER.info("Stock snapshot {} taken: {} socks up to {}", snapshot.getId(), items, settled);
+        return mapToDto(snapshot);
+    }
+
+    /**
+     * Rewrites socks.stock as the latest snapshot plus every trading action after it.
+     * The rebuild holds every {@link StockLedger} lock until it completes, so no movement keeps stock loaded
+     * before the rebuild and writes it back after, and a table lock keeps out writers that bypass the ledger.
+     */
+    @Transactional
+    public StockRebuildDto rebuild() {
+        requireJournalInLine();
+        StockRebuildDto rebuilt = stockLedger.rewriteAll(() -> {
+            stockSnapshotRepository.lockSocks();
+            StockSnapshot snapshot = stockSnapshotRepository.findTopByOrderByIdDesc()
+                    .orElseThrow(() -> new EntityNotFoundException(EXCMSG_NO_SNAPSHOT));
+            int repaired = stockSnapshotRepository.rebuildStock(snapshot.getId(), snapshot.getLastOperationTime());
+            eventPublisher.publishEvent(new CatalogueReloadedEvent());
+            return new StockRebuildDto(snapshot.getId(), snapshot.getLastOperationTime(), repaired);
+        });
+        LOGGER.info("Stock rebuilt from snapshot {} and trading actions after {}: {} socks repaired",
+                rebuilt.getSnapshotId(), rebuilt.getLastOperationTime(), rebuilt.getRepairedSocks());
+        return rebuilt;
+    }
+
+    public boolean hasSnapshot() {
+        return stockSnapshotRepository.findTopByOrderByIdDesc().isPresent();
+    }
+
+    private boolean hasActionsBetween(LocalDateTime after, LocalDateTime upTo) {
+        return after.isBefore(upTo) && !tradingActionRepository.findOperationTimes(after, upTo, PageRequest.of(0, 1)).isEmpty();
+    }
+
+    private void requireJournalInLine() {
+        if (writeBehind) {
+            throw new SnapshotUnavailableException(EXCMSG_WRITE_BEHIND);
+        }
+    }
+
+    private StockSnapshotDto mapToDto(StockSnapshot snapshot) {
+        return new StockSnapshotDto(snapshot.getId(), snapshot.getCreatedAt(), snapshot.getLastOperationTime());
+    }
+}
@@ -0,0 +1,71 @@
+package ru.teliontech.warehousecontrol.service;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.teliontech.warehousecontrol.event.CatalogueReloadedEvent;
+import ru.teliontech.warehousecontrol.event.SockChangedEvent;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Global version of the stock, bumped after every committed change of the catalogue or of the stock.
+ * The version is combined with the start time of the application into a strong ETag, so that
+ * a restart never hands out a tag that was already used for other data.
+ * <p>
+ * Readers must take the ETag before reading the data: data newer than its tag only costs the client
+ * one extra full response, while data older than its tag would be served from client caches forever.
+ * The listeners run last, after {@link StockIndex} has applied the same change.
+ */
+@Component
+public class StockVersion {
+    private static final String ANY = "*";
+    private static final String WEAK_PREFIX = "W/";
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private final AtomicLong version = new AtomicLong();
+
+    public long current() {
+        return version.get();
+    }
+
+    public String etag() {
+        return etag(version.get());
+    }
+
+    public String etag(long version) {
+        return "\"" + epoch + "-" + version + "\"";
+    }
+
+    /**
+     * Checks an If-None-Match header against the given ETag, using the weak comparison the header calls for.
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith(WEAK_PREFIX)) {
+                tag = tag.substring(WEAK_PREFIX.length());
+            }
+            if (tag.equals(ANY) || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSockChanged(SockChangedEvent event) {
+        version.incrementAndGet();
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogueReloaded(CatalogueReloadedEvent event) {
+        version.incrementAndGet();
+    }
+}
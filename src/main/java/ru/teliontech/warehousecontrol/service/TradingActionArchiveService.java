@@ -0,0 +1,115 @@
+package ru.teliontech.warehousecontrol.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.teliontech.warehousecontrol.archive.ArchivedAction;
+import ru.teliontech.warehousecontrol.archive.SegmentReader;
+import ru.teliontech.warehousecontrol.archive.SegmentWriter;
+import ru.teliontech.warehousecontrol.dto.TradingActionDto;
+import ru.teliontech.warehousecontrol.exception.InvalidArgumentException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Archive of trading actions removed from the database, kept as columnar segment files
+ * in {@code warehouse.archive.dir}, one file per exported partition.
+ */
+@Service
+public class TradingActionArchiveService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TradingActionArchiveService.class);
+
+    public static final String SEGMENT_SUFFIX = ".wcs";
+    public static final int MAX_ROWS = 10_000;
+    public static final String EXCMSG_LIMIT_NOT_RANGE = "The value of the limit field does not fall within the range from 1 to " + MAX_ROWS;
+
+    private final Path directory;
+
+    public TradingActionArchiveService(@Value("${warehouse.archive.dir:archive}") Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Writes every action handed out by {@code source} into the segment {@code name}.
+     * The segment only appears under its final name once it has been written and read back in full.
+     *
+     * @return the number of archived actions
+     */
+    public long export(String name, Consumer<Consumer<ArchivedAction>> source) {
+        try {
+            Files.createDirectories(directory);
+            Path target = directory.resolve(name + SEGMENT_SUFFIX);
+            Path temporary = directory.resolve(name + SEGMENT_SUFFIX + ".tmp");
+            long[] written = new long[1];
+            try (SegmentWriter writer = new SegmentWriter(temporary)) {
+                source.accept(action -> {
+                    try {
+                        writer.append(action);
+                        written[0]++;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            try (SegmentReader reader = SegmentReader.open(temporary)) {
+                if (reader.rowCount() != written[0]) {
+                    throw new IOException("Segment " + temporary + " holds " + reader.rowCount() + " of " + written[0] + " actions");
+                }
+            }
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.info("Archived {} trading actions into {} ({} bytes)", written[0], target, Files.size(target));
+            return written[0];
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public boolean exists(String name) {
+        return Files.exists(directory.resolve(name + SEGMENT_SUFFIX));
+    }
+
+    public List<TradingActionDto> query(LocalDateTime from, LocalDateTime to, Long sockId, int limit) {
+        if (limit < 1 || limit > MAX_ROWS) {
+            throw new InvalidArgumentException(EXCMSG_LIMIT_NOT_RANGE);
+        }
+        List<TradingActionDto> result = new ArrayList<>();
+        for (Path segment : listSegments()) {
+            try (SegmentReader reader = SegmentReader.open(segment)) {
+                boolean completed = reader.scan(from, to, sockId, action -> {
+                    result.add(new TradingActionDto(action.id(), action.operationTime(), action.operationType(),
+                            action.sockId(), action.quantity()));
+                    return result.size() < limit;
+                });
+                if (!completed) {
+                    break;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return result;
+    }
+
+    private List<Path> listSegments() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
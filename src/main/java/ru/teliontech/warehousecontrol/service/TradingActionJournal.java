@@ -0,0 +1,292 @@
+package ru.teliontech.warehousecontrol.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.teliontech.warehousecontrol.entity.TradingAction;
+import ru.teliontech.warehousecontrol.repository.TradingActionDeadLetterRepository;
+import ru.teliontech.warehousecontrol.repository.TradingActionRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Writes trading actions to the database. By default every action is saved on the caller's
+ * transaction. With write-behind enabled, actions are handed to a bounded buffer after the
+ * movement commits, and a single flusher thread inserts them in batches of up to
+ * {@code max-batch-size}, waiting at most {@code linger} for a batch to fill up.
+ * A full buffer blocks the caller until the flusher catches up.
+ * <p>
+ * A batch is never dropped. When the database is unavailable the flusher retries the batch with
+ * exponential backoff, while the buffer fills up and eventually holds the callers back. Any other failure
+ * means some row of the batch is bad: the batch is split in halves and retried, and a single action that
+ * still fails is written to the dead letter table instead, so one bad row cannot stall the journal.
+ * <p>
+ * Shutdown waits up to {@code shutdown-timeout} for the buffer to drain, then interrupts the flusher, which
+ * dead-letters whatever it has not saved yet. Actions that arrive after shutdown has begun are saved
+ * on the caller's thread.
+ */
+@Component
+public class TradingActionJournal {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TradingActionJournal.class);
+    private static final long POLL_INTERVAL_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 10_000;
+
+    private final TradingActionRepository tradingActionRepository;
+    private final TradingActionDeadLetterRepository deadLetterRepository;
+    private final boolean writeBehind;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final Duration shutdownTimeout;
+    private final BlockingQueue<TradingAction> buffer;
+    private final Timer flushTimer;
+    private final Counter deadLettered;
+    private final ReadWriteLock lifecycle = new ReentrantReadWriteLock();
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    public TradingActionJournal(TradingActionRepository tradingActionRepository,
+                                TradingActionDeadLetterRepository deadLetterRepository,
+                                @Value("${warehouse.journal.write-behind.enabled:false}") boolean writeBehind,
+                                @Value("${warehouse.journal.capacity:10000}") int capacity,
+                                @Value("${warehouse.journal.max-batch-size:500}") int maxBatchSize,
+                                @Value("${warehouse.journal.linger:20ms}") Duration linger,
+                                @Value("${warehouse.journal.shutdown-timeout:PT30S}") Duration shutdownTimeout) {
+        this.tradingActionRepository = tradingActionRepository;
+        this.deadLetterRepository = deadLetterRepository;
+        this.writeBehind = writeBehind;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = linger.toNanos();
+        this.shutdownTimeout = shutdownTimeout;
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        Gauge.builder("warehouse.journal.queue.depth", buffer, Collection::size)
+                .description("Trading actions waiting to be flushed")
+                .register(Metrics.globalRegistry);
+        this.flushTimer = Timer.builder("warehouse.journal.flush")
+                .description("Time to insert one batch of trading actions")
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry);
+        this.deadLettered = Counter.builder("warehouse.journal.dead-lettered")
+                .description("Trading actions written to the dead letter table instead of the log")
+                .register(Metrics.globalRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!writeBehind) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::run, "trading-action-journal");
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        lifecycle.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            lifecycle.writeLock().unlock();
+        }
+        flusher.join(shutdownTimeout.toMillis());
+        if (flusher.isAlive()) {
+            LOGGER.warn("Trading action journal did not drain in {}, interrupting the flusher", shutdownTimeout);
+            flusher.interrupt();
+            flusher.join();
+        }
+        LOGGER.info("Trading action journal stopped, buffer drained");
+    }
+
+    public void append(TradingAction tradingAction) {
+        if (!writeBehind) {
+            tradingActionRepository.save(tradingAction);
+            return;
+        }
+        afterCommit(List.of(tradingAction));
+    }
+
+    public void appendAll(List<TradingAction> tradingActions) {
+        if (!writeBehind) {
+            tradingActionRepository.saveAll(tradingActions);
+            return;
+        }
+        afterCommit(tradingActions);
+    }
+
+    public int getQueueDepth() {
+        return buffer.size();
+    }
+
+    private void afterCommit(List<TradingAction> tradingActions) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(tradingActions);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                enqueue(tradingActions);
+            }
+        });
+    }
+
+    /**
+     * Holds the read side of the lifecycle lock from the check of {@code running} to the last put,
+     * so {@link #stop()} cannot let the flusher finish while an action is still on its way into the buffer.
+     */
+    private void enqueue(List<TradingAction> tradingActions) {
+        lifecycle.readLock().lock();
+        try {
+            if (!running) {
+                tradingActionRepository.saveAll(tradingActions);
+                return;
+            }
+            for (TradingAction tradingAction : tradingActions) {
+                buffer.put(tradingAction);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for space in the trading action journal", e);
+        } finally {
+            lifecycle.readLock().unlock();
+        }
+    }
+
+    /**
+     * Once interrupted, the flusher stops waiting: whatever is left in the buffer gets one more attempt
+     * and is dead-lettered if that fails.
+     */
+    private void run() {
+        List<TradingAction> batch = new ArrayList<>(maxBatchSize);
+        while ((running || !buffer.isEmpty()) && !Thread.currentThread().isInterrupted()) {
+            try {
+                TradingAction first = buffer.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fillBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+        buffer.drainTo(batch);
+        if (!batch.isEmpty()) {
+            flush(batch);
+        }
+    }
+
+    private void fillBatch(List<TradingAction> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + lingerNanos;
+        while (batch.size() < maxBatchSize) {
+            if (buffer.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            TradingAction next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<TradingAction> batch) {
+        long backoffMillis = POLL_INTERVAL_MILLIS;
+        for (int attempt = 1; ; attempt++) {
+            RuntimeException failure;
+            try {
+                flushTimer.record(() -> tradingActionRepository.saveAll(batch));
+                return;
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            if (!isTransient(failure)) {
+                split(batch, failure);
+                return;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                deadLetter(batch, failure);
+                return;
+            }
+            LOGGER.warn("Failed to flush {} trading actions, attempt {}, retrying in {} ms",
+                    batch.size(), attempt, backoffMillis, failure);
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                deadLetter(batch, failure);
+                return;
+            }
+            backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    /**
+     * Narrows a batch that the database rejected down to the actions it rejects on their own.
+     * Takes at most {@code 2n - 1} inserts for a batch of {@code n}.
+     */
+    private void split(List<TradingAction> batch, RuntimeException failure) {
+        if (batch.size() == 1) {
+            deadLetter(batch, failure);
+            return;
+        }
+        LOGGER.warn("Failed to flush {} trading actions, splitting the batch", batch.size(), failure);
+        int half = batch.size() / 2;
+        flush(batch.subList(0, half));
+        flush(batch.subList(half, batch.size()));
+    }
+
+    private void deadLetter(List<TradingAction> batch, RuntimeException failure) {
+        String error = String.valueOf(NestedExceptionUtils.getMostSpecificCause(failure).getMessage());
+        try {
+            deadLetterRepository.insertAll(batch, LocalDateTime.now(), error);
+            deadLettered.increment(batch.size());
+            LOGGER.error("Dead-lettered {} trading actions: {}", batch.size(), error);
+        } catch (RuntimeException e) {
+            LOGGER.error("Lost {} trading actions that could be neither saved nor dead-lettered: {}", batch.size(), batch, e);
+        }
+    }
+
+    /**
+     * The database or the connection to it is failing, so the same batch may well be saved later.
+     */
+    private static boolean isTransient(RuntimeException e) {
+        return e instanceof TransientDataAccessException || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException || e instanceof CannotCreateTransactionException;
+    }
+}
@@ -0,0 +1,72 @@
+package ru.teliontech.warehousecontrol.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.teliontech.warehousecontrol.dto.PageDto;
+import ru.teliontech.warehousecontrol.dto.TradingActionDto;
+import ru.teliontech.warehousecontrol.exception.InvalidArgumentException;
+import ru.teliontech.warehousecontrol.repository.TradingActionExportRepository;
+import ru.teliontech.warehousecontrol.repository.TradingActionRepository;
+import ru.teliontech.warehousecontrol.utils.KeysetPages;
+
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Service
+public class TradingActionService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TradingActionService.class);
+
+    public static final String EXCMSG_RANGE_INVALID = "The value of the from field must not be after the value of the to field";
+
+    private final TradingActionRepository tradingActionRepository;
+    private final TradingActionExportRepository tradingActionExportRepository;
+    private final Duration settleLag;
+
+    public TradingActionService(TradingActionRepository tradingActionRepository,
+                                TradingActionExportRepository tradingActionExportRepository,
+                                @Value("${warehouse.journal.settle-lag:PT1M}") Duration settleLag) {
+        this.tradingActionRepository = tradingActionRepository;
+        this.tradingActionExportRepository = tradingActionExportRepository;
+        this.settleLag = settleLag;
+    }
+
+    /**
+     * Pages through the log in (operationTime, id) order, up to {@code settle-lag} ago. Ids are taken from
+     * pooled blocks and commit out of order, so a cursor on the id alone would skip an action that commits
+     * behind it; by operation time, every action older than {@code settle-lag} has already been committed,
+     * and the newer ones show up on a later page.
+     */
+    public PageDto<TradingActionDto> getTradingActionsPage(String cursor, int size) {
+        KeysetPages.Position after = KeysetPages.afterPosition(cursor);
+        List<TradingActionDto> rows = tradingActionRepository.findPageAfter(after.time(), after.id(),
+                LocalDateTime.now().minus(settleLag), KeysetPages.limit(size));
+        return KeysetPages.toPositionPage(rows, size,
+                action -> new KeysetPages.Position(action.getOperationTime(), action.getId()));
+    }
+
+    /**
+     * Checks the filters of an export up front, while an error can still become a 400 response:
+     * once the export has started, the response is already committed.
+     */
+    public void validateExport(LocalDateTime from, LocalDateTime to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new InvalidArgumentException(EXCMSG_RANGE_INVALID);
+        }
+    }
+
+    /**
+     * Streams the trading actions with {@code from <= operationTime < to} of the given sock to {@code out} as CSV.
+     *
+     * @return the number of exported actions
+     */
+    public long export(LocalDateTime from, LocalDateTime to, Long sockId, OutputStream out) {
+        validateExport(from, to);
+        long rows = tradingActionExportRepository.copyOut(from, to, sockId, out);
+        LOGGER.info("Exported {} trading actions (from {}, to {}, sock {})", rows, from, to, sockId);
+        return rows;
+    }
+}
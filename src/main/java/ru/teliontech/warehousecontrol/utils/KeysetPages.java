@@ -0,0 +1,107 @@
+package ru.teliontech.warehousecontrol.utils;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import ru.teliontech.warehousecontrol.dto.PageDto;
+import ru.teliontech.warehousecontrol.exception.InvalidArgumentException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Keyset pagination over an ascending id, or over an ascending (time, id) pair for append-only logs.
+ * The continuation token is an opaque encoding of the last key returned, so every page is an index range scan
+ * with a LIMIT and no OFFSET.
+ */
+public final class KeysetPages {
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final String EXCMSG_INVALID_CURSOR = "The cursor is malformed";
+    public static final String EXCMSG_PAGE_SIZE_NOT_RANGE = "The value of the size field does not fall within the range from 1 to " + MAX_PAGE_SIZE;
+
+    private static final String PREFIX = "id:";
+    private static final String POSITION_PREFIX = "at:";
+    private static final char POSITION_SEPARATOR = '/';
+
+    private KeysetPages() {
+    }
+
+    public static long afterId(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0L;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!decoded.startsWith(PREFIX)) {
+                throw new InvalidArgumentException(EXCMSG_INVALID_CURSOR);
+            }
+            return Long.parseLong(decoded.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidArgumentException(EXCMSG_INVALID_CURSOR);
+        }
+    }
+
+    public static Position afterPosition(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return Position.START;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.lastIndexOf(POSITION_SEPARATOR);
+            if (!decoded.startsWith(POSITION_PREFIX) || separator < 0) {
+                throw new InvalidArgumentException(EXCMSG_INVALID_CURSOR);
+            }
+            return new Position(LocalDateTime.parse(decoded.substring(POSITION_PREFIX.length(), separator)),
+                    Long.parseLong(decoded.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidArgumentException(EXCMSG_INVALID_CURSOR);
+        }
+    }
+
+    /**
+     * Requests one row more than the page size, which tells whether another page exists
+     * without a separate count query.
+     */
+    public static Pageable limit(int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new InvalidArgumentException(EXCMSG_PAGE_SIZE_NOT_RANGE);
+        }
+        return PageRequest.of(0, size + 1);
+    }
+
+    public static <T> PageDto<T> toPage(List<T> rows, int size, ToLongFunction<T> idExtractor) {
+        if (rows.size() <= size) {
+            return new PageDto<>(rows, null);
+        }
+        List<T> items = rows.subList(0, size);
+        return new PageDto<>(items, encode(idExtractor.applyAsLong(items.get(size - 1))));
+    }
+
+    public static <T> PageDto<T> toPositionPage(List<T> rows, int size, Function<T, Position> positionExtractor) {
+        if (rows.size() <= size) {
+            return new PageDto<>(rows, null);
+        }
+        List<T> items = rows.subList(0, size);
+        Position last = positionExtractor.apply(items.get(size - 1));
+        return new PageDto<>(items, encode(POSITION_PREFIX + last.time() + POSITION_SEPARATOR + last.id()));
+    }
+
+    private static String encode(long id) {
+        return encode(PREFIX + id);
+    }
+
+    private static String encode(String key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * A key of a (time, id) keyset: rows come in ascending time, rows of the same time in ascending id.
+     */
+    public record Position(LocalDateTime time, long id) {
+        public static final Position START = new Position(LocalDateTime.of(1970, 1, 1, 0, 0), 0L);
+    }
+}
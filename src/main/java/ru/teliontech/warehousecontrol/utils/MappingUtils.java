@@ -4,6 +4,7 @@ import org.springframework.stereotype.Service;
 import ru.teliontech.warehousecontrol.dto.SockDto;
 import ru.teliontech.warehousecontrol.dto.SockQntDto;
 import ru.teliontech.warehousecontrol.entity.Sock;
+import ru.teliontech.warehousecontrol.service.ColorDictionary;
 
 @Service
 public class MappingUtils {
@@ -30,7 +31,7 @@ public class MappingUtils {
     public Sock mapToSock(SockDto sockDto) {
         Sock sock = new Sock();
         sock.setId(sockDto.getId());
-        sock.setColor(sockDto.getColor());
+        sock.setColor(ColorDictionary.normalize(sockDto.getColor()));
         sock.setCottonPart(sockDto.getCottonPart());
         sock.setStock(sockDto.getStock());
         return sock;
@@ -39,7 +40,7 @@ public class MappingUtils {
     public Sock mapToSock(SockQntDto sockQntDto) {
         Sock sock = new Sock();
         sock.setId(sockQntDto.getId());
-        sock.setColor(sockQntDto.getColor());
+        sock.setColor(ColorDictionary.normalize(sockQntDto.getColor()));
         sock.setCottonPart(sockQntDto.getCottonPart());
         sock.setStock(sockQntDto.getStock());
         return sock;
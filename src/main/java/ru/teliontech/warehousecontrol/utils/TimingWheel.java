@@ -0,0 +1,190 @@
+package ru.teliontech.warehousecontrol.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel. Level {@code i} has {@code wheelSize} buckets, each spanning
+ * {@code tick * wheelSize^i} milliseconds; a timeout is placed on the lowest level whose span reaches its deadline
+ * and cascades one level down every time the wheel turns into its bucket. Scheduling and cancelling are O(1),
+ * advancing costs one bucket per tick plus the cascades, independent of the number of pending timeouts.
+ * Deadlines are rounded up to the next tick. Levels are added on demand, so any deadline fits.
+ */
+public class TimingWheel<T> {
+
+    private final long tickMillis;
+    private final int wheelSize;
+    private final List<List<Bucket<T>>> levels = new ArrayList<>();
+    private final Bucket<T> due = new Bucket<>();
+    private long currentTick;
+    private int size;
+
+    public TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || wheelSize < 2) {
+            throw new IllegalArgumentException("The tick must be positive and the wheel must have at least two buckets");
+        }
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.currentTick = startMillis / tickMillis;
+        addLevel();
+    }
+
+    public synchronized Timeout<T> schedule(T item, long deadlineMillis) {
+        Timeout<T> timeout = new Timeout<>(this, item, Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis));
+        place(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Turns the wheel up to {@code nowMillis} and hands every timeout that fell due to {@code onExpired},
+     * in no particular order within a tick. Callbacks run while the wheel is locked and must not block.
+     */
+    public synchronized void advance(long nowMillis, Consumer<T> onExpired) {
+        long targetTick = nowMillis / tickMillis;
+        expire(due, onExpired);
+        while (currentTick < targetTick) {
+            if (size == 0) {
+                currentTick = targetTick;
+                return;
+            }
+            currentTick++;
+            for (int level = levels.size() - 1; level > 0; level--) {
+                if (currentTick % span(level) == 0) {
+                    cascade(levels.get(level).get(index(currentTick / span(level))));
+                }
+            }
+            expire(levels.get(0).get(index(currentTick)), onExpired);
+            expire(due, onExpired);
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private synchronized boolean cancel(Timeout<T> timeout) {
+        if (timeout.bucket == null) {
+            return false;
+        }
+        timeout.bucket.remove(timeout);
+        size--;
+        return true;
+    }
+
+    private void place(Timeout<T> timeout) {
+        if (timeout.deadlineTick <= currentTick) {
+            due.add(timeout);
+            return;
+        }
+        int level = 0;
+        while (timeout.deadlineTick / span(level) - currentTick / span(level) >= wheelSize) {
+            level++;
+            if (level == levels.size()) {
+                addLevel();
+            }
+        }
+        levels.get(level).get(index(timeout.deadlineTick / span(level))).add(timeout);
+    }
+
+    private void cascade(Bucket<T> bucket) {
+        Timeout<T> timeout;
+        while ((timeout = bucket.poll()) != null) {
+            place(timeout);
+        }
+    }
+
+    private void expire(Bucket<T> bucket, Consumer<T> onExpired) {
+        Timeout<T> timeout;
+        while ((timeout = bucket.poll()) != null) {
+            size--;
+            onExpired.accept(timeout.item);
+        }
+    }
+
+    private long span(int level) {
+        long span = 1;
+        for (int i = 0; i < level; i++) {
+            span = Math.multiplyExact(span, wheelSize);
+        }
+        return span;
+    }
+
+    private int index(long slot) {
+        return (int) Math.floorMod(slot, (long) wheelSize);
+    }
+
+    private void addLevel() {
+        List<Bucket<T>> buckets = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            buckets.add(new Bucket<>());
+        }
+        levels.add(buckets);
+    }
+
+    public static final class Timeout<T> {
+        private final TimingWheel<T> wheel;
+        private final T item;
+        private final long deadlineTick;
+        private Bucket<T> bucket;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        private Timeout(TimingWheel<T> wheel, T item, long deadlineTick) {
+            this.wheel = wheel;
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public T item() {
+            return item;
+        }
+
+        /**
+         * Removes the timeout from the wheel. Returns {@code false} if it has already expired or been cancelled.
+         */
+        public boolean cancel() {
+            return wheel.cancel(this);
+        }
+    }
+
+    /**
+     * Intrusive doubly-linked list, so that a cancelled timeout is unlinked without a search.
+     */
+    private static final class Bucket<T> {
+        private Timeout<T> head;
+
+        void add(Timeout<T> timeout) {
+            timeout.bucket = this;
+            timeout.prev = null;
+            timeout.next = head;
+            if (head != null) {
+                head.prev = timeout;
+            }
+            head = timeout;
+        }
+
+        void remove(Timeout<T> timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.bucket = null;
+            timeout.prev = null;
+            timeout.next = null;
+        }
+
+        Timeout<T> poll() {
+            Timeout<T> timeout = head;
+            if (timeout != null) {
+                remove(timeout);
+            }
+            return timeout;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+--liquibase formatted sql
+
+--changeset starasov:12
+CREATE TABLE IF NOT EXISTS colors
+(
+    id              smallint generated by default as identity primary key,
+    name            varchar(20) not null unique
+);
+
+INSERT INTO colors (name)
+SELECT DISTINCT lower(trim(color)) FROM socks WHERE color IS NOT NULL ORDER BY 1
+ON CONFLICT DO NOTHING;
+
+ALTER TABLE socks ADD COLUMN color_id smallint REFERENCES colors (id);
+UPDATE socks s SET color_id = c.id FROM colors c WHERE c.name = lower(trim(s.color));
+ALTER TABLE socks DROP COLUMN color;
+
+CREATE INDEX IF NOT EXISTS socks_color_id_cotton_part_idx ON socks (color_id, cotton_part);
@@ -0,0 +1,16 @@
+--liquibase formatted sql
+
+--changeset starasov:11
+CREATE TABLE IF NOT EXISTS idempotency_keys
+(
+    idempotency_key varchar(64) primary key,
+    created_at      timestamp not null,
+    operation_type  int not null,
+    color           varchar(20) not null,
+    cotton_part     int not null,
+    quantity        int not null,
+    sock_id         bigint,
+    stock           int
+);
+
+CREATE INDEX IF NOT EXISTS idempotency_keys_created_at_idx ON idempotency_keys (created_at);
@@ -0,0 +1,13 @@
+--liquibase formatted sql
+
+--changeset starasov:15
+CREATE TABLE IF NOT EXISTS trading_action_dead_letters
+(
+    id              bigint generated by default as identity primary key,
+    failed_at       timestamp not null,
+    operation_time  timestamp,
+    operation_type  int,
+    sock_id         bigint,
+    quantity        int,
+    error           text
+);
@@ -0,0 +1,39 @@
+--liquibase formatted sql
+
+--changeset starasov:8
+ALTER TABLE trading_actions RENAME TO trading_actions_legacy;
+ALTER SEQUENCE trading_actions_seq OWNED BY NONE;
+CREATE TABLE trading_actions
+(
+    id              bigint not null default nextval('trading_actions_seq'),
+    operation_time  timestamp not null,
+    operation_type  int,
+    sock_id         bigint,
+    quantity        int,
+    primary key (id, operation_time)
+) PARTITION BY RANGE (operation_time);
+ALTER SEQUENCE trading_actions_seq OWNED BY trading_actions.id;
+CREATE SCHEMA IF NOT EXISTS trading_actions_archive;
+
+--changeset starasov:9 splitStatements:false
+DO $$
+DECLARE
+    month date;
+BEGIN
+    FOR month IN
+        SELECT generate_series(
+                       date_trunc('month', COALESCE((SELECT MIN(operation_time) FROM trading_actions_legacy), now())),
+                       date_trunc('month', now()) + interval '3 months',
+                       interval '1 month')::date
+    LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF trading_actions FOR VALUES FROM (%L) TO (%L)',
+                       'trading_actions_p' || to_char(month, 'YYYYMM'), month, (month + interval '1 month')::date);
+    END LOOP;
+END
+$$;
+
+--changeset starasov:10
+INSERT INTO trading_actions (id, operation_time, operation_type, sock_id, quantity)
+SELECT id, COALESCE(operation_time, now()), operation_type, sock_id, quantity FROM trading_actions_legacy;
+DROP TABLE trading_actions_legacy;
+CREATE INDEX IF NOT EXISTS trading_actions_sock_id_operation_time_idx ON trading_actions (sock_id, operation_time);
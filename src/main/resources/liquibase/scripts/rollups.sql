@@ -0,0 +1,30 @@
+--liquibase formatted sql
+
+--changeset starasov:7
+CREATE TABLE IF NOT EXISTS movement_rollups_hourly
+(
+    sock_id         bigint not null,
+    bucket          timestamp not null,
+    operation_type  int not null,
+    quantity        bigint not null,
+    actions         bigint not null,
+    primary key (sock_id, bucket, operation_type)
+);
+
+CREATE TABLE IF NOT EXISTS movement_rollups_daily
+(
+    sock_id         bigint not null,
+    bucket          timestamp not null,
+    operation_type  int not null,
+    quantity        bigint not null,
+    actions         bigint not null,
+    primary key (sock_id, bucket, operation_type)
+);
+
+CREATE TABLE IF NOT EXISTS rollup_watermarks
+(
+    name            varchar(50) primary key,
+    last_action_id  bigint not null
+);
+
+INSERT INTO rollup_watermarks (name, last_action_id) VALUES ('movements', 0);
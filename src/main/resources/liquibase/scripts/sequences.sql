@@ -0,0 +1,15 @@
+--liquibase formatted sql
+
+--changeset starasov:4
+CREATE SEQUENCE IF NOT EXISTS socks_seq INCREMENT BY 50;
+SELECT setval('socks_seq', (SELECT COALESCE(MAX(id), 0) FROM socks) + 50, false);
+ALTER TABLE socks ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE socks ALTER COLUMN id SET DEFAULT nextval('socks_seq');
+ALTER SEQUENCE socks_seq OWNED BY socks.id;
+
+--changeset starasov:5
+CREATE SEQUENCE IF NOT EXISTS trading_actions_seq INCREMENT BY 50;
+SELECT setval('trading_actions_seq', (SELECT COALESCE(MAX(id), 0) FROM trading_actions) + 50, false);
+ALTER TABLE trading_actions ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE trading_actions ALTER COLUMN id SET DEFAULT nextval('trading_actions_seq');
+ALTER SEQUENCE trading_actions_seq OWNED BY trading_actions.id;
@@ -0,0 +1,17 @@
+--liquibase formatted sql
+
+--changeset starasov:6
+CREATE TABLE IF NOT EXISTS stock_snapshots
+(
+    id              bigint generated by default as identity primary key,
+    created_at      timestamp not null,
+    last_action_id  bigint not null
+);
+
+CREATE TABLE IF NOT EXISTS stock_snapshot_items
+(
+    snapshot_id     bigint not null references stock_snapshots (id) on delete cascade,
+    sock_id         bigint not null,
+    stock           bigint not null,
+    primary key (snapshot_id, sock_id)
+);
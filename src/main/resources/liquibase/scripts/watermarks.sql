@@ -0,0 +1,43 @@
+--liquibase formatted sql
+
+--changeset starasov:13
+CREATE INDEX IF NOT EXISTS trading_actions_operation_time_idx ON trading_actions (operation_time);
+
+ALTER TABLE rollup_watermarks ADD COLUMN last_operation_time timestamp;
+
+UPDATE rollup_watermarks w SET last_operation_time = COALESCE(
+        (SELECT MAX(operation_time) FROM trading_actions WHERE id <= w.last_action_id), '1970-01-01');
+
+INSERT INTO movement_rollups_hourly (sock_id, bucket, operation_type, quantity, actions)
+SELECT t.sock_id, date_trunc('hour', t.operation_time), t.operation_type, SUM(t.quantity), COUNT(*)
+FROM trading_actions t JOIN rollup_watermarks w ON w.name = 'movements'
+WHERE t.id > w.last_action_id AND t.operation_time <= w.last_operation_time GROUP BY 1, 2, 3
+ON CONFLICT (sock_id, bucket, operation_type) DO UPDATE SET
+    quantity = movement_rollups_hourly.quantity + EXCLUDED.quantity,
+    actions = movement_rollups_hourly.actions + EXCLUDED.actions;
+
+INSERT INTO movement_rollups_daily (sock_id, bucket, operation_type, quantity, actions)
+SELECT t.sock_id, date_trunc('day', t.operation_time), t.operation_type, SUM(t.quantity), COUNT(*)
+FROM trading_actions t JOIN rollup_watermarks w ON w.name = 'movements'
+WHERE t.id > w.last_action_id AND t.operation_time <= w.last_operation_time GROUP BY 1, 2, 3
+ON CONFLICT (sock_id, bucket, operation_type) DO UPDATE SET
+    quantity = movement_rollups_daily.quantity + EXCLUDED.quantity,
+    actions = movement_rollups_daily.actions + EXCLUDED.actions;
+
+ALTER TABLE rollup_watermarks ALTER COLUMN last_operation_time SET NOT NULL;
+ALTER TABLE rollup_watermarks DROP COLUMN last_action_id;
+
+--changeset starasov:14
+ALTER TABLE stock_snapshots ADD COLUMN last_operation_time timestamp;
+
+UPDATE stock_snapshots s SET last_operation_time = COALESCE(
+        (SELECT MAX(operation_time) FROM trading_actions WHERE id <= s.last_action_id), s.created_at);
+
+INSERT INTO stock_snapshot_items (snapshot_id, sock_id, stock)
+SELECT s.id, t.sock_id, SUM(CASE t.operation_type WHEN 0 THEN t.quantity ELSE -t.quantity END)
+FROM stock_snapshots s JOIN trading_actions t ON t.id > s.last_action_id AND t.operation_time <= s.last_operation_time
+WHERE t.sock_id IN (SELECT id FROM socks) GROUP BY 1, 2
+ON CONFLICT (snapshot_id, sock_id) DO UPDATE SET stock = stock_snapshot_items.stock + EXCLUDED.stock;
+
+ALTER TABLE stock_snapshots ALTER COLUMN last_operation_time SET NOT NULL;
+ALTER TABLE stock_snapshots DROP COLUMN last_action_id;
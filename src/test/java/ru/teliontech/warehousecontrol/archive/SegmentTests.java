@@ -0,0 +1,98 @@
+package ru.teliontech.warehousecontrol.archive;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.teliontech.warehousecontrol.entity.OperationType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class SegmentTests {
+    private static final int ROWS = 100_000;
+    private static final LocalDateTime START = LocalDateTime.of(2023, 1, 1, 0, 0);
+
+    @TempDir
+    Path directory;
+
+    private final List<ArchivedAction> actions = new ArrayList<>();
+    private Path segment;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        LocalDateTime time = START;
+        for (int i = 0; i < ROWS; i++) {
+            time = time.plusNanos(random.nextInt(20_000_000) * 1_000L);
+            actions.add(new ArchivedAction(1_000 + i * 3L + random.nextInt(2), time,
+                    random.nextBoolean() ? OperationType.INCOME : OperationType.OUTCOME,
+                    random.nextInt(500) + 1, random.nextInt(1, 100)));
+        }
+        segment = directory.resolve("segment.wcs");
+        try (SegmentWriter writer = new SegmentWriter(segment)) {
+            for (ArchivedAction action : actions) {
+                writer.append(action);
+            }
+        }
+    }
+
+    @Test
+    public void testScan_Positive_RoundTrip() throws IOException {
+        List<ArchivedAction> actual = new ArrayList<>();
+        try (SegmentReader reader = SegmentReader.open(segment)) {
+            assertThat(reader.rowCount()).isEqualTo(ROWS);
+            assertThat(reader.scan(null, null, null, actual::add)).isTrue();
+        }
+        assertThat(actual).containsExactlyElementsOf(actions);
+        assertThat(Files.size(segment)).isLessThan(ROWS * 8L);
+    }
+
+    @Test
+    public void testScan_Positive_PushesDownTimeAndSock() throws IOException {
+        LocalDateTime from = actions.get(50_000).operationTime();
+        LocalDateTime to = actions.get(70_000).operationTime();
+        long sockId = actions.get(60_000).sockId();
+        List<ArchivedAction> expected = actions.stream()
+                .filter(action -> !action.operationTime().isBefore(from) && action.operationTime().isBefore(to))
+                .filter(action -> action.sockId() == sockId)
+                .toList();
+        List<ArchivedAction> actual = new ArrayList<>();
+        try (SegmentReader reader = SegmentReader.open(segment)) {
+            reader.scan(from, to, sockId, actual::add);
+        }
+        assertThat(actual).isNotEmpty().containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    public void testScan_Positive_UnknownSock() throws IOException {
+        List<ArchivedAction> actual = new ArrayList<>();
+        try (SegmentReader reader = SegmentReader.open(segment)) {
+            assertThat(reader.scan(null, null, 10_000L, actual::add)).isTrue();
+        }
+        assertThat(actual).isEmpty();
+    }
+
+    @Test
+    public void testScan_Positive_VisitorStops() throws IOException {
+        List<ArchivedAction> actual = new ArrayList<>();
+        try (SegmentReader reader = SegmentReader.open(segment)) {
+            assertThat(reader.scan(null, null, null, action -> actual.add(action) && actual.size() < 10)).isFalse();
+        }
+        assertThat(actual).containsExactlyElementsOf(actions.subList(0, 10));
+    }
+
+    @Test
+    public void testOpen_Negative_NotASegment() throws IOException {
+        Path file = Files.write(directory.resolve("other.wcs"), new byte[64]);
+        Throwable thrown = catchThrowable(() -> SegmentReader.open(file));
+        assertThat(thrown).isInstanceOf(IOException.class);
+    }
+}
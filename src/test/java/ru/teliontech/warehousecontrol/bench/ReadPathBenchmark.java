@@ -0,0 +1,81 @@
+package ru.teliontech.warehousecontrol.bench;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the blocking and the reactive read endpoints of a running application.
+ * Not a unit test: start the application first, then run
+ * <pre>
+ * java -cp target/test-classes ru.teliontech.warehousecontrol.bench.ReadPathBenchmark [baseUrl] [concurrency] [requests]
+ * </pre>
+ * Every path gets a warm-up round of the same size before it is measured.
+ */
+public class ReadPathBenchmark {
+    private static final String COUNT_QUERY = "?color=red&operation=between&cottonPart=0&cottonPartTo=100";
+    private static final List<String> PATHS = List.of(
+            "/api/socks" + COUNT_QUERY,
+            "/api/reactive/socks" + COUNT_QUERY,
+            "/api/socks/all",
+            "/api/reactive/socks/all"
+    );
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 20_000;
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        System.out.printf("%-80s %10s %8s %8s %8s %8s%n", "path", "req/s", "p50 ms", "p99 ms", "max ms", "errors");
+        for (String path : PATHS) {
+            URI uri = URI.create(baseUrl + path);
+            run(client, uri, concurrency, requests);
+            Result result = run(client, uri, concurrency, requests);
+            System.out.printf("%-80s %10.0f %8.1f %8.1f %8.1f %8d%n", path, result.throughput(),
+                    result.percentile(0.50), result.percentile(0.99), result.percentile(1.0), result.errors());
+        }
+    }
+
+    private static Result run(HttpClient client, URI uri, int concurrency, int requests) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+        long[] latencies = new long[requests];
+        AtomicInteger errors = new AtomicInteger();
+        List<CompletableFuture<?>> futures = new ArrayList<>(requests);
+        HttpRequest request = HttpRequest.newBuilder(uri).GET().build();
+        long started = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            inFlight.acquire();
+            int slot = i;
+            long sent = System.nanoTime();
+            futures.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        latencies[slot] = System.nanoTime() - sent;
+                        if (error != null || response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                        }
+                        inFlight.release();
+                    }));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).exceptionally(error -> null).join();
+        long elapsed = System.nanoTime() - started;
+        Arrays.sort(latencies);
+        return new Result(latencies, requests / (elapsed / 1e9), errors.get());
+    }
+
+    private record Result(long[] sortedLatencies, double throughput, int errors) {
+        double percentile(double p) {
+            int index = Math.min(sortedLatencies.length - 1, (int) Math.ceil(p * sortedLatencies.length) - 1);
+            return sortedLatencies[Math.max(index, 0)] / 1e6;
+        }
+    }
+}
@@ -1,40 +1,79 @@
 package ru.teliontech.warehousecontrol.controller;
 
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.AdditionalAnswers;
 import org.mockito.InjectMocks;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import ru.teliontech.warehousecontrol.dto.SockDto;
 import ru.teliontech.warehousecontrol.dto.SockQntDto;
+import ru.teliontech.warehousecontrol.entity.OperationType;
 import ru.teliontech.warehousecontrol.entity.Sock;
+import ru.teliontech.warehousecontrol.event.CatalogueReloadedEvent;
+import ru.teliontech.warehousecontrol.repository.ColorRepository;
+import ru.teliontech.warehousecontrol.repository.IdempotencyKeyRepository;
+import ru.teliontech.warehousecontrol.repository.MovementBucketView;
+import ru.teliontech.warehousecontrol.repository.MovementRollupRepository;
+import ru.teliontech.warehousecontrol.repository.SockImportRepository;
 import ru.teliontech.warehousecontrol.repository.SockRepository;
+import ru.teliontech.warehousecontrol.repository.StockSnapshotRepository;
+import ru.teliontech.warehousecontrol.repository.TradingActionDeadLetterRepository;
+import ru.teliontech.warehousecontrol.repository.TradingActionExportRepository;
 import ru.teliontech.warehousecontrol.repository.TradingActionRepository;
+import ru.teliontech.warehousecontrol.service.CatalogueBuffer;
+import ru.teliontech.warehousecontrol.service.IdempotencyStore;
+import ru.teliontech.warehousecontrol.service.SockCache;
 import ru.teliontech.warehousecontrol.service.SockService;
+import ru.teliontech.warehousecontrol.service.StockIndex;
+import ru.teliontech.warehousecontrol.service.StockLedger;
+import ru.teliontech.warehousecontrol.service.StockVersion;
 import ru.teliontech.warehousecontrol.utils.MappingUtils;
 
+import java.io.ByteArrayInputStream;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
+import static org.hamcrest.Matchers.endsWith;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static ru.teliontech.warehousecontrol.service.SockService.LESS;
 import static ru.teliontech.warehousecontrol.service.SockService.MORE;
 
-@WebMvcTest(controllers = SockControllerTests.class)
+@WebMvcTest(controllers = SockControllerTests.class, properties = {"warehouse.rollup.enabled=false", "warehouse.partitions.enabled=false", "warehouse.reactive.enabled=false"})
 public class SockControllerTests {
 
     @Autowired
@@ -46,27 +85,169 @@ public class SockControllerTests {
     @MockBean
     private TradingActionRepository tradingActionRepository;
 
+    @MockBean
+    private StockSnapshotRepository stockSnapshotRepository;
+
+    @MockBean
+    private MovementRollupRepository movementRollupRepository;
+
+    @MockBean
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @MockBean
+    private ColorRepository colorRepository;
+
+    @MockBean
+    private SockImportRepository sockImportRepository;
+
+    @MockBean
+    private TradingActionExportRepository tradingActionExportRepository;
+
+    @MockBean
+    private TradingActionDeadLetterRepository tradingActionDeadLetterRepository;
+
     @SpyBean
     private MappingUtils mappingUtils;
 
     @InjectMocks
     private SockController sockController;
 
+    @Autowired
+    private StockLedger stockLedger;
+
+    @Autowired
+    private StockIndex stockIndex;
+
+    @Autowired
+    private SockCache sockCache;
+
+    @Autowired
+    private StockVersion stockVersion;
+
+    @Autowired
+    private CatalogueBuffer catalogueBuffer;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
     private final String path = "/api/socks";
 
+    @BeforeEach
+    public void setUp() {
+        when(colorRepository.insertIfAbsent(anyString()))
+                .thenAnswer(invocation -> new ColorRepository.Color((short) 1, invocation.getArgument(0)));
+        stockLedger.invalidateAll();
+        stockIndex.invalidate();
+        sockCache.invalidateAll();
+        catalogueBuffer.invalidate();
+        idempotencyStore.invalidateAll();
+    }
+
     @Test
     public void testFindAllSocks() throws Exception {
-        List<Sock> socks = new ArrayList<>(List.of(
-                new Sock(1L, "white", 50, 10),
-                new Sock(2L, "white", 50, 7),
-                new Sock(3L, "red", 30, 5),
-                new Sock(4L, "white", 30, 1)
+        List<SockDto> socks = new ArrayList<>(List.of(
+                new SockDto(1L, "white", 50, 10),
+                new SockDto(2L, "white", 50, 7),
+                new SockDto(3L, "red", 30, 5),
+                new SockDto(4L, "white", 30, 1)
         ));
-        when(sockRepository.findAll()).thenReturn(socks);
-        mockMvc.perform(get(path + "/all")
+        when(sockRepository.streamAll()).thenReturn(socks.stream());
+        performAsync(get(path + "/all")
                         .contentType(MediaType.APPLICATION_JSON)
                         .accept(MediaType.APPLICATION_JSON))
-                .andExpect(status().isOk());
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(4))
+                .andExpect(jsonPath("$[2].color").value("red"));
+    }
+
+    @Test
+    public void testFindAllSocks_Positive_Gzip() throws Exception {
+        List<SockDto> socks = List.of(new SockDto(1L, "white", 50, 10));
+        when(sockRepository.streamAll()).thenReturn(socks.stream());
+        MockHttpServletResponse response = performAsync(get(path + "/all")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.ETAG, endsWith("-gzip\"")))
+                .andReturn().getResponse();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+            List<SockDto> actual = new ObjectMapper().readValue(in, new TypeReference<>() {
+            });
+            assertEquals(socks, actual);
+        }
+
+        performAsync(get(path + "/all")
+                        .header(HttpHeaders.IF_NONE_MATCH, response.getHeader(HttpHeaders.ETAG))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    public void testFindAllSocks_Positive_NotModified() throws Exception {
+        when(sockRepository.streamAll()).thenAnswer(invocation -> Stream.of(new SockDto(1L, "white", 50, 10)));
+        String etag = performAsync(get(path + "/all")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        performAsync(get(path + "/all")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+        verify(sockRepository, times(1)).streamAll();
+
+        stockVersion.onCatalogueReloaded(new CatalogueReloadedEvent());
+        performAsync(get(path + "/all")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1));
+    }
+
+    @Test
+    public void testGetSocksPage() throws Exception {
+        List<SockDto> socks = new ArrayList<>(List.of(
+                new SockDto(1L, "white", 50, 10),
+                new SockDto(2L, "red", 30, 5),
+                new SockDto(3L, "white", 30, 1)
+        ));
+        when(sockRepository.findPageAfter(any(Long.class), any(Pageable.class))).thenReturn(socks);
+        performAsync(get(path + "/all")
+                        .queryParam("size", "2")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[1].id").value(2))
+                .andExpect(jsonPath("$.nextCursor").isNotEmpty());
+    }
+
+    @Test
+    public void testStreamAllSocks() throws Exception {
+        List<SockDto> socks = List.of(
+                new SockDto(1L, "white", 50, 10),
+                new SockDto(2L, "red", 30, 5)
+        );
+        when(sockRepository.streamAll()).thenReturn(socks.stream());
+        MvcResult mvcResult = mockMvc.perform(get(path + "/all")
+                        .queryParam("format", "ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String response = mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<SockDto> actual = new ArrayList<>();
+        for (String line : response.split("\n")) {
+            actual.add(objectMapper.readValue(line, SockDto.class));
+        }
+        assertEquals(socks, actual);
     }
 
     @Test
@@ -85,9 +266,8 @@ public class SockControllerTests {
                 .mapToInt(Sock::getStock)
                 .sum();
 
-        when(sockRepository.findAllByColorAndCottonPartGreaterThan(color, cottonPart)).thenReturn(socks);
-        when(sockRepository.getStockSumByColorAndCottonPartGreaterThan(color, cottonPart)).thenReturn(expectedSum);
-        String response = mockMvc.perform(MockMvcRequestBuilders
+        when(sockRepository.findAll()).thenReturn(socks);
+        String response = performAsync(MockMvcRequestBuilders
                         .get(path)
                         .queryParam("color", color)
                         .queryParam("operation", MORE)
@@ -117,10 +297,9 @@ public class SockControllerTests {
                 .mapToInt(Sock::getStock)
                 .sum();
 
-        when(sockRepository.findAllByColorAndCottonPartLessThan(color, cottonPart)).thenReturn(socks);
-        when(sockRepository.getStockSumByColorAndCottonPartLessThan(color, cottonPart)).thenReturn(expectedSum);
+        when(sockRepository.findAll()).thenReturn(socks);
 
-        String response = mockMvc.perform(MockMvcRequestBuilders
+        String response = performAsync(MockMvcRequestBuilders
                         .get(path)
                         .queryParam("color", color)
                         .queryParam("operation", LESS)
@@ -150,8 +329,9 @@ public class SockControllerTests {
         sockObj.put("stock", sockQntDto.getStock());
 
         when(sockRepository.findByColorAndCottonPart(sockQntDto.getColor(), sockQntDto.getCottonPart())).thenReturn(socks);
+        when(sockRepository.incrementStock(sockQntDto.getId(), sockQntDto.getQuantity())).thenReturn(1);
 
-        mockMvc.perform(MockMvcRequestBuilders
+        performAsync(MockMvcRequestBuilders
                         .patch(path + "/income")
                         .content(sockObj.toString())
                         .contentType(MediaType.APPLICATION_JSON)
@@ -182,8 +362,9 @@ public class SockControllerTests {
         sockObj.put("stock", sockQntDto.getStock());
 
         when(sockRepository.findByColorAndCottonPart(sockQntDto.getColor(), sockQntDto.getCottonPart())).thenReturn(socks);
+        when(sockRepository.decrementStock(sockQntDto.getId(), sockQntDto.getQuantity())).thenReturn(1);
 
-        mockMvc.perform(MockMvcRequestBuilders
+        performAsync(MockMvcRequestBuilders
                         .patch(path + "/outcome")
                         .content(sockObj.toString())
                         .contentType(MediaType.APPLICATION_JSON)
@@ -197,12 +378,68 @@ public class SockControllerTests {
         ;
     }
 
+    @Test
+    public void testIncomeSock_Positive_IdempotentRetry() throws Exception {
+        SockQntDto sockQntDto = new SockQntDto(1L, "white", 40, 11, 0);
+        Sock sock = mappingUtils.mapToSock(sockQntDto);
+        when(sockRepository.findByColorAndCottonPart(sockQntDto.getColor(), sockQntDto.getCottonPart()))
+                .thenReturn(new ArrayList<>(List.of(sock)));
+        when(sockRepository.incrementStock(sockQntDto.getId(), sockQntDto.getQuantity())).thenReturn(1);
+        when(idempotencyKeyRepository.claim(eq("scan-1"), any(), anyInt(), anyString(), anyInt(), anyInt())).thenReturn(1);
+        String content = new ObjectMapper().writeValueAsString(sockQntDto);
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            performAsync(MockMvcRequestBuilders
+                            .patch(path + "/income")
+                            .header("Idempotency-Key", "scan-1")
+                            .content(content)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.stock").value(11));
+        }
+        verify(sockRepository, times(1)).incrementStock(sockQntDto.getId(), sockQntDto.getQuantity());
+        verify(idempotencyKeyRepository, times(1)).claim(eq("scan-1"), any(), anyInt(), anyString(), anyInt(), anyInt());
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .patch(path + "/outcome")
+                        .header("Idempotency-Key", "scan-1")
+                        .content(content)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testIncomeSocks_Positive() throws Exception {
+        SockQntDto first = new SockQntDto(1L, "white", 40, 11, 5);
+        SockQntDto second = new SockQntDto(2L, "red", 70, 3, 0);
+        for (SockQntDto sockQntDto : List.of(first, second)) {
+            Sock sock = mappingUtils.mapToSock(sockQntDto);
+            when(sockRepository.findByColorAndCottonPart(sockQntDto.getColor(), sockQntDto.getCottonPart()))
+                    .thenReturn(new ArrayList<>(List.of(sock)));
+            when(sockRepository.incrementStock(sockQntDto.getId(), sockQntDto.getQuantity())).thenReturn(1);
+        }
+
+        performAsync(MockMvcRequestBuilders
+                        .patch(path + "/income/batch")
+                        .content(new ObjectMapper().writeValueAsString(List.of(first, second)))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].stock").value(first.getStock() + first.getQuantity()))
+                .andExpect(jsonPath("$[1].stock").value(second.getStock() + second.getQuantity()))
+        ;
+    }
+
     @Test
     public void testCreateSock_Positive() throws Exception {
         SockDto sockDto = new SockDto(1L, "white", 40, 20);
         JSONObject sockObj = getJsonObject(sockDto);
+        when(sockRepository.save(any(Sock.class))).thenAnswer(AdditionalAnswers.returnsFirstArg());
 
-        mockMvc.perform(MockMvcRequestBuilders
+        performAsync(MockMvcRequestBuilders
                         .post(path)
                         .content(sockObj.toString())
                         .contentType(MediaType.APPLICATION_JSON)
@@ -227,8 +464,10 @@ public class SockControllerTests {
 
         Optional<Sock> sock = Optional.of(mappingUtils.mapToSock(sockDto));
         when(sockRepository.findById(sockDto.getId())).thenReturn(sock);
+        when(sockRepository.findCurrentById(sockDto.getId())).thenReturn(Optional.of(sockDto));
+        when(sockRepository.save(any(Sock.class))).thenAnswer(AdditionalAnswers.returnsFirstArg());
 
-        mockMvc.perform(MockMvcRequestBuilders
+        performAsync(MockMvcRequestBuilders
                         .patch(path)
                         .content(sockObj.toString())
                         .contentType(MediaType.APPLICATION_JSON)
@@ -255,8 +494,9 @@ public class SockControllerTests {
         Optional<Sock> optionalSock = Optional.of(sock);
 
         when(sockRepository.findById(any(Long.class))).thenReturn(optionalSock);
+        when(sockRepository.findCurrentById(any(Long.class))).thenReturn(Optional.of(sockDto));
 
-        mockMvc.perform(MockMvcRequestBuilders
+        performAsync(MockMvcRequestBuilders
                         .delete(path + "/3")
                         .contentType(MediaType.APPLICATION_JSON)
                         .accept(MediaType.APPLICATION_JSON))
@@ -264,6 +504,78 @@ public class SockControllerTests {
         ;
     }
 
+    @Test
+    public void testImportSocks_Positive() throws Exception {
+        when(sockImportRepository.merge()).thenReturn(new SockImportRepository.Merged(1, 0));
+
+        performAsync(MockMvcRequestBuilders
+                        .post(path + "/import")
+                        .content("color,cottonPart,quantity\nwhite,40,20\nwhite,140,20\n")
+                        .contentType("text/csv")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rows").value(2))
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.createdSocks").value(1))
+                .andExpect(jsonPath("$.errors[0].line").value(3))
+        ;
+        verify(sockImportRepository).copy(any());
+        verify(sockImportRepository).journal(any());
+    }
+
+    @Test
+    public void testGetMovements_Positive() throws Exception {
+        LocalDateTime day = LocalDateTime.of(2023, 7, 1, 0, 0);
+        when(movementRollupRepository.findDaily(3L, day, day.plusDays(2))).thenReturn(List.of(
+                bucketView(day, OperationType.INCOME, 40, 2),
+                bucketView(day.plusDays(1), OperationType.OUTCOME, 15, 3)
+        ));
+
+        performAsync(get(path + "/3/movements")
+                        .param("granularity", "day")
+                        .param("from", "2023-07-01T00:00:00")
+                        .param("to", "2023-07-03T00:00:00")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].operationType").value("INCOME"))
+                .andExpect(jsonPath("$[0].quantity").value(40))
+                .andExpect(jsonPath("$[1].operationType").value("OUTCOME"))
+                .andExpect(jsonPath("$[1].actions").value(3))
+        ;
+    }
+
+    private ResultActions performAsync(RequestBuilder requestBuilder) throws Exception {
+        MvcResult mvcResult = mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(mvcResult));
+    }
+
+    private MovementBucketView bucketView(LocalDateTime bucket, OperationType operationType, long quantity, long actions) {
+        return new MovementBucketView() {
+            @Override
+            public LocalDateTime getBucket() {
+                return bucket;
+            }
+
+            @Override
+            public int getOperationType() {
+                return operationType.ordinal();
+            }
+
+            @Override
+            public long getQuantity() {
+                return quantity;
+            }
+
+            @Override
+            public long getActions() {
+                return actions;
+            }
+        };
+    }
+
     private JSONObject getJsonObject(SockDto sockDto) throws JSONException {
         JSONObject sockObj = new JSONObject();
         sockObj.put("id", sockDto.getId());
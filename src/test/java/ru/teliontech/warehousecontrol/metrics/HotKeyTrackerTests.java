@@ -0,0 +1,91 @@
+package ru.teliontech.warehousecontrol.metrics;
+
+import org.junit.jupiter.api.Test;
+import ru.teliontech.warehousecontrol.service.SockKey;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class HotKeyTrackerTests {
+
+    @Test
+    public void testTop_Positive_ExactWhileUnderCapacity() {
+        HotKeyTracker tracker = new HotKeyTracker(8, 4);
+        for (int i = 0; i < 5; i++) {
+            tracker.record(new SockKey("red", 50));
+        }
+        tracker.record(new SockKey("white", 10));
+        List<HotKeyTracker.HotKey> top = tracker.top(1);
+        assertThat(top).containsExactly(new HotKeyTracker.HotKey(new SockKey("red", 50).toString(), 5, 0));
+        assertThat(tracker.total()).isEqualTo(6);
+    }
+
+    @Test
+    public void testTop_Positive_HeavyHittersSurviveManyColdKeys() {
+        HotKeyTracker tracker = new HotKeyTracker(16, 4);
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            if (random.nextInt(10) < 3) {
+                tracker.record(new SockKey("hot", random.nextInt(2)));
+            } else {
+                tracker.record(new SockKey("cold", random.nextInt(10_000)));
+            }
+        }
+        List<HotKeyTracker.HotKey> top = tracker.top(2);
+        assertThat(top).extracting(HotKeyTracker.HotKey::key)
+                .containsExactlyInAnyOrder(new SockKey("hot", 0).toString(), new SockKey("hot", 1).toString());
+        top.forEach(hotKey -> assertThat(hotKey.count() - hotKey.error()).isLessThanOrEqualTo(hotKey.count()).isPositive());
+    }
+
+    @Test
+    public void testRecord_Concurrent_NoCountLost() throws Exception {
+        HotKeyTracker tracker = new HotKeyTracker(64, 8);
+        int threads = 8;
+        int recordsPerThread = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < recordsPerThread; i++) {
+                    tracker.record(new SockKey("white", i % 32));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        List<HotKeyTracker.HotKey> top = tracker.top(100);
+        assertThat(top).hasSize(32).allMatch(hotKey -> hotKey.error() == 0);
+        assertThat(top.stream().mapToLong(HotKeyTracker.HotKey::count).sum()).isEqualTo((long) threads * recordsPerThread);
+        assertThat(tracker.total()).isEqualTo((long) threads * recordsPerThread);
+    }
+
+    @Test
+    public void testTop_Negative_NegativeLimit() {
+        HotKeyTracker tracker = new HotKeyTracker(4, 4);
+        Throwable thrown = catchThrowable(() -> tracker.top(-1));
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testReset_Positive() {
+        HotKeyTracker tracker = new HotKeyTracker(4, 4);
+        tracker.record(new SockKey("red", 50));
+        tracker.reset();
+        assertThat(tracker.top(10)).isEmpty();
+        assertThat(tracker.total()).isZero();
+    }
+}
@@ -0,0 +1,37 @@
+package ru.teliontech.warehousecontrol.metrics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SqlStatementCounterTests {
+
+    private final SqlStatementCounter counter = new SqlStatementCounter();
+
+    @AfterEach
+    public void tearDown() {
+        SqlStatementCounter.unbind();
+    }
+
+    @Test
+    public void testInspect_Positive_CountsBoundScopeOnly() {
+        AtomicInteger scope = new AtomicInteger();
+        counter.inspect("select 1");
+        SqlStatementCounter.bind(scope);
+        assertThat(counter.inspect("select 2")).isEqualTo("select 2");
+        counter.inspect("select 3");
+        assertThat(scope.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testPropagate_Positive_CountsOnOtherThread() {
+        AtomicInteger scope = new AtomicInteger();
+        SqlStatementCounter.bind(scope);
+        CompletableFuture.supplyAsync(SqlStatementCounter.propagate(() -> counter.inspect("select 1"))).join();
+        assertThat(scope.get()).isEqualTo(1);
+    }
+}
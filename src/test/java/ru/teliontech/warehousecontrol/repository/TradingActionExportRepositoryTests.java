@@ -0,0 +1,27 @@
+package ru.teliontech.warehousecontrol.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TradingActionExportRepositoryTests {
+
+    @Test
+    public void testExportStatement_Positive_NoFilters() {
+        String actual = TradingActionExportRepository.exportStatement(null, null, null);
+        assertThat(actual)
+                .startsWith("COPY (SELECT t.id, t.operation_time, CASE t.operation_type WHEN 0 THEN 'INCOME' WHEN 1 THEN 'OUTCOME' END")
+                .doesNotContain("WHERE")
+                .endsWith(" ORDER BY t.id) TO STDOUT (FORMAT csv, HEADER)");
+    }
+
+    @Test
+    public void testExportStatement_Positive_RendersTypedFilters() {
+        String actual = TradingActionExportRepository.exportStatement(
+                LocalDateTime.of(2023, 7, 1, 0, 0), LocalDateTime.of(2023, 8, 1, 12, 30, 15), 42L);
+        assertThat(actual).contains(" WHERE t.operation_time >= '2023-07-01T00:00:00'::timestamp" +
+                " AND t.operation_time < '2023-08-01T12:30:15'::timestamp AND t.sock_id = 42 ORDER BY t.id");
+    }
+}
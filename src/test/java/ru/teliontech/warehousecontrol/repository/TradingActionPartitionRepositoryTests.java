@@ -0,0 +1,59 @@
+package ru.teliontech.warehousecontrol.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import ru.teliontech.warehousecontrol.archive.ArchivedAction;
+import ru.teliontech.warehousecontrol.entity.OperationType;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class TradingActionPartitionRepositoryTests {
+    private static final LocalDateTime TIME = LocalDateTime.of(2023, 7, 1, 12, 0);
+
+    @Mock
+    private ResultSet rs;
+
+    @Test
+    public void testToArchivedAction_Positive() throws Exception {
+        stubRow(1, 42L, 5);
+        assertThat(TradingActionPartitionRepository.toArchivedAction(rs))
+                .isEqualTo(new ArchivedAction(7L, TIME, OperationType.OUTCOME, 42L, 5));
+    }
+
+    @Test
+    public void testToArchivedAction_Negative_NullSockId() throws Exception {
+        stubRow(1, null, 5);
+        Throwable thrown = catchThrowable(() -> TradingActionPartitionRepository.toArchivedAction(rs));
+        assertThat(thrown)
+                .isInstanceOf(DataIntegrityViolationException.class)
+                .hasMessage(String.format(TradingActionPartitionRepository.EXCMSG_NULL_COLUMN, 7L, "sock_id"));
+    }
+
+    @Test
+    public void testToArchivedAction_Negative_NullOperationType() throws Exception {
+        stubRow(null, 42L, 5);
+        Throwable thrown = catchThrowable(() -> TradingActionPartitionRepository.toArchivedAction(rs));
+        assertThat(thrown)
+                .isInstanceOf(DataIntegrityViolationException.class)
+                .hasMessage(String.format(TradingActionPartitionRepository.EXCMSG_NULL_COLUMN, 7L, "operation_type"));
+    }
+
+    private void stubRow(Integer operationType, Long sockId, Integer quantity) throws Exception {
+        when(rs.getLong(1)).thenReturn(7L);
+        when(rs.getTimestamp(2)).thenReturn(Timestamp.valueOf(TIME));
+        when(rs.getObject(3, Integer.class)).thenReturn(operationType);
+        lenient().when(rs.getObject(4, Long.class)).thenReturn(sockId);
+        lenient().when(rs.getObject(5, Integer.class)).thenReturn(quantity);
+    }
+}
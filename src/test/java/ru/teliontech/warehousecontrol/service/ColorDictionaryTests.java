@@ -0,0 +1,120 @@
+package ru.teliontech.warehousecontrol.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.teliontech.warehousecontrol.exception.InvalidArgumentException;
+import ru.teliontech.warehousecontrol.repository.ColorRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.Mockito.*;
+import static ru.teliontech.warehousecontrol.service.ColorDictionary.EXCMSG_COLOR_INVALID;
+import static ru.teliontech.warehousecontrol.service.ColorDictionary.UNKNOWN;
+
+@ExtendWith(MockitoExtension.class)
+public class ColorDictionaryTests {
+
+    @Mock
+    private ColorRepository colorRepository;
+
+    private ColorDictionary colorDictionary;
+
+    @BeforeEach
+    public void setUp() {
+        when(colorRepository.findAll()).thenReturn(List.of(
+                new ColorRepository.Color((short) 1, "white"),
+                new ColorRepository.Color((short) 2, "red")));
+        colorDictionary = new ColorDictionary(colorRepository);
+        colorDictionary.load();
+    }
+
+    @Test
+    public void testId_Positive_NormalizesName() {
+        assertThat(colorDictionary.id(" White")).isEqualTo((short) 1);
+        assertThat(colorDictionary.name((short) 2)).isEqualTo("red");
+        verify(colorRepository, never()).findByName(any());
+    }
+
+    @Test
+    public void testId_Positive_UnknownColor() {
+        when(colorRepository.findByName("purple")).thenReturn(Optional.empty());
+        assertThat(colorDictionary.id("Purple")).isEqualTo(UNKNOWN);
+    }
+
+    @Test
+    public void testIntern_Positive_AddsNewColorOnce() {
+        when(colorRepository.findByName("purple")).thenReturn(Optional.empty());
+        when(colorRepository.insertIfAbsent("purple")).thenReturn(new ColorRepository.Color((short) 300, "purple"));
+        assertThat(colorDictionary.intern("PURPLE")).isEqualTo((short) 300);
+        assertThat(colorDictionary.intern("purple")).isEqualTo((short) 300);
+        assertThat(colorDictionary.name((short) 300)).isEqualTo("purple");
+        verify(colorRepository, times(1)).insertIfAbsent("purple");
+    }
+
+    @Test
+    public void testIntern_Positive_NewColorPublishedOnCommit() {
+        when(colorRepository.findByName("purple")).thenReturn(Optional.empty());
+        when(colorRepository.insertIfAbsent("purple")).thenReturn(new ColorRepository.Color((short) 300, "purple"));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertThat(colorDictionary.intern("purple")).isEqualTo((short) 300);
+            assertThat(colorDictionary.id("Purple")).isEqualTo((short) 300);
+            assertThat(colorDictionary.name((short) 300)).isEqualTo("purple");
+            complete(TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            clearSynchronization();
+        }
+        assertThat(colorDictionary.id("purple")).isEqualTo((short) 300);
+        verify(colorRepository, times(1)).findByName("purple");
+        verify(colorRepository, times(1)).findAll();
+    }
+
+    @Test
+    public void testIntern_Negative_NewColorForgottenOnRollback() {
+        when(colorRepository.findByName("purple")).thenReturn(Optional.empty());
+        when(colorRepository.insertIfAbsent("purple")).thenReturn(new ColorRepository.Color((short) 300, "purple"));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertThat(colorDictionary.intern("purple")).isEqualTo((short) 300);
+            complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            clearSynchronization();
+        }
+        assertThat(colorDictionary.id("purple")).isEqualTo(UNKNOWN);
+        assertThat(TransactionSynchronizationManager.getResourceMap()).isEmpty();
+    }
+
+    @Test
+    public void testName_Positive_ReloadsOnMiss() {
+        when(colorRepository.findAll()).thenReturn(List.of(new ColorRepository.Color((short) 3, "green")));
+        assertThat(colorDictionary.name((short) 3)).isEqualTo("green");
+    }
+
+    @Test
+    public void testIntern_Negative_TooLong() {
+        Throwable thrown = catchThrowable(() -> colorDictionary.intern("x".repeat(21)));
+        assertThat(thrown)
+                .isInstanceOf(InvalidArgumentException.class)
+                .hasMessageContaining(EXCMSG_COLOR_INVALID);
+    }
+
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+
+    private static void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package ru.teliontech.warehousecontrol.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.teliontech.warehousecontrol.exception.ServiceOverloadedException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static ru.teliontech.warehousecontrol.service.DatabaseExecutor.EXCMSG_OVERLOADED;
+
+public class DatabaseExecutorTests {
+
+    @Test
+    public void testSubmit_Positive_InlineWhenDisabled() {
+        DatabaseExecutor databaseExecutor = new DatabaseExecutor(false, 1, 1);
+        CompletableFuture<String> future = databaseExecutor.submit(() -> Thread.currentThread().getName());
+        assertThat(future).isCompletedWithValue(Thread.currentThread().getName());
+    }
+
+    @Test
+    public void testSubmit_Positive_RunsOnPool() throws Exception {
+        DatabaseExecutor databaseExecutor = new DatabaseExecutor(true, 1, 1);
+        try {
+            String thread = databaseExecutor.submit(() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS);
+            assertThat(thread).startsWith("database-executor-");
+        } finally {
+            databaseExecutor.stop();
+        }
+    }
+
+    @Test
+    public void testSubmit_Negative_RejectsWhenQueueFull() throws Exception {
+        DatabaseExecutor databaseExecutor = new DatabaseExecutor(true, 1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CompletableFuture<Boolean> running = databaseExecutor.submit(() -> {
+                started.countDown();
+                return await(release);
+            });
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            CompletableFuture<Boolean> queued = databaseExecutor.submit(() -> true);
+            Throwable thrown = catchThrowable(() -> databaseExecutor.submit(() -> true));
+            assertThat(thrown)
+                    .isInstanceOf(ServiceOverloadedException.class)
+                    .hasMessageContaining(EXCMSG_OVERLOADED);
+            release.countDown();
+            assertThat(running.get(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(queued.get(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            release.countDown();
+            databaseExecutor.stop();
+        }
+    }
+
+    @Test
+    public void testStream_Positive_WritesFromPool() throws Exception {
+        DatabaseExecutor databaseExecutor = new DatabaseExecutor(true, 1, 1);
+        try {
+            StreamingResponseBody body = databaseExecutor.stream(outputStream ->
+                    outputStream.write(Thread.currentThread().getName().getBytes(StandardCharsets.UTF_8)));
+            ByteArrayOutputStream written = new ByteArrayOutputStream();
+            body.writeTo(written);
+            assertThat(written.toString(StandardCharsets.UTF_8)).startsWith("database-executor-");
+        } finally {
+            databaseExecutor.stop();
+        }
+    }
+
+    @Test
+    public void testStream_Negative_RejectedBeforeResponseStarts() throws Exception {
+        DatabaseExecutor databaseExecutor = new DatabaseExecutor(true, 1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            databaseExecutor.submit(() -> {
+                started.countDown();
+                return await(release);
+            });
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            databaseExecutor.submit(() -> true);
+            Throwable thrown = catchThrowable(() -> databaseExecutor.stream(outputStream -> outputStream.write(1)));
+            assertThat(thrown)
+                    .isInstanceOf(ServiceOverloadedException.class)
+                    .hasMessageContaining(EXCMSG_OVERLOADED);
+        } finally {
+            release.countDown();
+            databaseExecutor.stop();
+        }
+    }
+
+    private boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
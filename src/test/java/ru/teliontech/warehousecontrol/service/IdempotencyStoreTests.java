@@ -0,0 +1,98 @@
+package ru.teliontech.warehousecontrol.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.teliontech.warehousecontrol.dto.SockQntDto;
+import ru.teliontech.warehousecontrol.entity.IdempotencyKey;
+import ru.teliontech.warehousecontrol.entity.OperationType;
+import ru.teliontech.warehousecontrol.entity.Sock;
+import ru.teliontech.warehousecontrol.exception.InvalidArgumentException;
+import ru.teliontech.warehousecontrol.repository.IdempotencyKeyRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static ru.teliontech.warehousecontrol.service.IdempotencyStore.EXCMSG_KEY_INVALID;
+import static ru.teliontech.warehousecontrol.service.IdempotencyStore.EXCMSG_KEY_REUSED;
+
+@ExtendWith(MockitoExtension.class)
+public class IdempotencyStoreTests {
+    private static final String KEY = "scanner-7-000123";
+
+    @Mock
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    private IdempotencyStore idempotencyStore;
+
+    private final SockQntDto input = new SockQntDto(null, "white", 50, 5, 0);
+
+    @BeforeEach
+    public void setUp() {
+        idempotencyStore = new IdempotencyStore(idempotencyKeyRepository, Duration.ofHours(24), 100);
+    }
+
+    @Test
+    public void testClaim_Positive_NewKey() {
+        when(idempotencyKeyRepository.claim(eq(KEY), any(), eq(OperationType.INCOME.ordinal()), eq("white"), eq(50), eq(5)))
+                .thenReturn(1);
+        assertThat(idempotencyStore.claim(KEY, input, OperationType.INCOME)).isEmpty();
+        assertThat(idempotencyStore.replay(KEY, input, OperationType.INCOME)).isEmpty();
+    }
+
+    @Test
+    public void testReplay_Positive_CompletedKeyAnsweredFromMemory() {
+        idempotencyStore.complete(KEY, new Sock(1L, "white", 50, 105), 5, OperationType.INCOME);
+        SockQntDto actual = idempotencyStore.replay(KEY, input, OperationType.INCOME).orElseThrow();
+        assertThat(actual).isEqualTo(new SockQntDto(1L, "white", 50, 5, 105));
+        verify(idempotencyKeyRepository).complete(KEY, 1L, 105);
+        verifyNoMoreInteractions(idempotencyKeyRepository);
+    }
+
+    @Test
+    public void testClaim_Positive_KnownKeyLoadedFromDatabase() {
+        when(idempotencyKeyRepository.claim(eq(KEY), any(), anyInt(), anyString(), anyInt(), anyInt())).thenReturn(0);
+        when(idempotencyKeyRepository.findById(KEY)).thenReturn(Optional.of(
+                new IdempotencyKey(KEY, LocalDateTime.now(), OperationType.INCOME, "white", 50, 5, 1L, 105)));
+        SockQntDto actual = idempotencyStore.claim(KEY, input, OperationType.INCOME).orElseThrow();
+        assertThat(actual).isEqualTo(new SockQntDto(1L, "white", 50, 5, 105));
+        assertThat(idempotencyStore.replay(KEY, input, OperationType.INCOME)).contains(actual);
+        verify(idempotencyKeyRepository, times(1)).findById(KEY);
+    }
+
+    @Test
+    public void testReplay_Negative_KeyReusedForDifferentMovement() {
+        idempotencyStore.complete(KEY, new Sock(1L, "white", 50, 105), 5, OperationType.INCOME);
+        Throwable thrown = catchThrowable(() -> idempotencyStore.replay(KEY, input, OperationType.OUTCOME));
+        assertThat(thrown)
+                .isInstanceOf(InvalidArgumentException.class)
+                .hasMessageContaining(EXCMSG_KEY_REUSED);
+    }
+
+    @Test
+    public void testReplay_Negative_KeyTooLong() {
+        Throwable thrown = catchThrowable(() -> idempotencyStore.replay("k".repeat(65), input, OperationType.INCOME));
+        assertThat(thrown)
+                .isInstanceOf(InvalidArgumentException.class)
+                .hasMessageContaining(EXCMSG_KEY_INVALID);
+    }
+
+    @Test
+    public void testPurgeExpired_Positive() {
+        when(idempotencyKeyRepository.deleteCreatedBefore(any())).thenReturn(3);
+        idempotencyStore.purgeExpired();
+        verify(idempotencyKeyRepository).deleteCreatedBefore(argThat(before ->
+                before.isBefore(LocalDateTime.now().minusHours(23))));
+    }
+}
@@ -0,0 +1,102 @@
+package ru.teliontech.warehousecontrol.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import ru.teliontech.warehousecontrol.entity.RollupWatermark;
+import ru.teliontech.warehousecontrol.exception.InvalidArgumentException;
+import ru.teliontech.warehousecontrol.repository.MovementRollupRepository;
+import ru.teliontech.warehousecontrol.repository.TradingActionRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static ru.teliontech.warehousecontrol.service.MovementRollupService.*;
+
+@ExtendWith(MockitoExtension.class)
+public class MovementRollupServiceTests {
+
+    @Mock
+    private MovementRollupRepository movementRollupRepository;
+
+    @Mock
+    private TradingActionRepository tradingActionRepository;
+
+    private MovementRollupService movementRollupService;
+
+    @BeforeEach
+    public void setUp() {
+        movementRollupService = new MovementRollupService(movementRollupRepository, tradingActionRepository, Duration.ofMinutes(1), 100);
+    }
+
+    @Test
+    public void testRefresh_Positive_AdvancesWatermarkByBatch() {
+        LocalDateTime from = LocalDateTime.of(2023, 7, 1, 0, 0);
+        LocalDateTime boundary = from.plusMinutes(5);
+        RollupWatermark watermark = new RollupWatermark(WATERMARK, from);
+        when(movementRollupRepository.findForUpdate(WATERMARK)).thenReturn(Optional.of(watermark));
+        when(tradingActionRepository.findOperationTimes(eq(from), any(), eq(PageRequest.of(99, 1)))).thenReturn(List.of(boundary));
+        assertThat(movementRollupService.refresh()).isTrue();
+        verify(movementRollupRepository).rollUpHourly(from, boundary);
+        verify(movementRollupRepository).rollUpDaily(from, boundary);
+        assertThat(watermark.getLastOperationTime()).isEqualTo(boundary);
+    }
+
+    @Test
+    public void testRefresh_Positive_RollsUpToSettledTime() {
+        LocalDateTime from = LocalDateTime.of(2023, 7, 1, 0, 0);
+        RollupWatermark watermark = new RollupWatermark(WATERMARK, from);
+        when(movementRollupRepository.findForUpdate(WATERMARK)).thenReturn(Optional.of(watermark));
+        when(tradingActionRepository.findOperationTimes(eq(from), any(), any())).thenReturn(List.of());
+        LocalDateTime before = LocalDateTime.now().minusMinutes(1);
+        assertThat(movementRollupService.refresh()).isFalse();
+        assertThat(watermark.getLastOperationTime()).isBetween(before, LocalDateTime.now().minusMinutes(1));
+        verify(movementRollupRepository).rollUpHourly(from, watermark.getLastOperationTime());
+    }
+
+    @Test
+    public void testRefresh_Positive_CaughtUp() {
+        RollupWatermark watermark = new RollupWatermark(WATERMARK, LocalDateTime.now());
+        when(movementRollupRepository.findForUpdate(WATERMARK)).thenReturn(Optional.of(watermark));
+        assertThat(movementRollupService.refresh()).isFalse();
+        verify(movementRollupRepository, never()).rollUpHourly(any(), any());
+        verifyNoInteractions(tradingActionRepository);
+    }
+
+    @Test
+    public void testGetMovements_Positive_Hourly() {
+        LocalDateTime from = LocalDateTime.of(2023, 7, 1, 0, 0);
+        when(movementRollupRepository.findHourly(1L, from, from.plusHours(6))).thenReturn(List.of());
+        assertThat(movementRollupService.getMovements(1L, HOUR, from, from.plusHours(6))).isEmpty();
+        verify(movementRollupRepository, never()).findDaily(anyLong(), any(), any());
+    }
+
+    @Test
+    public void testGetMovements_Negative_GranularityInvalid() {
+        LocalDateTime from = LocalDateTime.of(2023, 7, 1, 0, 0);
+        Throwable thrown = catchThrowable(() -> movementRollupService.getMovements(1L, "week", from, from.plusDays(7)));
+        assertThat(thrown)
+                .isInstanceOf(InvalidArgumentException.class)
+                .hasMessageContaining(EXCMSG_GRANULARITY_INVALID);
+    }
+
+    @Test
+    public void testGetMovements_Negative_TooManyBuckets() {
+        LocalDateTime from = LocalDateTime.of(2000, 1, 1, 0, 0);
+        Throwable thrown = catchThrowable(() -> movementRollupService.getMovements(1L, HOUR, from, from.plusYears(5)));
+        assertThat(thrown)
+                .isInstanceOf(InvalidArgumentException.class)
+                .hasMessageContaining(EXCMSG_TOO_MANY_BUCKETS);
+    }
+}
@@ -0,0 +1,62 @@
+package ru.teliontech.warehousecontrol.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.teliontech.warehousecontrol.repository.TradingActionPartitionRepository;
+
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PartitionMaintenanceJobTests {
+
+    @Mock
+    private TradingActionPartitionRepository partitionRepository;
+
+    @Mock
+    private TradingActionArchiveService archiveService;
+
+    @Test
+    public void testMaintain_Positive_CreatesMissingMonths() {
+        YearMonth current = YearMonth.now();
+        when(partitionRepository.findPartitions()).thenReturn(List.of(current, current.plusMonths(1)));
+        new PartitionMaintenanceJob(partitionRepository, archiveService, 3, 0, true).maintain();
+        verify(partitionRepository).createPartition(current.plusMonths(2));
+        verify(partitionRepository).createPartition(current.plusMonths(3));
+        verify(partitionRepository, times(2)).createPartition(any());
+        verify(partitionRepository, never()).detachPartition(any());
+    }
+
+    @Test
+    public void testMaintain_Positive_DetachesExpiredMonths() {
+        YearMonth current = YearMonth.now();
+        when(partitionRepository.findPartitions()).thenReturn(List.of(
+                current.minusMonths(14), current.minusMonths(13), current.minusMonths(12), current.minusMonths(11), current));
+        new PartitionMaintenanceJob(partitionRepository, archiveService, 0, 12, true).maintain();
+        verify(partitionRepository).detachPartition(current.minusMonths(14));
+        verify(partitionRepository).detachPartition(current.minusMonths(13));
+        verify(partitionRepository, times(2)).detachPartition(any());
+        verify(partitionRepository, never()).createPartition(any());
+    }
+
+    @Test
+    public void testMaintain_Positive_ExportsAndDropsDetached() {
+        YearMonth archived = YearMonth.of(2023, 6);
+        YearMonth exportedEarlier = YearMonth.of(2023, 7);
+        when(partitionRepository.findPartitions()).thenReturn(List.of());
+        when(partitionRepository.findArchivedPartitions()).thenReturn(List.of(archived, exportedEarlier));
+        when(archiveService.exists("trading_actions_p202306")).thenReturn(false);
+        when(archiveService.exists("trading_actions_p202307")).thenReturn(true);
+        new PartitionMaintenanceJob(partitionRepository, archiveService, -1, 0, true).maintain();
+        verify(archiveService).export(eq("trading_actions_p202306"), any());
+        verify(archiveService, never()).export(eq("trading_actions_p202307"), any());
+        verify(partitionRepository).dropArchived(archived);
+        verify(partitionRepository).dropArchived(exportedEarlier);
+    }
+}
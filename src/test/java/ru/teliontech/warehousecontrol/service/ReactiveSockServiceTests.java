@@ -0,0 +1,70 @@
+package ru.teliontech.warehousecontrol.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.teliontech.warehousecontrol.dto.SockDto;
+import ru.teliontech.warehousecontrol.exception.EntityNotFoundException;
+import ru.teliontech.warehousecontrol.repository.ReactiveSockRepository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.Mockito.*;
+import static ru.teliontech.warehousecontrol.service.SockService.EXCMSG_NOT_FOUND;
+
+@ExtendWith(MockitoExtension.class)
+public class ReactiveSockServiceTests {
+
+    @Mock
+    private ReactiveSockRepository reactiveSockRepository;
+
+    private ReactiveSockService reactiveSockService;
+
+    @BeforeEach
+    public void setUp() {
+        reactiveSockService = new ReactiveSockService(reactiveSockRepository);
+    }
+
+    @Test
+    public void testGetAllSocks_Positive() {
+        List<SockDto> expected = List.of(new SockDto(1L, "white", 50, 100), new SockDto(2L, "red", 20, 0));
+        when(reactiveSockRepository.findAll()).thenReturn(Flux.fromIterable(expected));
+        assertThat(reactiveSockService.getAllSocks().collectList().block()).isEqualTo(expected);
+    }
+
+    @Test
+    public void testGetCountSocksWithParams_Positive_Between() {
+        when(reactiveSockRepository.sum("white", 30, 60)).thenReturn(Mono.just(new StockIndex.Totals(150, 2)));
+        Integer actual = reactiveSockService.getCountSocksWithParams("white", "between", 30, 60).block();
+        assertThat(actual).isEqualTo(150);
+    }
+
+    @Test
+    public void testGetCountSocksWithParams_Positive_MoreThan() {
+        when(reactiveSockRepository.sum("white", 51, 100)).thenReturn(Mono.just(new StockIndex.Totals(0, 1)));
+        Integer actual = reactiveSockService.getCountSocksWithParams("white", "moreThan", 50, null).block();
+        assertThat(actual).isZero();
+    }
+
+    @Test
+    public void testGetCountSocksWithParams_Negative_NothingMatches() {
+        when(reactiveSockRepository.sum("white", 50, 50)).thenReturn(Mono.just(new StockIndex.Totals(0, 0)));
+        Throwable thrown = catchThrowable(() -> reactiveSockService.getCountSocksWithParams("white", "equal", 50, null).block());
+        assertThat(thrown)
+                .isInstanceOf(EntityNotFoundException.class)
+                .hasMessageContaining(EXCMSG_NOT_FOUND);
+    }
+
+    @Test
+    public void testGetCountSocksWithParams_Negative_UnknownOperation() {
+        Throwable thrown = catchThrowable(() -> reactiveSockService.getCountSocksWithParams("white", "around", 50, null));
+        assertThat(thrown).isInstanceOf(EntityNotFoundException.class);
+        verifyNoInteractions(reactiveSockRepository);
+    }
+}
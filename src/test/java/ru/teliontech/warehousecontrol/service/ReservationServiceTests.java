@@ -0,0 +1,130 @@
+package ru.teliontech.warehousecontrol.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.teliontech.warehousecontrol.dto.ReservationDto;
+import ru.teliontech.warehousecontrol.dto.ReservationRequestDto;
+import ru.teliontech.warehousecontrol.dto.SockQntDto;
+import ru.teliontech.warehousecontrol.entity.OperationType;
+import ru.teliontech.warehousecontrol.entity.Sock;
+import ru.teliontech.warehousecontrol.exception.EntityNotFoundException;
+import ru.teliontech.warehousecontrol.exception.InvalidArgumentException;
+import ru.teliontech.warehousecontrol.exception.NegativeStockException;
+import ru.teliontech.warehousecontrol.metrics.HotKeyTracker;
+import ru.teliontech.warehousecontrol.repository.ColorRepository;
+import ru.teliontech.warehousecontrol.repository.IdempotencyKeyRepository;
+import ru.teliontech.warehousecontrol.repository.SockRepository;
+import ru.teliontech.warehousecontrol.repository.TradingActionDeadLetterRepository;
+import ru.teliontech.warehousecontrol.repository.TradingActionRepository;
+import ru.teliontech.warehousecontrol.utils.MappingUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+import static ru.teliontech.warehousecontrol.service.ReservationService.EXCMSG_RESERVATION_NOT_FOUND;
+import static ru.teliontech.warehousecontrol.service.ReservationService.EXCMSG_TTL_NOT_RANGE;
+import static ru.teliontech.warehousecontrol.service.SockService.EXCMSG_QUANTITY_BIGGER_THAN_STOCK;
+
+@ExtendWith(MockitoExtension.class)
+public class ReservationServiceTests {
+
+    @Mock
+    private SockRepository sockRepository;
+
+    @Mock
+    private TradingActionRepository tradingActionRepository;
+
+    @Mock
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Mock
+    private ColorRepository colorRepository;
+
+    private StockLedger stockLedger;
+    private SockService sockService;
+    private ReservationService reservationService;
+
+    private final Sock sock = new Sock(1L, "white", 50, 10);
+
+    @BeforeEach
+    public void setUp() {
+        SockCache sockCache = new SockCache(sockRepository, 100, Duration.ofMinutes(1));
+        stockLedger = new StockLedger(sockRepository, sockCache, 16);
+        sockService = new SockService(sockRepository, new TradingActionJournal(tradingActionRepository,
+                new TradingActionDeadLetterRepository(null), false, 1, 1, Duration.ZERO, Duration.ZERO),
+                new MappingUtils(), stockLedger, new StockIndex(sockRepository, stockLedger), sockCache, new HotKeyTracker(16, 4),
+                new IdempotencyStore(idempotencyKeyRepository, Duration.ofHours(24), 100),
+                new ColorDictionary(colorRepository), event -> {
+        });
+        reservationService = new ReservationService(sockService, stockLedger, Duration.ofMinutes(15), Duration.ofHours(1), Duration.ofSeconds(1));
+        lenient().when(sockRepository.findByColorAndCottonPart(sock.getColor(), sock.getCottonPart()))
+                .thenReturn(new ArrayList<>(List.of(sock)));
+    }
+
+    @Test
+    public void testReserve_Positive_HoldsAgainstOutcome() {
+        ReservationDto reservation = reservationService.reserve(new ReservationRequestDto("white", 50, 7, null));
+        assertThat(reservation.getAvailable()).isEqualTo(3);
+        assertThat(reservationService.available("white", 50)).isEqualTo(3);
+
+        Throwable thrown = catchThrowable(() -> sockService.outcome(new SockQntDto(null, "white", 50, 4, 0)));
+        assertThat(thrown)
+                .isInstanceOf(NegativeStockException.class)
+                .hasMessageContaining(EXCMSG_QUANTITY_BIGGER_THAN_STOCK);
+        Throwable overbooked = catchThrowable(() -> reservationService.reserve(new ReservationRequestDto("white", 50, 4, null)));
+        assertThat(overbooked).isInstanceOf(NegativeStockException.class);
+        verify(sockRepository, never()).decrementStock(anyLong(), anyInt());
+    }
+
+    @Test
+    public void testConfirm_Positive_ShipsReservedQuantity() {
+        when(sockRepository.decrementStock(sock.getId(), 7)).thenReturn(1);
+        ReservationDto reservation = reservationService.reserve(new ReservationRequestDto("white", 50, 7, null));
+        SockQntDto shipped = reservationService.confirm(reservation.getId());
+        assertThat(shipped.getStock()).isEqualTo(3);
+        assertThat(stockLedger.reserved(new SockKey("white", 50))).isZero();
+        assertThat(reservationService.available("white", 50)).isEqualTo(3);
+        verify(tradingActionRepository).save(argThat(action ->
+                action.getOperationType() == OperationType.OUTCOME && action.getQuantity() == 7));
+
+        Throwable thrown = catchThrowable(() -> reservationService.confirm(reservation.getId()));
+        assertThat(thrown)
+                .isInstanceOf(EntityNotFoundException.class)
+                .hasMessageContaining(EXCMSG_RESERVATION_NOT_FOUND);
+    }
+
+    @Test
+    public void testRelease_Positive() {
+        ReservationDto reservation = reservationService.reserve(new ReservationRequestDto("white", 50, 7, null));
+        assertThat(reservationService.release(reservation.getId()).getAvailable()).isEqualTo(10);
+        assertThat(reservationService.openReservations()).isZero();
+    }
+
+    @Test
+    public void testExpire_Positive_ReleasesHold() {
+        reservationService.reserve(new ReservationRequestDto("white", 50, 7, 60L));
+        reservationService.expire(System.currentTimeMillis() + 30_000);
+        assertThat(reservationService.available("white", 50)).isEqualTo(3);
+        reservationService.expire(System.currentTimeMillis() + 61_000);
+        assertThat(reservationService.available("white", 50)).isEqualTo(10);
+        assertThat(reservationService.openReservations()).isZero();
+    }
+
+    @Test
+    public void testReserve_Negative_TtlTooLong() {
+        Throwable thrown = catchThrowable(() -> reservationService.reserve(new ReservationRequestDto("white", 50, 1, 7_200L)));
+        assertThat(thrown)
+                .isInstanceOf(InvalidArgumentException.class)
+                .hasMessageContaining(EXCMSG_TTL_NOT_RANGE);
+    }
+}
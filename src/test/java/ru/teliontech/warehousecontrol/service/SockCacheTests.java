@@ -0,0 +1,89 @@
+package ru.teliontech.warehousecontrol.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.teliontech.warehousecontrol.entity.Sock;
+import ru.teliontech.warehousecontrol.event.CatalogueReloadedEvent;
+import ru.teliontech.warehousecontrol.event.SockChangedEvent;
+import ru.teliontech.warehousecontrol.exception.DuplicateSocksException;
+import ru.teliontech.warehousecontrol.repository.SockRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.Mockito.*;
+import static ru.teliontech.warehousecontrol.service.SockService.EXCMSG_DUPLICATE_ENTITY;
+
+@ExtendWith(MockitoExtension.class)
+public class SockCacheTests {
+
+    @Mock
+    private SockRepository sockRepository;
+
+    private SockCache sockCache;
+
+    @BeforeEach
+    public void setUp() {
+        sockCache = new SockCache(sockRepository, 100, Duration.ofMinutes(1));
+    }
+
+    @Test
+    public void testFindById_Positive_LoadsOnceAndReturnsCopies() {
+        Sock sock = new Sock(1L, "white", 50, 100);
+        when(sockRepository.findById(1L)).thenReturn(Optional.of(sock));
+        Sock first = sockCache.findById(1L).orElseThrow();
+        first.setStock(0);
+        Sock second = sockCache.findById(1L).orElseThrow();
+        assertThat(second).isEqualTo(sock).isNotSameAs(sock);
+        verify(sockRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    public void testFindById_Positive_AbsentIsNotCached() {
+        when(sockRepository.findById(1L)).thenReturn(Optional.empty());
+        assertThat(sockCache.findById(1L)).isEmpty();
+        assertThat(sockCache.findById(1L)).isEmpty();
+        verify(sockRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    public void testOnSockChanged_Positive_EvictsBeforeAndAfter() {
+        Sock before = new Sock(1L, "white", 50, 100);
+        Sock after = new Sock(1L, "white", 60, 100);
+        when(sockRepository.findById(1L)).thenReturn(Optional.of(before), Optional.of(after));
+        when(sockRepository.findByColorAndCottonPart("white", 50)).thenReturn(new ArrayList<>(List.of(before)));
+        sockCache.findById(1L);
+        sockCache.findByKey(new SockKey("white", 50));
+        sockCache.onSockChanged(new SockChangedEvent(before, after));
+        assertThat(sockCache.findById(1L)).contains(after);
+        when(sockRepository.findByColorAndCottonPart("white", 50)).thenReturn(new ArrayList<>());
+        assertThat(sockCache.findByKey(new SockKey("white", 50))).isEmpty();
+    }
+
+    @Test
+    public void testOnCatalogueReloaded_Positive_InvalidatesAll() {
+        Sock sock = new Sock(1L, "white", 50, 100);
+        when(sockRepository.findById(1L)).thenReturn(Optional.of(sock));
+        sockCache.findById(1L);
+        sockCache.onCatalogueReloaded(new CatalogueReloadedEvent());
+        sockCache.findById(1L);
+        verify(sockRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    public void testFindByKey_Negative_Duplicates() {
+        when(sockRepository.findByColorAndCottonPart("white", 50)).thenReturn(new ArrayList<>(List.of(
+                new Sock(1L, "white", 50, 100), new Sock(2L, "white", 50, 10))));
+        Throwable thrown = catchThrowable(() -> sockCache.findByKey(new SockKey("white", 50)));
+        assertThat(thrown)
+                .isInstanceOf(DuplicateSocksException.class)
+                .hasMessageContaining(EXCMSG_DUPLICATE_ENTITY);
+    }
+}
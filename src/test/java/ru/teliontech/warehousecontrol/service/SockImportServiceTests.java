@@ -0,0 +1,157 @@
+package ru.teliontech.warehousecontrol.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.teliontech.warehousecontrol.dto.ImportErrorDto;
+import ru.teliontech.warehousecontrol.dto.ImportReportDto;
+import ru.teliontech.warehousecontrol.event.CatalogueReloadedEvent;
+import ru.teliontech.warehousecontrol.repository.SockImportRepository;
+
+import java.io.BufferedReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static ru.teliontech.warehousecontrol.service.SockImportService.EXCMSG_ROW_MALFORMED;
+import static ru.teliontech.warehousecontrol.service.SockService.EXCMSG_COTTONPART_NOT_RANGE;
+import static ru.teliontech.warehousecontrol.service.SockService.EXCMSG_QUANTITY_LESS_THAN_ZERO;
+
+@ExtendWith(MockitoExtension.class)
+public class SockImportServiceTests {
+
+    @Mock
+    private SockImportRepository sockImportRepository;
+
+    @Mock
+    private ColorDictionary colorDictionary;
+
+    @Mock
+    private StockLedger stockLedger;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private final List<String> copied = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        lenient().when(colorDictionary.intern(anyString())).thenAnswer(invocation ->
+                ColorDictionary.normalize(invocation.getArgument(0)).equals("white") ? (short) 1 : (short) 2);
+        lenient().when(sockImportRepository.copy(any())).thenAnswer(invocation -> {
+            List<String> rows = new BufferedReader(invocation.<Reader>getArgument(0)).lines().collect(Collectors.toList());
+            copied.addAll(rows);
+            return (long) rows.size();
+        });
+        lenient().when(stockLedger.rewriteAll(any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+        lenient().when(sockImportRepository.merge()).thenReturn(new SockImportRepository.Merged(1, 1));
+    }
+
+    @Test
+    public void testImportCsv_Positive() {
+        ImportReportDto actual = service(1).importCsv(new StringReader("""
+                color,cottonPart,quantity
+                white,50,10
+                "Red",30, 5
+                """));
+        assertThat(actual.getRows()).isEqualTo(2);
+        assertThat(actual.getImported()).isEqualTo(2);
+        assertThat(actual.getRejected()).isZero();
+        assertThat(actual.getCreatedSocks()).isEqualTo(1);
+        assertThat(actual.getUpdatedSocks()).isEqualTo(1);
+        assertThat(copied).containsExactly("2,1,50,10", "3,2,30,5");
+        verify(sockImportRepository).createStaging();
+        verify(sockImportRepository, times(2)).copy(any());
+        verify(sockImportRepository).journal(any());
+        verify(eventPublisher).publishEvent(any(CatalogueReloadedEvent.class));
+    }
+
+    @Test
+    public void testImportCsv_Positive_CopiesInChunks() {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 7; i++) {
+            csv.append("white,").append(i).append(",1\n");
+        }
+        ImportReportDto actual = service(3).importCsv(new StringReader(csv.toString()));
+        assertThat(actual.getImported()).isEqualTo(7);
+        assertThat(copied).hasSize(7).first().isEqualTo("1,1,0,1");
+        verify(sockImportRepository, times(3)).copy(any());
+    }
+
+    @Test
+    public void testImportCsv_Negative_ReportsInvalidRows() {
+        ImportReportDto actual = service(100).importCsv(new StringReader("""
+                white,50,10
+                white,150,10
+                white,50,-1
+
+                white,fifty,10
+                ,50,10
+                white,50
+                """));
+        assertThat(actual.getRows()).isEqualTo(6);
+        assertThat(actual.getImported()).isEqualTo(1);
+        assertThat(actual.getRejected()).isEqualTo(5);
+        assertThat(actual.getErrors()).containsExactly(
+                new ImportErrorDto(2, EXCMSG_COTTONPART_NOT_RANGE),
+                new ImportErrorDto(3, EXCMSG_QUANTITY_LESS_THAN_ZERO),
+                new ImportErrorDto(5, EXCMSG_ROW_MALFORMED),
+                new ImportErrorDto(6, ColorDictionary.EXCMSG_COLOR_INVALID),
+                new ImportErrorDto(7, EXCMSG_ROW_MALFORMED));
+        assertThat(copied).containsExactly("1,1,50,10");
+        verify(colorDictionary, times(1)).intern(anyString());
+    }
+
+    @Test
+    public void testImportCsv_Negative_NothingValid() {
+        ImportReportDto actual = service(100).importCsv(new StringReader("white,101,1\n"));
+        assertThat(actual.getImported()).isZero();
+        assertThat(actual.getRejected()).isEqualTo(1);
+        verify(sockImportRepository, never()).copy(any());
+        verify(sockImportRepository, never()).merge();
+        verifyNoInteractions(stockLedger, eventPublisher);
+    }
+
+    @Test
+    public void testImportCsv_Negative_ErrorListIsCapped() {
+        ImportReportDto actual = new SockImportService(sockImportRepository, colorDictionary, stockLedger,
+                Jackson2ObjectMapperBuilder.json().build(), eventPublisher, 100, 2)
+                .importCsv(new StringReader("white,-1,1\nwhite,-2,1\nwhite,-3,1\n"));
+        assertThat(actual.getRejected()).isEqualTo(3);
+        assertThat(actual.getErrors()).extracting(ImportErrorDto::getLine).containsExactly(1L, 2L);
+    }
+
+    @Test
+    public void testImportNdjson_Positive() {
+        ImportReportDto actual = service(100).importNdjson(new StringReader("""
+                {"color":"white","cottonPart":50,"quantity":10}
+                {"id":7,"color":"red","cottonPart":30,"stock":5}
+                {"color":"white","cottonPart":50
+                """));
+        assertThat(actual.getImported()).isEqualTo(2);
+        assertThat(actual.getErrors()).containsExactly(new ImportErrorDto(3, EXCMSG_ROW_MALFORMED));
+        assertThat(copied).containsExactly("1,1,50,10", "2,2,30,5");
+    }
+
+    @Test
+    public void testSplitCsv_Positive_QuotedFields() {
+        assertThat(SockImportService.splitCsv("\"a,b\",\"say \"\"hi\"\"\",3"))
+                .containsExactly("a,b", "say \"hi\"", "3");
+    }
+
+    private SockImportService service(int chunkSize) {
+        return new SockImportService(sockImportRepository, colorDictionary, stockLedger,
+                Jackson2ObjectMapperBuilder.json().build(), eventPublisher, chunkSize, 1000);
+    }
+}
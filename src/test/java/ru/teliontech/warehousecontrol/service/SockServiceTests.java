@@ -1,26 +1,53 @@
 package ru.teliontech.warehousecontrol.service;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import ru.teliontech.warehousecontrol.dto.PageDto;
 import ru.teliontech.warehousecontrol.dto.SockDto;
 import ru.teliontech.warehousecontrol.dto.SockQntDto;
+import ru.teliontech.warehousecontrol.dto.TransferDto;
+import ru.teliontech.warehousecontrol.entity.IdempotencyKey;
+import ru.teliontech.warehousecontrol.entity.OperationType;
 import ru.teliontech.warehousecontrol.entity.Sock;
+import ru.teliontech.warehousecontrol.event.SockChangedEvent;
+import ru.teliontech.warehousecontrol.exception.ConcurrentChangeException;
 import ru.teliontech.warehousecontrol.exception.DuplicateSocksException;
 import ru.teliontech.warehousecontrol.exception.EntityNotFoundException;
 import ru.teliontech.warehousecontrol.exception.InvalidArgumentException;
 import ru.teliontech.warehousecontrol.exception.NegativeStockException;
+import ru.teliontech.warehousecontrol.metrics.HotKeyTracker;
+import ru.teliontech.warehousecontrol.repository.ColorRepository;
+import ru.teliontech.warehousecontrol.repository.IdempotencyKeyRepository;
 import ru.teliontech.warehousecontrol.repository.SockRepository;
+import ru.teliontech.warehousecontrol.repository.TradingActionDeadLetterRepository;
 import ru.teliontech.warehousecontrol.repository.TradingActionRepository;
+import ru.teliontech.warehousecontrol.utils.KeysetPages;
 import ru.teliontech.warehousecontrol.utils.MappingUtils;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static ru.teliontech.warehousecontrol.service.SockService.*;
 
@@ -33,20 +60,72 @@ public class SockServiceTests {
     @Mock
     TradingActionRepository tradingActionRepository;
 
+    @Mock
+    IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Mock
+    ColorRepository colorRepository;
+
     @Spy
     private MappingUtils mappingUtils;
 
-    @InjectMocks
     private SockService sockService;
 
+    @BeforeEach
+    public void setUp() {
+        lenient().when(colorRepository.insertIfAbsent(anyString()))
+                .thenAnswer(invocation -> new ColorRepository.Color((short) 1, invocation.getArgument(0)));
+        TradingActionJournal tradingActionJournal = new TradingActionJournal(tradingActionRepository,
+                new TradingActionDeadLetterRepository(null), false, 1, 1, Duration.ZERO, Duration.ZERO);
+        SockCache sockCache = new SockCache(sockRepository, 100, Duration.ofMinutes(1));
+        StockLedger stockLedger = new StockLedger(sockRepository, sockCache, 16);
+        StockIndex stockIndex = new StockIndex(sockRepository, stockLedger);
+        sockService = new SockService(sockRepository, tradingActionJournal, mappingUtils,
+                stockLedger, stockIndex, sockCache, new HotKeyTracker(16, 4),
+                new IdempotencyStore(idempotencyKeyRepository, Duration.ofHours(24), 100),
+                new ColorDictionary(colorRepository),
+                event -> stockIndex.onSockChanged((SockChangedEvent) event));
+    }
+
     @Test
-    public void testGetAllSocks_Positive() {
-        List<Sock> sockList = getSockList();
-        List<SockDto> expectedSockDtoList = convertSockListToSockDtoList(sockList);
-        when(sockRepository.findAll()).thenReturn(sockList);
-        List<SockDto> actualSockDtoList = sockService.getAllSocks();
-        assertThat(actualSockDtoList)
-                .containsExactlyInAnyOrderElementsOf(expectedSockDtoList);
+    public void testForEachSock_Positive() {
+        List<SockDto> expected = convertSockListToSockDtoList(getSockList());
+        when(sockRepository.streamAll()).thenReturn(expected.stream());
+        List<SockDto> actual = new ArrayList<>();
+        sockService.forEachSock(actual::add);
+        assertThat(actual).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    public void testGetSocksPage_Positive_WalksAllPages() {
+        List<SockDto> all = convertSockListToSockDtoList(getSockList());
+        when(sockRepository.findPageAfter(eq(0L), any(Pageable.class))).thenReturn(new ArrayList<>(all.subList(0, 3)));
+        when(sockRepository.findPageAfter(eq(2L), any(Pageable.class))).thenReturn(new ArrayList<>(all.subList(2, 4)));
+
+        PageDto<SockDto> first = sockService.getSocksPage(null, 2);
+        assertThat(first.getItems()).containsExactlyElementsOf(all.subList(0, 2));
+        assertThat(first.getNextCursor()).isNotNull();
+
+        PageDto<SockDto> second = sockService.getSocksPage(first.getNextCursor(), 2);
+        assertThat(second.getItems()).containsExactlyElementsOf(all.subList(2, 4));
+        assertThat(second.getNextCursor()).isNull();
+        verify(sockRepository, times(2)).findPageAfter(anyLong(), argThat(pageable -> pageable.getOffset() == 0 && pageable.getPageSize() == 3));
+    }
+
+    @Test
+    public void testGetSocksPage_Negative_MalformedCursor() {
+        Throwable thrown = catchThrowable(() -> sockService.getSocksPage("not a cursor", 10));
+        assertThat(thrown)
+                .isInstanceOf(InvalidArgumentException.class)
+                .hasMessageContaining(KeysetPages.EXCMSG_INVALID_CURSOR);
+    }
+
+    @Test
+    public void testGetSocksPage_Negative_SizeOverRange() {
+        Throwable thrown = catchThrowable(() -> sockService.getSocksPage(null, KeysetPages.MAX_PAGE_SIZE + 1));
+        assertThat(thrown)
+                .isInstanceOf(InvalidArgumentException.class)
+                .hasMessageContaining(KeysetPages.EXCMSG_PAGE_SIZE_NOT_RANGE);
     }
 
     @Test
@@ -58,8 +137,7 @@ public class SockServiceTests {
                 .filter(sock -> sock.getColor().equals(color) && sock.getCottonPart() > cottonPartGreaterThan)
                 .mapToInt(Sock::getStock)
                 .sum();
-        when(sockRepository.findAllByColorAndCottonPartGreaterThan(color, cottonPartGreaterThan)).thenReturn(sockList);
-        when(sockRepository.getStockSumByColorAndCottonPartGreaterThan(color, cottonPartGreaterThan)).thenReturn(expectedSum);
+        when(sockRepository.findAll()).thenReturn(sockList);
         Integer actualSum = sockService.getCountSocksWithParams(color, MORE, cottonPartGreaterThan).orElse(null);
         assertThat(actualSum).isEqualTo(expectedSum);
     }
@@ -73,12 +151,57 @@ public class SockServiceTests {
                 .filter(sock -> sock.getColor().equals(color) && sock.getCottonPart() < cottonPartLessThan)
                 .mapToInt(Sock::getStock)
                 .sum();
-        when(sockRepository.findAllByColorAndCottonPartLessThan(color, cottonPartLessThan)).thenReturn(sockList);
-        when(sockRepository.getStockSumByColorAndCottonPartLessThan(color, cottonPartLessThan)).thenReturn(expectedSum);
+        when(sockRepository.findAll()).thenReturn(sockList);
         Integer actualSum = sockService.getCountSocksWithParams(color, LESS, cottonPartLessThan).orElse(null);
         assertThat(actualSum).isEqualTo(expectedSum);
     }
 
+    @Test
+    public void testGetCountSocksWithParams_Positive_OperationIsEqual() {
+        when(sockRepository.findAll()).thenReturn(getSockList());
+        Integer actualSum = sockService.getCountSocksWithParams("white", EQUAL, 90).orElse(null);
+        assertThat(actualSum).isEqualTo(7);
+    }
+
+    @Test
+    public void testGetCountSocksWithParams_Positive_OperationIsBetween() {
+        when(sockRepository.findAll()).thenReturn(getSockList());
+        Integer actualSum = sockService.getCountSocksWithParams("white", BETWEEN, 20, 50).orElse(null);
+        assertThat(actualSum).isEqualTo(13);
+    }
+
+    @Test
+    public void testGetCountSocksWithParams_Negative_BetweenWithoutUpperBound() {
+        Throwable thrown = catchThrowable(() -> sockService.getCountSocksWithParams("white", BETWEEN, 20));
+        assertThat(thrown)
+                .isInstanceOf(InvalidArgumentException.class)
+                .hasMessageContaining(EXCMSG_COTTONPART_TO_INVALID);
+    }
+
+    @Test
+    public void testGetCountSocksWithParams_Positive_MaintainedByMovementsAndCatalogueChanges() {
+        List<Sock> sockList = getSockList();
+        Sock sock = sockList.get(0);
+        when(sockRepository.findAll()).thenReturn(sockList);
+        when(sockRepository.findByColorAndCottonPart(sock.getColor(), sock.getCottonPart())).thenReturn(new ArrayList<>(List.of(sock)));
+        when(sockRepository.incrementStock(sock.getId(), 5)).thenReturn(1);
+        when(sockRepository.findById(sock.getId())).thenReturn(Optional.of(sock));
+        when(sockRepository.findCurrentById(sock.getId())).thenReturn(Optional.of(new SockDto(sock.getId(), sock.getColor(), sock.getCottonPart(), 17)));
+        when(sockRepository.findById(5L)).thenReturn(Optional.empty());
+        when(sockRepository.save(any(Sock.class))).thenAnswer(AdditionalAnswers.returnsFirstArg());
+        assertThat(sockService.getCountSocksWithParams("white", MORE, 40)).contains(19);
+
+        sockService.income(mappingUtils.mapToSockQntDto(sock, 5));
+        assertThat(sockService.getCountSocksWithParams("white", MORE, 40)).contains(24);
+
+        sockService.createSock(new SockDto(5L, "white", 60, 100));
+        assertThat(sockService.getCountSocksWithParams("white", MORE, 40)).contains(124);
+
+        sockService.deleteSock(sock.getId());
+        assertThat(sockService.getCountSocksWithParams("white", MORE, 40)).contains(107);
+        verify(sockRepository, times(1)).findAll();
+    }
+
     @Test
     public void testGetCountSocksWithParams_Negative_EntityNotFound() {
         String color = "blue";
@@ -131,6 +254,7 @@ public class SockServiceTests {
         expected.setQuantity(sockQntDto.getQuantity());
         expected.setStock(sock.getStock() + sockQntDto.getQuantity());
         when(sockRepository.findByColorAndCottonPart(sock.getColor(), sock.getCottonPart())).thenReturn(socks);
+        when(sockRepository.incrementStock(sock.getId(), sockQntDto.getQuantity())).thenReturn(1);
         SockQntDto actual = sockService.income(sockQntDto).orElseThrow();
         assertThat(actual).isEqualTo(expected);
     }
@@ -147,10 +271,28 @@ public class SockServiceTests {
         expected.setQuantity(sockQntDto.getQuantity());
         expected.setStock(sock.getStock() - sockQntDto.getQuantity());
         when(sockRepository.findByColorAndCottonPart(sock.getColor(), sock.getCottonPart())).thenReturn(socks);
+        when(sockRepository.decrementStock(sock.getId(), sockQntDto.getQuantity())).thenReturn(1);
         SockQntDto actual = sockService.outcome(sockQntDto).orElseThrow();
         assertThat(actual).isEqualTo(expected);
     }
 
+    @Test
+    public void testIncome_Positive_IdempotencyKeyReplaysFirstResult() {
+        Sock sock = getSockList().get(0);
+        SockQntDto sockQntDto = mappingUtils.mapToSockQntDto(sock, 7);
+        when(idempotencyKeyRepository.claim(eq("key-1"), any(), eq(OperationType.INCOME.ordinal()), eq(sock.getColor()),
+                eq(sock.getCottonPart()), eq(7))).thenReturn(1, 0);
+        when(sockRepository.findByColorAndCottonPart(sock.getColor(), sock.getCottonPart())).thenReturn(new ArrayList<>(List.of(sock)));
+        when(sockRepository.incrementStock(sock.getId(), 7)).thenReturn(1);
+        SockQntDto first = sockService.income(sockQntDto, "key-1").orElseThrow();
+        verify(idempotencyKeyRepository).complete("key-1", sock.getId(), sock.getStock() + 7);
+        when(idempotencyKeyRepository.findById("key-1")).thenReturn(Optional.of(new IdempotencyKey("key-1",
+                LocalDateTime.now(), OperationType.INCOME, sock.getColor(), sock.getCottonPart(), 7, sock.getId(), first.getStock())));
+        SockQntDto second = sockService.income(sockQntDto, "key-1").orElseThrow();
+        assertThat(second).isEqualTo(first);
+        verify(sockRepository, times(1)).incrementStock(sock.getId(), 7);
+    }
+
     @Test
     public void testOutcome_Negative_DuplicateSocks() {
         Sock sock = getSockList().get(0);
@@ -187,6 +329,34 @@ public class SockServiceTests {
                 .hasMessageContaining(EXCMSG_QUANTITY_BIGGER_THAN_STOCK);
     }
 
+    @Test
+    public void testOutcome_Negative_NegativeStockInDatabase() {
+        Sock sock = getSockList().get(0);
+        List<Sock> socks = new ArrayList<>(List.of(sock));
+        SockQntDto sockQntDto = mappingUtils.mapToSockQntDto(sock, 10);
+        when(sockRepository.findByColorAndCottonPart(sock.getColor(), sock.getCottonPart())).thenReturn(socks);
+        when(sockRepository.decrementStock(sock.getId(), sockQntDto.getQuantity())).thenReturn(0);
+        when(sockRepository.existsById(sock.getId())).thenReturn(true);
+        Throwable thrown = catchThrowable(() -> sockService.outcome(sockQntDto));
+        assertThat(thrown)
+                .isInstanceOf(NegativeStockException.class)
+                .hasMessageContaining(EXCMSG_QUANTITY_BIGGER_THAN_STOCK);
+        verify(tradingActionRepository, never()).save(any());
+    }
+
+    @Test
+    public void testIncome_Negative_SockDeletedInDatabase() {
+        Sock sock = getSockList().get(0);
+        List<Sock> socks = new ArrayList<>(List.of(sock));
+        SockQntDto sockQntDto = mappingUtils.mapToSockQntDto(sock, 10);
+        when(sockRepository.findByColorAndCottonPart(sock.getColor(), sock.getCottonPart())).thenReturn(socks);
+        when(sockRepository.incrementStock(sock.getId(), sockQntDto.getQuantity())).thenReturn(0);
+        Throwable thrown = catchThrowable(() -> sockService.income(sockQntDto));
+        assertThat(thrown)
+                .isInstanceOf(EntityNotFoundException.class)
+                .hasMessageContaining(EXCMSG_NOT_FOUND);
+    }
+
     @Test
     public void testOutcome_Negative_NegativeQuantity() {
         int negativeQnt = -10;
@@ -198,12 +368,81 @@ public class SockServiceTests {
                 .hasMessageContaining(EXCMSG_QUANTITY_LESS_THAN_ZERO);
     }
 
+    @Test
+    public void testIncomeAll_Positive() {
+        Sock first = getSockList().get(0);
+        Sock second = getSockList().get(2);
+        List<SockQntDto> input = List.of(mappingUtils.mapToSockQntDto(first, 3), mappingUtils.mapToSockQntDto(second, 4));
+        when(sockRepository.findByColorAndCottonPart(first.getColor(), first.getCottonPart())).thenReturn(new ArrayList<>(List.of(first)));
+        when(sockRepository.findByColorAndCottonPart(second.getColor(), second.getCottonPart())).thenReturn(new ArrayList<>(List.of(second)));
+        when(sockRepository.incrementStock(first.getId(), 3)).thenReturn(1);
+        when(sockRepository.incrementStock(second.getId(), 4)).thenReturn(1);
+        List<SockQntDto> actual = sockService.incomeAll(input);
+        assertThat(actual)
+                .extracting(SockQntDto::getStock)
+                .containsExactly(first.getStock() + 3, second.getStock() + 4);
+        verify(tradingActionRepository).saveAll(argThat(actions -> ((List<?>) actions).size() == 2));
+        verify(tradingActionRepository, never()).save(any());
+    }
+
+    @Test
+    public void testOutcomeAll_Negative_NegativeStockWritesNoActions() {
+        Sock first = getSockList().get(0);
+        Sock second = getSockList().get(1);
+        List<SockQntDto> input = List.of(mappingUtils.mapToSockQntDto(first, 3), mappingUtils.mapToSockQntDto(second, 40));
+        when(sockRepository.findByColorAndCottonPart(first.getColor(), first.getCottonPart())).thenReturn(new ArrayList<>(List.of(first)));
+        when(sockRepository.findByColorAndCottonPart(second.getColor(), second.getCottonPart())).thenReturn(new ArrayList<>(List.of(second)));
+        Throwable thrown = catchThrowable(() -> sockService.outcomeAll(input));
+        assertThat(thrown)
+                .isInstanceOf(NegativeStockException.class)
+                .hasMessageContaining(EXCMSG_QUANTITY_BIGGER_THAN_STOCK);
+        verify(sockRepository, never()).decrementStock(anyLong(), anyInt());
+        verify(tradingActionRepository, never()).saveAll(any());
+    }
+
+    @Test
+    public void testTransfer_Positive() {
+        Sock from = getSockList().get(2);
+        Sock to = getSockList().get(0);
+        when(sockRepository.findByColorAndCottonPart(from.getColor(), from.getCottonPart())).thenReturn(new ArrayList<>(List.of(from)));
+        when(sockRepository.findByColorAndCottonPart(to.getColor(), to.getCottonPart())).thenReturn(new ArrayList<>(List.of(to)));
+        when(sockRepository.decrementStock(from.getId(), 5)).thenReturn(1);
+        when(sockRepository.incrementStock(to.getId(), 5)).thenReturn(1);
+        List<SockQntDto> actual = sockService.transfer(new TransferDto(from.getColor(), from.getCottonPart(), to.getColor(), to.getCottonPart(), 5));
+        assertThat(actual)
+                .extracting(SockQntDto::getId, SockQntDto::getStock)
+                .containsExactly(tuple(from.getId(), from.getStock() - 5), tuple(to.getId(), to.getStock() + 5));
+        InOrder updates = inOrder(sockRepository);
+        updates.verify(sockRepository).incrementStock(to.getId(), 5);
+        updates.verify(sockRepository).decrementStock(from.getId(), 5);
+        verify(tradingActionRepository).saveAll(argThat(actions -> ((List<?>) actions).size() == 2));
+    }
+
+    @Test
+    public void testTransfer_Negative_SameVariant() {
+        Throwable thrown = catchThrowable(() -> sockService.transfer(new TransferDto("white", 50, "white", 50, 5)));
+        assertThat(thrown)
+                .isInstanceOf(InvalidArgumentException.class)
+                .hasMessageContaining(EXCMSG_TRANSFER_SAME_VARIANT);
+    }
+
+    @Test
+    public void testOutcomeAll_Negative_EmptyBatch() {
+        Throwable thrown = catchThrowable(() -> sockService.outcomeAll(List.of()));
+        assertThat(thrown)
+                .isInstanceOf(InvalidArgumentException.class)
+                .hasMessageContaining(EXCMSG_EMPTY_BATCH);
+    }
+
     @Test
     public void testCreateSock_Positive() {
         Sock sock = getSockList().get(0);
         SockDto expected = mappingUtils.mapToSockDto(sock);
+        when(sockRepository.save(any(Sock.class))).thenAnswer(AdditionalAnswers.returnsFirstArg());
         SockDto actual = sockService.createSock(expected).orElseThrow();
         assertThat(actual).isEqualTo(expected);
+        verify(tradingActionRepository).save(argThat(action ->
+                action.getOperationType() == OperationType.INCOME && action.getQuantity() == sock.getStock()));
     }
 
     @Test
@@ -222,8 +461,50 @@ public class SockServiceTests {
         Sock sock = getSockList().get(0);
         SockDto expected = mappingUtils.mapToSockDto(sock);
         when(sockRepository.findById(sock.getId())).thenReturn(Optional.of(sock));
+        when(sockRepository.findCurrentById(sock.getId())).thenReturn(Optional.of(expected));
+        when(sockRepository.save(any(Sock.class))).thenAnswer(AdditionalAnswers.returnsFirstArg());
         SockDto actual = sockService.updateSock(expected).orElseThrow();
         assertThat(actual).isEqualTo(expected);
+        verify(tradingActionRepository, never()).save(any());
+    }
+
+    @Test
+    public void testUpdateSock_Positive_JournalsStockDelta() {
+        Sock sock = getSockList().get(0);
+        SockDto updated = new SockDto(sock.getId(), sock.getColor(), sock.getCottonPart(), sock.getStock() - 3);
+        when(sockRepository.findById(sock.getId())).thenReturn(Optional.of(sock));
+        when(sockRepository.findCurrentById(sock.getId())).thenReturn(Optional.of(new SockDto(sock.getId(), sock.getColor(), sock.getCottonPart(), sock.getStock())));
+        when(sockRepository.save(any(Sock.class))).thenAnswer(AdditionalAnswers.returnsFirstArg());
+        sockService.updateSock(updated);
+        verify(tradingActionRepository).save(argThat(action ->
+                action.getOperationType() == OperationType.OUTCOME && action.getQuantity() == 3));
+    }
+
+    @Test
+    public void testUpdateSock_Positive_DeltaTakenFromCurrentStock() {
+        Sock sock = getSockList().get(0);
+        SockDto updated = new SockDto(sock.getId(), sock.getColor(), sock.getCottonPart(), 20);
+        when(sockRepository.findById(sock.getId())).thenReturn(Optional.of(sock));
+        when(sockRepository.findCurrentById(sock.getId()))
+                .thenReturn(Optional.of(new SockDto(sock.getId(), sock.getColor(), sock.getCottonPart(), 25)));
+        when(sockRepository.save(any(Sock.class))).thenAnswer(AdditionalAnswers.returnsFirstArg());
+        sockService.updateSock(updated);
+        verify(tradingActionRepository).save(argThat(action ->
+                action.getOperationType() == OperationType.OUTCOME && action.getQuantity() == 5));
+    }
+
+    @Test
+    public void testUpdateSock_Negative_KeyChangedConcurrently() {
+        Sock sock = getSockList().get(0);
+        SockDto updated = new SockDto(sock.getId(), sock.getColor(), sock.getCottonPart(), 20);
+        when(sockRepository.findById(sock.getId())).thenReturn(Optional.of(sock));
+        when(sockRepository.findCurrentById(sock.getId()))
+                .thenReturn(Optional.of(new SockDto(sock.getId(), "black", sock.getCottonPart(), sock.getStock())));
+        Throwable thrown = catchThrowable(() -> sockService.updateSock(updated));
+        assertThat(thrown)
+                .isInstanceOf(ConcurrentChangeException.class)
+                .hasMessageContaining(EXCMSG_CHANGED_CONCURRENTLY);
+        verify(sockRepository, never()).save(any());
     }
 
     @Test
@@ -242,6 +523,7 @@ public class SockServiceTests {
         Sock sock = sockList.get(0);
         SockDto expected = mappingUtils.mapToSockDto(sock);
         when(sockRepository.findById(0L)).thenReturn(Optional.of(sock));
+        when(sockRepository.findCurrentById(sock.getId())).thenReturn(Optional.of(expected));
         SockDto actual = sockService.deleteSock(0L).orElseThrow();
         assertThat(actual).isEqualTo(expected);
     }
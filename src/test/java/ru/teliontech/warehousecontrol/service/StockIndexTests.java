@@ -0,0 +1,94 @@
+package ru.teliontech.warehousecontrol.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.teliontech.warehousecontrol.entity.Sock;
+import ru.teliontech.warehousecontrol.event.SockChangedEvent;
+import ru.teliontech.warehousecontrol.repository.SockRepository;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class StockIndexTests {
+
+    @Mock
+    private SockRepository sockRepository;
+
+    private StockLedger stockLedger;
+
+    private StockIndex stockIndex;
+
+    private final AtomicReference<List<Sock>> database = new AtomicReference<>(List.of(
+            new Sock(1L, "white", 50, 10),
+            new Sock(2L, "white", 70, 5)));
+
+    @BeforeEach
+    public void setUp() {
+        stockLedger = new StockLedger(sockRepository, new SockCache(sockRepository, 100, Duration.ofMinutes(1)), 4);
+        stockIndex = new StockIndex(sockRepository, stockLedger);
+        lenient().when(sockRepository.findAll()).thenAnswer(invocation -> database.get());
+    }
+
+    @Test
+    public void testSum_Positive() {
+        assertThat(stockIndex.sum("White", 0, 60)).isEqualTo(new StockIndex.Totals(10, 1));
+        assertThat(stockIndex.sum("white", 0, 100)).isEqualTo(new StockIndex.Totals(15, 2));
+        assertThat(stockIndex.sum("red", 0, 100)).isEqualTo(new StockIndex.Totals(0, 0));
+        verify(sockRepository, times(1)).findAll();
+    }
+
+    @Test
+    public void testSum_Concurrent_LoadWaitsForChangeInFlight() throws Exception {
+        Sock before = new Sock(1L, "white", 50, 10);
+        Sock after = new Sock(1L, "white", 50, 40);
+        ExecutorService transaction = Executors.newSingleThreadExecutor();
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        try {
+            transaction.submit(() -> {
+                TransactionSynchronizationManager.initSynchronization();
+                return stockLedger.rewrite(List.of(new SockKey("white", 50)), () -> after);
+            }).get();
+            Future<StockIndex.Totals> loading = reader.submit(() -> stockIndex.sum("white", 0, 100));
+            Thread.sleep(200);
+            assertThat(loading.isDone()).isFalse();
+            transaction.submit(() -> {
+                database.set(List.of(after, new Sock(2L, "white", 70, 5)));
+                stockIndex.onSockChanged(new SockChangedEvent(before, after));
+                List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+                TransactionSynchronizationManager.clearSynchronization();
+                synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+            }).get();
+            assertThat(loading.get(5, TimeUnit.SECONDS)).isEqualTo(new StockIndex.Totals(45, 2));
+            assertThat(stockIndex.sum("white", 0, 100)).isEqualTo(new StockIndex.Totals(45, 2));
+        } finally {
+            transaction.shutdownNow();
+            reader.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSum_Positive_LoadOvertakenByInvalidationIsNotKept() {
+        when(sockRepository.findAll()).thenAnswer(invocation -> {
+            stockIndex.invalidate();
+            return database.get();
+        }).thenAnswer(invocation -> database.get());
+        assertThat(stockIndex.sum("white", 0, 100)).isEqualTo(new StockIndex.Totals(15, 2));
+        assertThat(stockIndex.sum("white", 0, 100)).isEqualTo(new StockIndex.Totals(15, 2));
+        assertThat(stockIndex.sum("white", 0, 100)).isEqualTo(new StockIndex.Totals(15, 2));
+        verify(sockRepository, times(2)).findAll();
+    }
+}
@@ -0,0 +1,296 @@
+package ru.teliontech.warehousecontrol.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.teliontech.warehousecontrol.entity.OperationType;
+import ru.teliontech.warehousecontrol.entity.Sock;
+import ru.teliontech.warehousecontrol.exception.NegativeStockException;
+import ru.teliontech.warehousecontrol.repository.SockRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static ru.teliontech.warehousecontrol.service.SockService.EXCMSG_QUANTITY_BIGGER_THAN_STOCK;
+
+@ExtendWith(MockitoExtension.class)
+public class StockLedgerTests {
+    private static final int THREADS = 16;
+    private static final int OPERATIONS_PER_THREAD = 2_000;
+
+    @Mock
+    private SockRepository sockRepository;
+
+    private StockLedger stockLedger;
+
+    private final List<Sock> socks = List.of(
+            new Sock(1L, "white", 50, 100),
+            new Sock(2L, "red", 20, 0),
+            new Sock(3L, "black", 90, 10)
+    );
+
+    private final ConcurrentMap<Long, Integer> persistedStock = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    public void setUp() {
+        stockLedger = new StockLedger(sockRepository, new SockCache(sockRepository, 100, Duration.ofMinutes(1)), 4);
+    }
+
+    @Test
+    public void testApply_Positive_LoadsOnce() {
+        Sock sock = socks.get(0);
+        when(sockRepository.findByColorAndCottonPart(sock.getColor(), sock.getCottonPart()))
+                .thenReturn(new ArrayList<>(List.of(sock)));
+        when(sockRepository.incrementStock(anyLong(), anyInt())).thenReturn(1);
+        when(sockRepository.decrementStock(anyLong(), anyInt())).thenReturn(1);
+        stockLedger.apply(sock.getColor(), sock.getCottonPart(), 5, OperationType.INCOME);
+        Sock actual = stockLedger.apply(sock.getColor(), sock.getCottonPart(), 15, OperationType.OUTCOME);
+        assertThat(actual.getStock()).isEqualTo(sock.getStock() + 5 - 15);
+        verify(sockRepository, times(1)).findByColorAndCottonPart(sock.getColor(), sock.getCottonPart());
+        verify(sockRepository).incrementStock(sock.getId(), 5);
+        verify(sockRepository).decrementStock(sock.getId(), 15);
+    }
+
+    @Test
+    public void testApply_Negative_NegativeStockLeavesEntryUntouched() {
+        Sock sock = socks.get(2);
+        when(sockRepository.findByColorAndCottonPart(sock.getColor(), sock.getCottonPart()))
+                .thenReturn(new ArrayList<>(List.of(sock)));
+        when(sockRepository.decrementStock(sock.getId(), 10)).thenReturn(1);
+        Throwable thrown = catchThrowable(() -> stockLedger.apply(sock.getColor(), sock.getCottonPart(), 11, OperationType.OUTCOME));
+        assertThat(thrown)
+                .isInstanceOf(NegativeStockException.class)
+                .hasMessageContaining(EXCMSG_QUANTITY_BIGGER_THAN_STOCK);
+        verify(sockRepository, never()).decrementStock(sock.getId(), 11);
+        Sock actual = stockLedger.apply(sock.getColor(), sock.getCottonPart(), 10, OperationType.OUTCOME);
+        assertThat(actual.getStock()).isZero();
+    }
+
+    @Test
+    public void testRewrite_Positive_ReloadsAfterCatalogueChange() {
+        Sock sock = socks.get(0);
+        when(sockRepository.findByColorAndCottonPart(sock.getColor(), sock.getCottonPart()))
+                .thenReturn(new ArrayList<>(List.of(sock)))
+                .thenReturn(new ArrayList<>(List.of(new Sock(1L, "white", 50, 500))));
+        when(sockRepository.incrementStock(sock.getId(), 1)).thenReturn(1);
+        stockLedger.apply(sock.getColor(), sock.getCottonPart(), 1, OperationType.INCOME);
+        stockLedger.rewrite(List.of(new SockKey(sock.getColor(), sock.getCottonPart())), () -> null);
+        Sock actual = stockLedger.apply(sock.getColor(), sock.getCottonPart(), 1, OperationType.INCOME);
+        assertThat(actual.getStock()).isEqualTo(501);
+    }
+
+    @Test
+    public void testRewriteAll_Positive_ReloadsEveryKey() {
+        Sock sock = socks.get(0);
+        when(sockRepository.findByColorAndCottonPart(sock.getColor(), sock.getCottonPart()))
+                .thenReturn(new ArrayList<>(List.of(sock)))
+                .thenReturn(new ArrayList<>(List.of(new Sock(1L, "white", 50, 300))));
+        when(sockRepository.incrementStock(sock.getId(), 1)).thenReturn(1);
+        stockLedger.apply(sock.getColor(), sock.getCottonPart(), 1, OperationType.INCOME);
+        Integer result = stockLedger.rewriteAll(() -> 42);
+        Sock actual = stockLedger.apply(sock.getColor(), sock.getCottonPart(), 1, OperationType.INCOME);
+        assertThat(result).isEqualTo(42);
+        assertThat(actual.getStock()).isEqualTo(301);
+    }
+
+    @Test
+    public void testRewriteAll_Concurrent_MovementWaitsForCommit() throws Exception {
+        when(sockRepository.findByColorAndCottonPart("white", 50))
+                .thenReturn(new ArrayList<>(List.of(new Sock(1L, "white", 50, 100))))
+                .thenReturn(new ArrayList<>(List.of(new Sock(1L, "white", 50, 300))));
+        when(sockRepository.incrementStock(anyLong(), anyInt())).thenReturn(1);
+        assertThat(stockLedger.available(new SockKey("white", 50))).isEqualTo(100);
+        ExecutorService transaction = Executors.newSingleThreadExecutor();
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        try {
+            transaction.submit(() -> {
+                TransactionSynchronizationManager.initSynchronization();
+                return stockLedger.rewriteAll(() -> null);
+            }).get();
+            Future<Sock> waiting = other.submit(() -> stockLedger.apply("white", 50, 1, OperationType.INCOME));
+            Thread.sleep(200);
+            assertThat(waiting.isDone()).isFalse();
+            transaction.submit(() -> complete(TransactionSynchronization.STATUS_COMMITTED)).get();
+            assertThat(waiting.get(5, TimeUnit.SECONDS).getStock()).isEqualTo(301);
+        } finally {
+            transaction.shutdownNow();
+            other.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testApplyAll_Positive_UpdatesInIdOrder() {
+        for (Sock sock : socks) {
+            when(sockRepository.findByColorAndCottonPart(sock.getColor(), sock.getCottonPart()))
+                    .thenReturn(new ArrayList<>(List.of(sock)));
+        }
+        when(sockRepository.incrementStock(anyLong(), anyInt())).thenReturn(1);
+        when(sockRepository.decrementStock(anyLong(), anyInt())).thenReturn(1);
+        List<Sock> actual = stockLedger.applyAll(List.of(
+                new StockLedger.Movement(new SockKey("black", 90), 5, OperationType.OUTCOME),
+                new StockLedger.Movement(new SockKey("white", 50), 1, OperationType.INCOME),
+                new StockLedger.Movement(new SockKey("red", 20), 3, OperationType.INCOME),
+                new StockLedger.Movement(new SockKey("black", 90), 5, OperationType.OUTCOME)));
+        assertThat(actual).extracting(Sock::getStock).containsExactly(5, 101, 3, 0);
+        InOrder updates = inOrder(sockRepository);
+        updates.verify(sockRepository).incrementStock(1L, 1);
+        updates.verify(sockRepository).incrementStock(2L, 3);
+        updates.verify(sockRepository, times(2)).decrementStock(3L, 5);
+    }
+
+    @Test
+    public void testApplyAll_Negative_RejectedBeforeAnyUpdate() {
+        for (Sock sock : socks.subList(0, 2)) {
+            when(sockRepository.findByColorAndCottonPart(sock.getColor(), sock.getCottonPart()))
+                    .thenReturn(new ArrayList<>(List.of(sock)));
+        }
+        Throwable thrown = catchThrowable(() -> stockLedger.applyAll(List.of(
+                new StockLedger.Movement(new SockKey("white", 50), 1, OperationType.OUTCOME),
+                new StockLedger.Movement(new SockKey("red", 20), 1, OperationType.OUTCOME))));
+        assertThat(thrown).isInstanceOf(NegativeStockException.class);
+        verify(sockRepository, never()).decrementStock(anyLong(), anyInt());
+        assertThat(stockLedger.available(new SockKey("white", 50))).isEqualTo(100);
+    }
+
+    @Test
+    public void testApply_Concurrent_RolledBackStockIsNotBuiltOn() throws Exception {
+        when(sockRepository.findByColorAndCottonPart("white", 50))
+                .thenAnswer(invocation -> new ArrayList<>(List.of(new Sock(1L, "white", 50, 100))));
+        when(sockRepository.incrementStock(anyLong(), anyInt())).thenReturn(1);
+        ExecutorService transaction = Executors.newSingleThreadExecutor();
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        try {
+            transaction.submit(() -> {
+                TransactionSynchronizationManager.initSynchronization();
+                return stockLedger.apply("white", 50, 10, OperationType.INCOME);
+            }).get();
+            Future<Sock> waiting = other.submit(() -> stockLedger.apply("white", 50, 1, OperationType.INCOME));
+            Thread.sleep(200);
+            assertThat(waiting.isDone()).isFalse();
+            transaction.submit(() -> complete(TransactionSynchronization.STATUS_ROLLED_BACK)).get();
+            assertThat(waiting.get(5, TimeUnit.SECONDS).getStock()).isEqualTo(101);
+            assertThat(stockLedger.available(new SockKey("white", 50))).isEqualTo(101);
+        } finally {
+            transaction.shutdownNow();
+            other.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRewrite_Concurrent_KeysDroppedWhenCommitted() throws Exception {
+        when(sockRepository.findByColorAndCottonPart("white", 50))
+                .thenReturn(new ArrayList<>(List.of(new Sock(1L, "white", 50, 100))))
+                .thenReturn(new ArrayList<>(List.of(new Sock(1L, "white", 50, 500))));
+        when(sockRepository.incrementStock(anyLong(), anyInt())).thenReturn(1);
+        SockKey key = new SockKey("white", 50);
+        assertThat(stockLedger.available(key)).isEqualTo(100);
+        ExecutorService transaction = Executors.newSingleThreadExecutor();
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        try {
+            transaction.submit(() -> {
+                TransactionSynchronizationManager.initSynchronization();
+                return stockLedger.rewrite(List.of(key), () -> null);
+            }).get();
+            Future<Sock> waiting = other.submit(() -> stockLedger.apply("white", 50, 1, OperationType.INCOME));
+            Thread.sleep(200);
+            assertThat(waiting.isDone()).isFalse();
+            transaction.submit(() -> complete(TransactionSynchronization.STATUS_COMMITTED)).get();
+            assertThat(waiting.get(5, TimeUnit.SECONDS).getStock()).isEqualTo(501);
+        } finally {
+            transaction.shutdownNow();
+            other.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testApply_Concurrent_NoLostUpdates() throws Exception {
+        for (Sock sock : socks) {
+            lenient().when(sockRepository.findByColorAndCottonPart(sock.getColor(), sock.getCottonPart()))
+                    .thenReturn(new ArrayList<>(List.of(sock)));
+        }
+        socks.forEach(sock -> persistedStock.put(sock.getId(), sock.getStock()));
+        when(sockRepository.incrementStock(anyLong(), anyInt())).thenAnswer(invocation -> {
+            persistedStock.merge(invocation.getArgument(0), invocation.getArgument(1), Integer::sum);
+            return 1;
+        });
+        when(sockRepository.decrementStock(anyLong(), anyInt())).thenAnswer(invocation -> {
+            int quantity = invocation.getArgument(1);
+            boolean[] updated = new boolean[1];
+            persistedStock.computeIfPresent(invocation.getArgument(0), (id, stock) -> {
+                updated[0] = stock >= quantity;
+                return updated[0] ? stock - quantity : stock;
+            });
+            return updated[0] ? 1 : 0;
+        });
+
+        ConcurrentMap<Long, AtomicInteger> expectedStock = new ConcurrentHashMap<>();
+        socks.forEach(sock -> expectedStock.put(sock.getId(), new AtomicInteger(sock.getStock())));
+        AtomicInteger rejected = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    Sock sock = socks.get(random.nextInt(socks.size()));
+                    int quantity = random.nextInt(1, 10);
+                    OperationType operationType = random.nextBoolean() ? OperationType.INCOME : OperationType.OUTCOME;
+                    try {
+                        Sock result = stockLedger.apply(sock.getColor(), sock.getCottonPart(), quantity, operationType);
+                        assertThat(result.getStock()).isNotNegative();
+                        expectedStock.get(sock.getId()).addAndGet(operationType == OperationType.INCOME ? quantity : -quantity);
+                    } catch (NegativeStockException e) {
+                        rejected.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        for (Sock sock : socks) {
+            int expected = expectedStock.get(sock.getId()).get();
+            Sock actual = stockLedger.apply(sock.getColor(), sock.getCottonPart(), 0, OperationType.INCOME);
+            assertThat(actual.getStock()).isEqualTo(expected);
+            assertThat(persistedStock.get(sock.getId())).isEqualTo(expected);
+        }
+        verify(sockRepository, times(socks.size())).findByColorAndCottonPart(anyString(), anyInt());
+        assertThat(rejected.get()).isPositive();
+    }
+
+    private static Void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+        return null;
+    }
+}
@@ -0,0 +1,183 @@
+package ru.teliontech.warehousecontrol.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.teliontech.warehousecontrol.dto.StockRebuildDto;
+import ru.teliontech.warehousecontrol.dto.StockSnapshotDto;
+import ru.teliontech.warehousecontrol.entity.OperationType;
+import ru.teliontech.warehousecontrol.entity.Sock;
+import ru.teliontech.warehousecontrol.entity.StockSnapshot;
+import ru.teliontech.warehousecontrol.event.CatalogueReloadedEvent;
+import ru.teliontech.warehousecontrol.exception.EntityNotFoundException;
+import ru.teliontech.warehousecontrol.exception.SnapshotUnavailableException;
+import ru.teliontech.warehousecontrol.repository.SockRepository;
+import ru.teliontech.warehousecontrol.repository.StockSnapshotRepository;
+import ru.teliontech.warehousecontrol.repository.TradingActionRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static ru.teliontech.warehousecontrol.service.StockSnapshotService.EXCMSG_NO_SNAPSHOT;
+import static ru.teliontech.warehousecontrol.service.StockSnapshotService.EXCMSG_WRITE_BEHIND;
+
+@ExtendWith(MockitoExtension.class)
+public class StockSnapshotServiceTests {
+
+    @Mock
+    private StockSnapshotRepository stockSnapshotRepository;
+
+    @Mock
+    private TradingActionRepository tradingActionRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private SockRepository sockRepository;
+
+    private StockLedger stockLedger;
+
+    private StockSnapshotService stockSnapshotService;
+
+    @BeforeEach
+    public void setUp() {
+        stockLedger = new StockLedger(sockRepository, new SockCache(sockRepository, 100, Duration.ofMinutes(1)), 4);
+        stockSnapshotService = new StockSnapshotService(stockSnapshotRepository, tradingActionRepository, eventPublisher, stockLedger, Duration.ofMinutes(1), 3, false);
+    }
+
+    @Test
+    public void testTakeSnapshot_Positive_Baseline() {
+        when(stockSnapshotRepository.findTopByOrderByIdDesc()).thenReturn(Optional.empty());
+        when(stockSnapshotRepository.save(any(StockSnapshot.class))).thenAnswer(invocation -> withId(invocation.getArgument(0), 1L));
+        StockSnapshotDto actual = stockSnapshotService.takeSnapshot();
+        assertThat(actual.getId()).isEqualTo(1L);
+        assertThat(actual.getLastOperationTime()).isEqualTo(actual.getCreatedAt().minusMinutes(1));
+        verify(stockSnapshotRepository).insertBaselineItems(1L, actual.getLastOperationTime());
+        verify(stockSnapshotRepository).deleteAllButLatest(3);
+    }
+
+    @Test
+    public void testTakeSnapshot_Positive_RollsPreviousForward() {
+        LocalDateTime previousTime = LocalDateTime.now().minusHours(1);
+        StockSnapshot previous = new StockSnapshot(4L, previousTime, previousTime);
+        when(tradingActionRepository.findOperationTimes(eq(previousTime), any(), any())).thenReturn(List.of(previousTime.plusMinutes(1)));
+        when(stockSnapshotRepository.findTopByOrderByIdDesc()).thenReturn(Optional.of(previous));
+        when(stockSnapshotRepository.save(any(StockSnapshot.class))).thenAnswer(invocation -> withId(invocation.getArgument(0), 5L));
+        StockSnapshotDto actual = stockSnapshotService.takeSnapshot();
+        verify(stockSnapshotRepository).insertIncrementalItems(5L, 4L, previousTime, actual.getLastOperationTime());
+        verify(stockSnapshotRepository, never()).insertBaselineItems(anyLong(), any());
+    }
+
+    @Test
+    public void testTakeSnapshot_Positive_NothingSettled() {
+        LocalDateTime previousTime = LocalDateTime.now().minusHours(1);
+        StockSnapshot previous = new StockSnapshot(4L, previousTime, previousTime);
+        when(tradingActionRepository.findOperationTimes(eq(previousTime), any(), any())).thenReturn(List.of());
+        when(stockSnapshotRepository.findTopByOrderByIdDesc()).thenReturn(Optional.of(previous));
+        StockSnapshotDto actual = stockSnapshotService.takeSnapshot();
+        assertThat(actual.getId()).isEqualTo(4L);
+        verify(stockSnapshotRepository, never()).save(any());
+    }
+
+    @Test
+    public void testTakeSnapshot_Negative_WriteBehind() {
+        StockSnapshotService writeBehind = new StockSnapshotService(stockSnapshotRepository, tradingActionRepository, eventPublisher, stockLedger, Duration.ofMinutes(1), 3, true);
+        Throwable thrown = catchThrowable(writeBehind::takeSnapshot);
+        assertThat(thrown)
+                .isInstanceOf(SnapshotUnavailableException.class)
+                .hasMessageContaining(EXCMSG_WRITE_BEHIND);
+        verifyNoInteractions(stockSnapshotRepository, tradingActionRepository);
+    }
+
+    @Test
+    public void testRebuild_Positive() {
+        LocalDateTime lastOperationTime = LocalDateTime.of(2023, 7, 1, 12, 0);
+        StockSnapshot snapshot = new StockSnapshot(4L, LocalDateTime.now(), lastOperationTime);
+        when(stockSnapshotRepository.findTopByOrderByIdDesc()).thenReturn(Optional.of(snapshot));
+        when(stockSnapshotRepository.rebuildStock(4L, lastOperationTime)).thenReturn(2);
+        StockRebuildDto actual = stockSnapshotService.rebuild();
+        assertThat(actual).isEqualTo(new StockRebuildDto(4L, lastOperationTime, 2));
+        verify(stockSnapshotRepository).lockSocks();
+        verify(eventPublisher).publishEvent(any(CatalogueReloadedEvent.class));
+    }
+
+    @Test
+    public void testRebuild_Concurrent_WaitsForMovementInFlight() throws Exception {
+        LocalDateTime lastOperationTime = LocalDateTime.of(2023, 7, 1, 12, 0);
+        when(sockRepository.findByColorAndCottonPart("white", 50))
+                .thenReturn(new ArrayList<>(List.of(new Sock(1L, "white", 50, 100))))
+                .thenReturn(new ArrayList<>(List.of(new Sock(1L, "white", 50, 40))));
+        when(sockRepository.incrementStock(anyLong(), anyInt())).thenReturn(1);
+        when(stockSnapshotRepository.findTopByOrderByIdDesc())
+                .thenReturn(Optional.of(new StockSnapshot(4L, LocalDateTime.now(), lastOperationTime)));
+        when(stockSnapshotRepository.rebuildStock(4L, lastOperationTime)).thenReturn(1);
+        ExecutorService movement = Executors.newSingleThreadExecutor();
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        try {
+            movement.submit(() -> {
+                TransactionSynchronizationManager.initSynchronization();
+                return stockLedger.apply("white", 50, 10, OperationType.INCOME);
+            }).get();
+            Future<StockRebuildDto> rebuilding = other.submit(() -> stockSnapshotService.rebuild());
+            Thread.sleep(200);
+            assertThat(rebuilding.isDone()).isFalse();
+            verify(stockSnapshotRepository, never()).lockSocks();
+            movement.submit(() -> {
+                List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+                TransactionSynchronizationManager.clearSynchronization();
+                synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+            }).get();
+            assertThat(rebuilding.get(5, TimeUnit.SECONDS).getRepairedSocks()).isEqualTo(1);
+            assertThat(stockLedger.available(new SockKey("white", 50))).isEqualTo(40);
+        } finally {
+            movement.shutdownNow();
+            other.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRebuild_Negative_WriteBehind() {
+        StockSnapshotService writeBehind = new StockSnapshotService(stockSnapshotRepository, tradingActionRepository, eventPublisher, stockLedger, Duration.ofMinutes(1), 3, true);
+        Throwable thrown = catchThrowable(writeBehind::rebuild);
+        assertThat(thrown)
+                .isInstanceOf(SnapshotUnavailableException.class)
+                .hasMessageContaining(EXCMSG_WRITE_BEHIND);
+        verify(stockSnapshotRepository, never()).lockSocks();
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    public void testRebuild_Negative_NoSnapshot() {
+        when(stockSnapshotRepository.findTopByOrderByIdDesc()).thenReturn(Optional.empty());
+        Throwable thrown = catchThrowable(() -> stockSnapshotService.rebuild());
+        assertThat(thrown)
+                .isInstanceOf(EntityNotFoundException.class)
+                .hasMessageContaining(EXCMSG_NO_SNAPSHOT);
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    private StockSnapshot withId(StockSnapshot snapshot, Long id) {
+        snapshot.setId(id);
+        return snapshot;
+    }
+}
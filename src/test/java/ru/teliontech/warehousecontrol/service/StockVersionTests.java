@@ -0,0 +1,41 @@
+package ru.teliontech.warehousecontrol.service;
+
+import org.junit.jupiter.api.Test;
+import ru.teliontech.warehousecontrol.entity.Sock;
+import ru.teliontech.warehousecontrol.event.CatalogueReloadedEvent;
+import ru.teliontech.warehousecontrol.event.SockChangedEvent;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StockVersionTests {
+
+    private final StockVersion stockVersion = new StockVersion();
+
+    @Test
+    public void testEtag_Positive_ChangesOnEveryEvent() {
+        String initial = stockVersion.etag();
+        stockVersion.onSockChanged(new SockChangedEvent(null, new Sock(1L, "white", 50, 10)));
+        String changed = stockVersion.etag();
+        stockVersion.onCatalogueReloaded(new CatalogueReloadedEvent());
+        assertThat(stockVersion.current()).isEqualTo(2);
+        assertThat(changed).isNotEqualTo(initial);
+        assertThat(stockVersion.etag()).isNotEqualTo(changed).startsWith("\"").endsWith("\"");
+    }
+
+    @Test
+    public void testMatches_Positive() {
+        String etag = stockVersion.etag();
+        assertThat(StockVersion.matches(etag, etag)).isTrue();
+        assertThat(StockVersion.matches("\"other\", W/" + etag, etag)).isTrue();
+        assertThat(StockVersion.matches("*", etag)).isTrue();
+    }
+
+    @Test
+    public void testMatches_Negative() {
+        String etag = stockVersion.etag();
+        assertThat(StockVersion.matches(null, etag)).isFalse();
+        assertThat(StockVersion.matches("\"other\"", etag)).isFalse();
+        stockVersion.onSockChanged(new SockChangedEvent(null, new Sock(1L, "white", 50, 10)));
+        assertThat(StockVersion.matches(etag, stockVersion.etag())).isFalse();
+    }
+}
@@ -0,0 +1,72 @@
+package ru.teliontech.warehousecontrol.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.teliontech.warehousecontrol.archive.ArchivedAction;
+import ru.teliontech.warehousecontrol.dto.TradingActionDto;
+import ru.teliontech.warehousecontrol.entity.OperationType;
+import ru.teliontech.warehousecontrol.exception.InvalidArgumentException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static ru.teliontech.warehousecontrol.service.TradingActionArchiveService.EXCMSG_LIMIT_NOT_RANGE;
+
+public class TradingActionArchiveServiceTests {
+    private static final LocalDateTime TIME = LocalDateTime.of(2023, 6, 21, 20, 44, 50);
+
+    @TempDir
+    Path directory;
+
+    private TradingActionArchiveService archiveService;
+
+    @BeforeEach
+    public void setUp() {
+        archiveService = new TradingActionArchiveService(directory);
+    }
+
+    @Test
+    public void testExport_Positive() {
+        long exported = archiveService.export("trading_actions_p202306", sink -> {
+            sink.accept(new ArchivedAction(1L, TIME, OperationType.INCOME, 1L, 10));
+            sink.accept(new ArchivedAction(2L, TIME.plusHours(1), OperationType.OUTCOME, 2L, 5));
+        });
+        assertThat(exported).isEqualTo(2);
+        assertThat(archiveService.exists("trading_actions_p202306")).isTrue();
+        assertThat(directory.resolve("trading_actions_p202306.wcs.tmp")).doesNotExist();
+    }
+
+    @Test
+    public void testQuery_Positive_AcrossSegmentsWithLimit() {
+        archiveService.export("trading_actions_p202306", sink -> {
+            sink.accept(new ArchivedAction(1L, TIME, OperationType.INCOME, 1L, 10));
+            sink.accept(new ArchivedAction(2L, TIME, OperationType.INCOME, 2L, 7));
+        });
+        archiveService.export("trading_actions_p202307", sink -> {
+            sink.accept(new ArchivedAction(3L, TIME.plusMonths(1), OperationType.OUTCOME, 1L, 3));
+            sink.accept(new ArchivedAction(4L, TIME.plusMonths(1), OperationType.INCOME, 1L, 4));
+        });
+        List<TradingActionDto> actual = archiveService.query(null, null, 1L, 2);
+        assertThat(actual).containsExactly(
+                new TradingActionDto(1L, TIME, OperationType.INCOME, 1L, 10),
+                new TradingActionDto(3L, TIME.plusMonths(1), OperationType.OUTCOME, 1L, 3));
+    }
+
+    @Test
+    public void testQuery_Positive_NoArchive() {
+        assertThat(new TradingActionArchiveService(directory.resolve("missing")).query(null, null, null, 10)).isEmpty();
+    }
+
+    @Test
+    public void testQuery_Negative_LimitNotRange() {
+        Throwable thrown = catchThrowable(() -> archiveService.query(null, null, null, 0));
+        assertThat(thrown)
+                .isInstanceOf(InvalidArgumentException.class)
+                .hasMessageContaining(EXCMSG_LIMIT_NOT_RANGE);
+    }
+}
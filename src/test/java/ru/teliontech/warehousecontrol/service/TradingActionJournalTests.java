@@ -0,0 +1,206 @@
+package ru.teliontech.warehousecontrol.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import ru.teliontech.warehousecontrol.entity.OperationType;
+import ru.teliontech.warehousecontrol.entity.Sock;
+import ru.teliontech.warehousecontrol.entity.TradingAction;
+import ru.teliontech.warehousecontrol.repository.TradingActionDeadLetterRepository;
+import ru.teliontech.warehousecontrol.repository.TradingActionRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TradingActionJournalTests {
+    private static final int MAX_BATCH_SIZE = 64;
+
+    @Mock
+    private TradingActionRepository tradingActionRepository;
+
+    @Mock
+    private TradingActionDeadLetterRepository deadLetterRepository;
+
+    @Test
+    public void testAppend_Positive_SynchronousByDefault() {
+        TradingActionJournal journal = journal(false, 1, Duration.ZERO);
+        TradingAction tradingAction = createTradingAction(1);
+        journal.append(tradingAction);
+        verify(tradingActionRepository).save(tradingAction);
+    }
+
+    @Test
+    public void testAppend_Positive_WriteBehindFlushesEverythingInBatches() throws Exception {
+        ConcurrentLinkedQueue<Integer> batchSizes = new ConcurrentLinkedQueue<>();
+        ConcurrentLinkedQueue<TradingAction> flushed = new ConcurrentLinkedQueue<>();
+        when(tradingActionRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<TradingAction> batch = invocation.getArgument(0);
+            batchSizes.add(batch.size());
+            flushed.addAll(batch);
+            Thread.sleep(1);
+            return batch;
+        });
+        TradingActionJournal journal = journal(true, 128, Duration.ofMillis(5));
+        journal.start();
+
+        int threads = 8;
+        int actionsPerThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < actionsPerThread; i++) {
+                    journal.append(createTradingAction(i + 1));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        journal.stop();
+
+        assertThat(flushed).hasSize(threads * actionsPerThread);
+        assertThat(batchSizes).allMatch(size -> size <= MAX_BATCH_SIZE);
+        assertThat(batchSizes.size()).isLessThan(threads * actionsPerThread);
+        assertThat(journal.getQueueDepth()).isZero();
+        verify(tradingActionRepository, never()).save(any(TradingAction.class));
+    }
+
+    @Test
+    public void testAppend_Positive_FailedBatchIsRetriedUntilSaved() throws Exception {
+        ConcurrentLinkedQueue<TradingAction> flushed = new ConcurrentLinkedQueue<>();
+        when(tradingActionRepository.saveAll(anyList()))
+                .thenThrow(new DataAccessResourceFailureException("database is down"))
+                .thenThrow(new DataAccessResourceFailureException("database is down"))
+                .thenThrow(new DataAccessResourceFailureException("database is down"))
+                .thenAnswer(invocation -> {
+                    List<TradingAction> batch = invocation.getArgument(0);
+                    flushed.addAll(batch);
+                    return batch;
+                });
+        TradingActionJournal journal = journal(true, 16, Duration.ZERO);
+        journal.start();
+        TradingAction tradingAction = createTradingAction(1);
+        journal.append(tradingAction);
+        journal.stop();
+
+        assertThat(flushed).containsExactly(tradingAction);
+        verify(tradingActionRepository, times(4)).saveAll(anyList());
+    }
+
+    @Test
+    public void testAppend_Negative_BadActionIsDeadLetteredAndTheRestSaved() throws Exception {
+        ConcurrentLinkedQueue<TradingAction> flushed = new ConcurrentLinkedQueue<>();
+        ConcurrentLinkedQueue<TradingAction> deadLettered = deadLettered("null value in column \"sock_id\"");
+        TradingAction bad = createTradingAction(3);
+        when(tradingActionRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<TradingAction> batch = invocation.getArgument(0);
+            if (batch.contains(bad)) {
+                throw new DataIntegrityViolationException("null value in column \"sock_id\"");
+            }
+            flushed.addAll(batch);
+            return batch;
+        });
+        TradingActionJournal journal = journal(true, 16, Duration.ofMillis(200));
+        journal.start();
+        List<TradingAction> tradingActions = List.of(createTradingAction(1), createTradingAction(2), bad,
+                createTradingAction(4), createTradingAction(5));
+        journal.appendAll(tradingActions);
+        journal.stop();
+
+        assertThat(flushed).containsExactlyInAnyOrder(tradingActions.get(0), tradingActions.get(1),
+                tradingActions.get(3), tradingActions.get(4));
+        assertThat(deadLettered).containsExactly(bad);
+        verify(tradingActionRepository, atMost(2 * tradingActions.size() - 1)).saveAll(anyList());
+    }
+
+    @Test
+    public void testStop_Negative_InterruptsFlusherStuckOnUnavailableDatabase() throws Exception {
+        ConcurrentLinkedQueue<TradingAction> deadLettered = deadLettered("database is down");
+        when(tradingActionRepository.saveAll(anyList())).thenThrow(new DataAccessResourceFailureException("database is down"));
+        TradingActionJournal journal = new TradingActionJournal(tradingActionRepository, deadLetterRepository,
+                true, 16, MAX_BATCH_SIZE, Duration.ZERO, Duration.ofMillis(300));
+        journal.start();
+        TradingAction tradingAction = createTradingAction(1);
+        journal.append(tradingAction);
+        assertTimeoutPreemptively(Duration.ofSeconds(5), journal::stop);
+
+        assertThat(deadLettered).containsExactly(tradingAction);
+        assertThat(journal.getQueueDepth()).isZero();
+    }
+
+    @Test
+    public void testAppend_Concurrent_NothingLostAcrossStop() throws Exception {
+        ConcurrentLinkedQueue<TradingAction> saved = new ConcurrentLinkedQueue<>();
+        when(tradingActionRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<TradingAction> batch = invocation.getArgument(0);
+            saved.addAll(batch);
+            return batch;
+        });
+        TradingActionJournal journal = journal(true, 8, Duration.ZERO);
+        journal.start();
+
+        int threads = 4;
+        int actionsPerThread = 2_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch started = new CountDownLatch(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                started.countDown();
+                for (int i = 0; i < actionsPerThread; i++) {
+                    journal.append(createTradingAction(i + 1));
+                }
+                return null;
+            }));
+        }
+        started.await();
+        journal.stop();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertThat(saved).hasSize(threads * actionsPerThread);
+        assertThat(journal.getQueueDepth()).isZero();
+    }
+
+    private ConcurrentLinkedQueue<TradingAction> deadLettered(String error) {
+        ConcurrentLinkedQueue<TradingAction> deadLettered = new ConcurrentLinkedQueue<>();
+        doAnswer(invocation -> deadLettered.addAll(invocation.getArgument(0)))
+                .when(deadLetterRepository).insertAll(anyList(), any(LocalDateTime.class), eq(error));
+        return deadLettered;
+    }
+
+    private TradingActionJournal journal(boolean writeBehind, int capacity, Duration linger) {
+        return new TradingActionJournal(tradingActionRepository, deadLetterRepository,
+                writeBehind, capacity, MAX_BATCH_SIZE, linger, Duration.ofSeconds(30));
+    }
+
+    private TradingAction createTradingAction(int quantity) {
+        return new TradingAction(null, LocalDateTime.now(), OperationType.INCOME, new Sock(1L, "white", 50, 0), quantity);
+    }
+}
@@ -0,0 +1,112 @@
+package ru.teliontech.warehousecontrol.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import ru.teliontech.warehousecontrol.dto.PageDto;
+import ru.teliontech.warehousecontrol.dto.TradingActionDto;
+import ru.teliontech.warehousecontrol.entity.OperationType;
+import ru.teliontech.warehousecontrol.exception.InvalidArgumentException;
+import ru.teliontech.warehousecontrol.repository.TradingActionExportRepository;
+import ru.teliontech.warehousecontrol.repository.TradingActionRepository;
+import ru.teliontech.warehousecontrol.utils.KeysetPages;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static ru.teliontech.warehousecontrol.service.TradingActionService.EXCMSG_RANGE_INVALID;
+
+@ExtendWith(MockitoExtension.class)
+public class TradingActionServiceTests {
+
+    @Mock
+    private TradingActionRepository tradingActionRepository;
+
+    @Mock
+    private TradingActionExportRepository tradingActionExportRepository;
+
+    private TradingActionService tradingActionService;
+
+    @BeforeEach
+    public void setUp() {
+        tradingActionService = new TradingActionService(tradingActionRepository, tradingActionExportRepository, Duration.ofMinutes(1));
+    }
+
+    @Test
+    public void testGetTradingActionsPage_Positive_ContinuesAfterLastPosition() {
+        List<TradingActionDto> actions = getTradingActionList();
+        LocalDateTime time = actions.get(1).getOperationTime();
+        when(tradingActionRepository.findPageAfter(eq(KeysetPages.Position.START.time()), eq(0L), any(), any(Pageable.class)))
+                .thenReturn(new ArrayList<>(actions));
+        when(tradingActionRepository.findPageAfter(eq(time), eq(11L), any(), any(Pageable.class)))
+                .thenReturn(new ArrayList<>(actions.subList(2, 3)));
+
+        PageDto<TradingActionDto> first = tradingActionService.getTradingActionsPage(null, 2);
+        assertThat(first.getItems()).extracting(TradingActionDto::getId).containsExactly(10L, 11L);
+
+        PageDto<TradingActionDto> second = tradingActionService.getTradingActionsPage(first.getNextCursor(), 2);
+        assertThat(second.getItems()).extracting(TradingActionDto::getId).containsExactly(12L);
+        assertThat(second.getNextCursor()).isNull();
+    }
+
+    @Test
+    public void testGetTradingActionsPage_Positive_StopsShortOfUnsettledActions() {
+        when(tradingActionRepository.findPageAfter(any(), eq(0L), any(), any(Pageable.class))).thenReturn(new ArrayList<>());
+        LocalDateTime before = LocalDateTime.now().minusMinutes(1);
+        tradingActionService.getTradingActionsPage(null, 2);
+        verify(tradingActionRepository).findPageAfter(any(), eq(0L),
+                argThat(settled -> !settled.isBefore(before) && !settled.isAfter(LocalDateTime.now().minusMinutes(1))), any(Pageable.class));
+    }
+
+    @Test
+    public void testGetTradingActionsPage_Negative_IdCursorRejected() {
+        String idCursor = Base64.getUrlEncoder().withoutPadding().encodeToString("id:11".getBytes(StandardCharsets.UTF_8));
+        Throwable thrown = catchThrowable(() -> tradingActionService.getTradingActionsPage(idCursor, 2));
+        assertThat(thrown)
+                .isInstanceOf(InvalidArgumentException.class)
+                .hasMessageContaining(KeysetPages.EXCMSG_INVALID_CURSOR);
+    }
+
+    @Test
+    public void testExport_Positive() {
+        LocalDateTime from = LocalDateTime.of(2023, 7, 1, 0, 0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        when(tradingActionExportRepository.copyOut(from, null, 3L, out)).thenReturn(42L);
+        assertThat(tradingActionService.export(from, null, 3L, out)).isEqualTo(42L);
+    }
+
+    @Test
+    public void testExport_Negative_FromAfterTo() {
+        LocalDateTime to = LocalDateTime.of(2023, 7, 1, 0, 0);
+        Throwable thrown = catchThrowable(() -> tradingActionService.export(to.plusDays(1), to, null, new ByteArrayOutputStream()));
+        assertThat(thrown)
+                .isInstanceOf(InvalidArgumentException.class)
+                .hasMessage(EXCMSG_RANGE_INVALID);
+        verifyNoInteractions(tradingActionExportRepository);
+    }
+
+    private List<TradingActionDto> getTradingActionList() {
+        LocalDateTime now = LocalDateTime.now();
+        return new ArrayList<>(List.of(
+                new TradingActionDto(10L, now, OperationType.INCOME, 1L, 5),
+                new TradingActionDto(11L, now, OperationType.OUTCOME, 1L, 2),
+                new TradingActionDto(12L, now, OperationType.INCOME, 2L, 7)
+        ));
+    }
+}
@@ -0,0 +1,71 @@
+package ru.teliontech.warehousecontrol.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TimingWheelTests {
+    private static final long START = 1_000_000L;
+
+    @Test
+    public void testAdvance_Positive_ExpiresAtDeadline() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 8, START);
+        wheel.schedule("a", START + 25);
+        List<String> expired = new ArrayList<>();
+        wheel.advance(START + 20, expired::add);
+        assertThat(expired).isEmpty();
+        wheel.advance(START + 30, expired::add);
+        assertThat(expired).containsExactly("a");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    public void testAdvance_Positive_CascadesThroughLevels() {
+        TimingWheel<Long> wheel = new TimingWheel<>(10, 4, START);
+        Random random = new Random(42);
+        Map<Long, Long> deadlines = new HashMap<>();
+        for (long i = 0; i < 2_000; i++) {
+            long deadline = START + random.nextInt(50_000);
+            deadlines.put(i, deadline);
+            wheel.schedule(i, deadline);
+        }
+        for (long now = START; now <= START + 50_010; now += 10) {
+            long tick = now;
+            wheel.advance(now, id -> {
+                long deadline = deadlines.remove(id);
+                assertThat(deadline).isLessThanOrEqualTo(tick).isGreaterThan(tick - 10);
+            });
+        }
+        assertThat(deadlines).isEmpty();
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    public void testCancel_Positive() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 8, START);
+        TimingWheel.Timeout<String> timeout = wheel.schedule("a", START + 5_000);
+        wheel.schedule("b", START + 5_000);
+        assertThat(timeout.cancel()).isTrue();
+        assertThat(timeout.cancel()).isFalse();
+        List<String> expired = new ArrayList<>();
+        wheel.advance(START + 5_000, expired::add);
+        assertThat(expired).containsExactly("b");
+    }
+
+    @Test
+    public void testSchedule_Positive_PastDeadlineExpiresOnNextAdvance() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 8, START);
+        wheel.advance(START + 1_000, item -> {
+        });
+        wheel.schedule("late", START);
+        List<String> expired = new ArrayList<>();
+        wheel.advance(START + 1_000, expired::add);
+        assertThat(expired).containsExactly("late");
+    }
+}